@@ -0,0 +1,303 @@
+//==============================================================================
+//            Copyright (c) 2009-2014 ichess.co.il
+//
+//This document contains confidential information which is protected by
+//copyright and is proprietary to ichess.co.il. No part
+//of this document may be used, copied, disclosed, or conveyed to another
+//party without prior written consent of ichess.co.il.
+//==============================================================================
+
+package com.ichess.game;
+
+/**
+ * Precomputed attack tables, shared by all games. Squares use the Board
+ * numbering (a1 is 0, h8 is 63). <br>
+ * Leaper attacks (knight, king, pawn captures) are plain per square tables.
+ * Slider attacks (rook, bishop) are looked up with magic bitboards : the
+ * occupancy of the relevant squares is multiplied by a per square magic number
+ * and the top bits of the product index a per square slice of one shared
+ * table. Compound pieces are unions of these lookups. <br>
+ * A grasshoper jumps over the first piece (the hurdle) on each of the 8 queen
+ * rays, landing right behind it. The rays of every square are precomputed,
+ * so the hurdle is the nearest occupied square of the ray, found by a single
+ * bit scan, and the landing square behind it is a table lookup too.
+ *
+ * @author Ran Berenfeld
+ * @version 1.0
+ */
+public final class Attacks {
+
+	private static final long[] KNIGHT = new long[Board.SQUARE_NUM];
+	private static final long[] KING = new long[Board.SQUARE_NUM];
+	private static final long[][] PAWN = new long[Common.COLOR_NUM][Board.SQUARE_NUM];
+
+	private static final long[] ROOK_MASK = new long[Board.SQUARE_NUM];
+	private static final int[] ROOK_SHIFT = new int[Board.SQUARE_NUM];
+	private static final int[] ROOK_OFFSET = new int[Board.SQUARE_NUM];
+	private static final long[] BISHOP_MASK = new long[Board.SQUARE_NUM];
+	private static final int[] BISHOP_SHIFT = new int[Board.SQUARE_NUM];
+	private static final int[] BISHOP_OFFSET = new int[Board.SQUARE_NUM];
+	private static final long[] SLIDER_TABLE;
+
+	private static final int[][] ROOK_DIRECTIONS = { { 1, 0 }, { -1, 0 }, { 0, 1 }, { 0, -1 } };
+	private static final int[][] BISHOP_DIRECTIONS = { { 1, 1 }, { 1, -1 }, { -1, 1 }, { -1, -1 } };
+
+	// the rays going up the square numbers come first, so the nearest square
+	// of a ray is its lowest bit for those and its highest bit for the others
+	private static final int[][] QUEEN_DIRECTIONS = { { 1, 0 }, { 0, 1 }, { 1, 1 }, { 1, -1 }, { -1, 0 },
+			{ 0, -1 }, { -1, -1 }, { -1, 1 } };
+	private static final int UP_DIRECTIONS = 4;
+	// the squares of each ray, and the square one step along it, by square
+	private static final long[][] RAY = new long[QUEEN_DIRECTIONS.length][Board.SQUARE_NUM];
+	private static final long[][] STEP = new long[QUEEN_DIRECTIONS.length][Board.SQUARE_NUM];
+
+	// found offline by a seeded random search, one per square (a1 first)
+	private static final long[] ROOK_MAGIC = {
+			0x1080004008801020L, 0x0840092002C03000L, 0x1900200010400900L, 0x0880100008000480L,
+			0x4200100420080200L, 0x8100020100080400L, 0x0200040110886200L, 0x0200008040220411L,
+			0x0404800084400220L, 0x0000401000402000L, 0x0086001081220440L, 0x0408800800100280L,
+			0x000A001201040820L, 0x8848800200840080L, 0x4001000100040200L, 0x0442000102105084L,
+			0x9080010020804100L, 0x0040404000201009L, 0x0000808010002009L, 0x2200090021D00100L,
+			0x0008008008040080L, 0x0004004002010040L, 0x0011040008015042L, 0x00000A0001768104L,
+			0x0000800080204009L, 0x2010004140002001L, 0x9800200280100080L, 0x1000100080080080L,
+			0x0442000A00049020L, 0x2100040080020080L, 0x0800120400900148L, 0x0010040A00128541L,
+			0x2800804000800030L, 0x1010002000400041L, 0x4000200011004100L, 0x0610008410800800L,
+			0x0400802402800800L, 0xC100020080800400L, 0x0002000802000401L, 0x0182085882000401L,
+			0x0220204000808000L, 0x2860100040024022L, 0x0001002004110040L, 0x99101042000A0020L,
+			0x0004080004008080L, 0x0010040002008080L, 0x2012004881020004L, 0x8300842444820011L,
+			0x0088403882010200L, 0x0820400080210100L, 0x0110910040A00300L, 0x0801100280080480L,
+			0x0242009008200600L, 0x1002000489500200L, 0x0040800200010080L, 0x0091800041000080L,
+			0x0000209300488001L, 0x04C1002414824001L, 0x020020000B001041L, 0x7000100004200901L,
+			0x8002002004100802L, 0x30010002084C0007L, 0x0888221800813004L, 0x4000002840840112L };
+
+	private static final long[] BISHOP_MAGIC = {
+			0xA010041108003100L, 0x006082020A002900L, 0x6810010619200000L, 0x08281A0520000408L,
+			0x0001104001000400L, 0x0018901008048400L, 0x00040A0210245280L, 0x000200210808A402L,
+			0x9140048410821200L, 0x0800091010820041L, 0x20504804832202C0L, 0x0100091401081000L,
+			0x8021011140000012L, 0x0810020804450400L, 0x208B0542109008A2L, 0x0080084A08040204L,
+			0x0040E2A80811244CL, 0x2505022008008108L, 0x0430220100420040L, 0x010A040420220040L,
+			0x1105000290400000L, 0x0093001200822120L, 0x4000A62048043004L, 0x280120048A015004L,
+			0x006090002A020814L, 0x44042000240800D0L, 0x01102800040A4400L, 0x1004080080220040L,
+			0x0001001011004024L, 0x0010044000805040L, 0x0914041200820100L, 0x0004821012821480L,
+			0x0024040500C05021L, 0x0088611002080200L, 0x0116080A00040020L, 0x4000020080080080L,
+			0x2450450140840040L, 0x0000880201484100L, 0x0222020404020092L, 0x8081110600002E00L,
+			0x2842101105000801L, 0x1100809008001025L, 0x00020202221C0400L, 0x0422014022009020L,
+			0x0210046102100C00L, 0xC004008082029102L, 0x00AA461801101200L, 0x0404080080201108L,
+			0x020542108C205002L, 0x0410544804100100L, 0x0040910841100000L, 0x0400200042021100L,
+			0x00004204850400C0L, 0x0200100410A42102L, 0x1040020801210102L, 0x0805040410420000L,
+			0x2884804130100200L, 0x800C262201242000L, 0x1058000194108800L, 0x0014221054420204L,
+			0x0104000012A02200L, 0x0200881003300100L, 0x0140400202840100L, 0x0402020801010201L };
+
+	static {
+		for (int square = 0; square < Board.SQUARE_NUM; square++) {
+			KNIGHT[square] = leaperAttacks(square, new int[][] { { 1, 2 }, { 2, 1 }, { 2, -1 }, { 1, -2 },
+					{ -1, -2 }, { -2, -1 }, { -2, 1 }, { -1, 2 } });
+			KING[square] = leaperAttacks(square, new int[][] { { 1, -1 }, { 1, 0 }, { 1, 1 }, { 0, -1 },
+					{ 0, 1 }, { -1, -1 }, { -1, 0 }, { -1, 1 } });
+			PAWN[Common.COLOR_WHITE][square] = leaperAttacks(square, new int[][] { { 1, -1 }, { 1, 1 } });
+			PAWN[Common.COLOR_BLACK][square] = leaperAttacks(square, new int[][] { { -1, -1 }, { -1, 1 } });
+			for (int direction = 0; direction < QUEEN_DIRECTIONS.length; direction++) {
+				RAY[direction][square] = slidingAttacks(square, 0L, new int[][] { QUEEN_DIRECTIONS[direction] });
+				STEP[direction][square] = leaperAttacks(square, new int[][] { QUEEN_DIRECTIONS[direction] });
+			}
+		}
+
+		int size = 0;
+		for (int square = 0; square < Board.SQUARE_NUM; square++) {
+			ROOK_MASK[square] = relevantMask(square, ROOK_DIRECTIONS);
+			ROOK_SHIFT[square] = 64 - Long.bitCount(ROOK_MASK[square]);
+			ROOK_OFFSET[square] = size;
+			size += 1 << Long.bitCount(ROOK_MASK[square]);
+		}
+		for (int square = 0; square < Board.SQUARE_NUM; square++) {
+			BISHOP_MASK[square] = relevantMask(square, BISHOP_DIRECTIONS);
+			BISHOP_SHIFT[square] = 64 - Long.bitCount(BISHOP_MASK[square]);
+			BISHOP_OFFSET[square] = size;
+			size += 1 << Long.bitCount(BISHOP_MASK[square]);
+		}
+		SLIDER_TABLE = new long[size];
+		for (int square = 0; square < Board.SQUARE_NUM; square++) {
+			fillSliderTable(square, ROOK_MASK[square], ROOK_MAGIC[square], ROOK_SHIFT[square],
+					ROOK_OFFSET[square], ROOK_DIRECTIONS);
+			fillSliderTable(square, BISHOP_MASK[square], BISHOP_MAGIC[square], BISHOP_SHIFT[square],
+					BISHOP_OFFSET[square], BISHOP_DIRECTIONS);
+		}
+	}
+
+	private Attacks() {
+	}
+
+	public static long knightAttacks(int square) {
+		return KNIGHT[square];
+	}
+
+	public static long kingAttacks(int square) {
+		return KING[square];
+	}
+
+	/**
+	 * Returns the squares a pawn of the given color on the given square
+	 * captures on.
+	 */
+	public static long pawnAttacks(int color, int square) {
+		return PAWN[color][square];
+	}
+
+	public static long rookAttacks(int square, long occupied) {
+		return SLIDER_TABLE[ROOK_OFFSET[square]
+				+ (int) (((occupied & ROOK_MASK[square]) * ROOK_MAGIC[square]) >>> ROOK_SHIFT[square])];
+	}
+
+	public static long bishopAttacks(int square, long occupied) {
+		return SLIDER_TABLE[BISHOP_OFFSET[square]
+				+ (int) (((occupied & BISHOP_MASK[square]) * BISHOP_MAGIC[square]) >>> BISHOP_SHIFT[square])];
+	}
+
+	public static long queenAttacks(int square, long occupied) {
+		return rookAttacks(square, occupied) | bishopAttacks(square, occupied);
+	}
+
+	public static long archbishopAttacks(int square, long occupied) {
+		return bishopAttacks(square, occupied) | KNIGHT[square];
+	}
+
+	public static long chancellorAttacks(int square, long occupied) {
+		return rookAttacks(square, occupied) | KNIGHT[square];
+	}
+
+	/**
+	 * Returns the squares a grasshoper on the given square attacks : the
+	 * square right behind the first piece (the hurdle) on each line.
+	 */
+	public static long grasshoperAttacks(int square, long occupied) {
+		long attacks = 0L;
+		for (int direction = 0; direction < QUEEN_DIRECTIONS.length; direction++) {
+			long hurdles = RAY[direction][square] & occupied;
+			if (hurdles != 0) {
+				attacks |= STEP[direction][nearest(direction, hurdles)];
+			}
+		}
+		return attacks;
+	}
+
+	/**
+	 * Returns the squares from which a grasshoper attacks the given square,
+	 * for the given board occupancy : the first piece behind each occupied
+	 * square next to it, which has that square as its hurdle.
+	 */
+	public static long grasshoperAttackers(int square, long occupied) {
+		long attackers = 0L;
+		for (int direction = 0; direction < QUEEN_DIRECTIONS.length; direction++) {
+			long hurdle = STEP[direction][square] & occupied;
+			if (hurdle == 0) {
+				continue;
+			}
+			long behind = RAY[direction][Long.numberOfTrailingZeros(hurdle)] & occupied;
+			if (behind != 0) {
+				attackers |= 1L << nearest(direction, behind);
+			}
+		}
+		return attackers;
+	}
+
+	/**
+	 * Returns the squares attacked by a piece of the given type and color on
+	 * the given square, for the given board occupancy. Pawns attack their
+	 * capture squares only. Returns 0 for piece types that don't attack (drop
+	 * any).
+	 */
+	public static long attacks(int type, int color, int square, long occupied) {
+		switch (type) {
+		case Common.PIECE_TYPE_PAWN:
+			return PAWN[color][square];
+		case Common.PIECE_TYPE_KNIGHT:
+			return KNIGHT[square];
+		case Common.PIECE_TYPE_BISHOP:
+			return bishopAttacks(square, occupied);
+		case Common.PIECE_TYPE_ROOK:
+			return rookAttacks(square, occupied);
+		case Common.PIECE_TYPE_QUEEN:
+			return queenAttacks(square, occupied);
+		case Common.PIECE_TYPE_KING:
+			return KING[square];
+		case Common.PIECE_TYPE_ARCHBISHOP:
+			return archbishopAttacks(square, occupied);
+		case Common.PIECE_TYPE_CHANCELLOR:
+			return chancellorAttacks(square, occupied);
+		case Common.PIECE_TYPE_GRASSHOPER:
+			return grasshoperAttacks(square, occupied);
+		}
+		return 0L;
+	}
+
+	/*
+	 * the square of the given ray squares nearest to the start of the ray
+	 */
+	private static int nearest(int direction, long squares) {
+		return (direction < UP_DIRECTIONS) ? Long.numberOfTrailingZeros(squares)
+				: 63 - Long.numberOfLeadingZeros(squares);
+	}
+
+	private static boolean onBoard(int row, int column) {
+		return (row >= 0) && (row < 8) && (column >= 0) && (column < 8);
+	}
+
+	private static long leaperAttacks(int square, int[][] deltas) {
+		long attacks = 0L;
+		for (int[] delta : deltas) {
+			int row = (square >> 3) + delta[0];
+			int column = (square & 7) + delta[1];
+			if (onBoard(row, column)) {
+				attacks |= 1L << ((row << 3) + column);
+			}
+		}
+		return attacks;
+	}
+
+	/*
+	 * the squares whose occupancy can block a slider on the given square. the
+	 * last square of each ray is never relevant
+	 */
+	private static long relevantMask(int square, int[][] directions) {
+		long mask = 0L;
+		for (int[] direction : directions) {
+			int row = (square >> 3) + direction[0];
+			int column = (square & 7) + direction[1];
+			while (onBoard(row + direction[0], column + direction[1])) {
+				mask |= 1L << ((row << 3) + column);
+				row += direction[0];
+				column += direction[1];
+			}
+		}
+		return mask;
+	}
+
+	private static long slidingAttacks(int square, long occupied, int[][] directions) {
+		long attacks = 0L;
+		for (int[] direction : directions) {
+			int row = (square >> 3) + direction[0];
+			int column = (square & 7) + direction[1];
+			while (onBoard(row, column)) {
+				long bit = 1L << ((row << 3) + column);
+				attacks |= bit;
+				if ((occupied & bit) != 0) {
+					break;
+				}
+				row += direction[0];
+				column += direction[1];
+			}
+		}
+		return attacks;
+	}
+
+	private static void fillSliderTable(int square, long mask, long magic, int shift, int offset,
+			int[][] directions) {
+		// enumerate all the subsets of the mask (carry rippler)
+		long occupied = 0L;
+		do {
+			int index = offset + (int) ((occupied * magic) >>> shift);
+			SLIDER_TABLE[index] = slidingAttacks(square, occupied, directions);
+			occupied = (occupied - mask) & mask;
+		} while (occupied != 0);
+	}
+}
@@ -0,0 +1,788 @@
+//==============================================================================
+//            Copyright (c) 2009-2014 ichess.co.il
+//
+//This document contains confidential information which is protected by
+//copyright and is proprietary to ichess.co.il. No part
+//of this document may be used, copied, disclosed, or conveyed to another
+//party without prior written consent of ichess.co.il.
+//==============================================================================
+
+package com.ichess.game;
+
+import java.util.Arrays;
+
+/**
+ * Bitboard representation of the pieces of a Game. Each (color, piece type)
+ * pair has a 64 bit occupancy mask, and the occupancy of each color and of the
+ * whole board are maintained together with them. <br>
+ * Square numbering follows the rest of the package : square ((x - 1) << 3) +
+ * (y - 1) is row x (1..8), column y (1..8), so a1 is bit 0 and h8 is bit 63.
+ * <br>
+ * Besides the pieces, the board holds the primitive game state : the color to
+ * move, the castling rights, the en passant square, the half move clock and
+ * the drop pockets. A Zobrist hash of the position (see Zobrist) is updated
+ * with every change.
+ * <br>
+ * The squares attacked by each color are kept as attack maps, which are
+ * recomputed from the attack tables only when asked for after the pieces
+ * changed. So are the squares from which the side to move would give check,
+ * by piece type, and its pieces that would uncover a check by moving.
+ * <br>
+ * The Game keeps its board of Piece objects as a view over this class. A copy
+ * obtained from Game.getSearchBoard() can play and take back int coded moves
+ * (see MoveCode) with makeMove and unmakeMove, without any analysis, which is
+ * what a search or a perft needs.
+ *
+ * @author Ran Berenfeld
+ * @version 1.0
+ */
+public class Board {
+
+	public static final int SQUARE_NUM = 64;
+
+	// piece types are used directly as index, so keep room up to the chancellor
+	public static final int PIECE_TYPE_SLOTS = Common.PIECE_TYPE_CHANCELLOR + 1;
+
+	public static final int NO_SQUARE = -1;
+
+	// piece codes held in the square array. 0 is an empty square
+	public static final int CODE_COLOR_SHIFT = 4;
+	public static final int CODE_TYPE_MASK = 0xf;
+	public static final int CODE_PROMOTED = 0x40;
+
+	private static final int STATE_CAPTURED_SHIFT = 32;
+	private static final int STATE_REVERSIBLE_SHIFT = 40;
+
+	private static final String TYPE_CHARS = ".pnbrqk?.gacx";
+
+	private final long[][] _pieces = new long[Common.COLOR_NUM][PIECE_TYPE_SLOTS];
+	private final long[] _colors = new long[Common.COLOR_NUM];
+	private long _occupied = 0L;
+	private final int[] _squares = new int[SQUARE_NUM];
+
+	private int _sideToMove = Common.COLOR_WHITE;
+	private int _castling = 0; // castling rights, see castlingRight
+	private int _castlingKingY = 5;
+	private final int[] _castlingRookY = { 0, 8, 1 }; // by castle side
+	private int _epSquare = NO_SQUARE; // square an en passant capture moves to
+	private int _halfmoveClock = 0;
+	private int _reversiblePlies = 0; // plies since the last irreversible move
+	private final int[][] _pockets = new int[Common.COLOR_NUM][PIECE_TYPE_SLOTS]; // drop pieces by type
+	private boolean _dropPockets = false; // crazyhouse and bughouse : promoted pieces are hashed
+	private boolean _capturesToPocket = false; // crazyhouse : captured pieces go to the capturer
+	private long _hash = 0L;
+	private final long[] _attacks = new long[Common.COLOR_NUM]; // attack maps by color
+	private boolean _attacksValid = false;
+	private final long[] _checkSquares = new long[PIECE_TYPE_SLOTS]; // by piece type, for the side to move
+	private long _discoveredCheckers = 0L;
+	private boolean _checkInfoValid = false;
+
+	// moves played by makeMove and the state before each of them
+	private int _ply = 0;
+	private int[] _moveStack = new int[64];
+	private long[] _stateStack = new long[64];
+
+	public Board() {
+	}
+
+	/**
+	 * Creates a copy of the given board position and state. The moves played
+	 * on the given board are not copied, so they can't be taken back on the
+	 * copy.
+	 */
+	public Board(Board other) {
+		for (int color = Common.COLOR_START; color < Common.COLOR_NUM; color++) {
+			System.arraycopy(other._pieces[color], 0, _pieces[color], 0, PIECE_TYPE_SLOTS);
+		}
+		System.arraycopy(other._colors, 0, _colors, 0, Common.COLOR_NUM);
+		System.arraycopy(other._squares, 0, _squares, 0, SQUARE_NUM);
+		_castlingKingY = other._castlingKingY;
+		System.arraycopy(other._castlingRookY, 0, _castlingRookY, 0, Common.CASTLE_NUM);
+		_occupied = other._occupied;
+		_sideToMove = other._sideToMove;
+		_castling = other._castling;
+		_epSquare = other._epSquare;
+		_halfmoveClock = other._halfmoveClock;
+		_reversiblePlies = other._reversiblePlies;
+		for (int color = Common.COLOR_START; color < Common.COLOR_NUM; color++) {
+			System.arraycopy(other._pockets[color], 0, _pockets[color], 0, PIECE_TYPE_SLOTS);
+		}
+		_dropPockets = other._dropPockets;
+		_capturesToPocket = other._capturesToPocket;
+		_hash = other._hash;
+	}
+
+	/**
+	 * Returns the piece code of the given type and color.
+	 */
+	public static int code(int type, int color) {
+		return (color << CODE_COLOR_SHIFT) | type;
+	}
+
+	public static int codeType(int code) {
+		return code & CODE_TYPE_MASK;
+	}
+
+	public static int codeColor(int code) {
+		return (code >> CODE_COLOR_SHIFT) & 3;
+	}
+
+	/**
+	 * Returns the lower case FEN letter of the given piece type.
+	 */
+	public static char typeChar(int type) {
+		return TYPE_CHARS.charAt(type);
+	}
+
+	/**
+	 * Returns the castling rights bit of the given color and castle side
+	 * (Common.CASTLE_KING or Common.CASTLE_QUEEN).
+	 */
+	public static int castlingRight(int color, int castle) {
+		return 1 << (((color - 1) << 1) + (castle - 1));
+	}
+
+	/**
+	 * Returns the square index (0..63) of row x, column y.
+	 */
+	public static int square(int x, int y) {
+		return ((x - 1) << 3) + (y - 1);
+	}
+
+	/**
+	 * Returns true if row x, column y is on the board.
+	 */
+	public static boolean isValidSquare(int x, int y) {
+		return (x >= 1) && (x <= 8) && (y >= 1) && (y <= 8);
+	}
+
+	/**
+	 * Returns the row (1..8) of the given square index.
+	 */
+	public static int squareX(int square) {
+		return (square >> 3) + 1;
+	}
+
+	/**
+	 * Returns the column (1..8) of the given square index.
+	 */
+	public static int squareY(int square) {
+		return (square & 7) + 1;
+	}
+
+	/**
+	 * Returns a mask with only the bit of row x, column y set.
+	 */
+	public static long bit(int x, int y) {
+		return 1L << square(x, y);
+	}
+
+	/**
+	 * Returns the highest square set in the given non empty mask. Iterating
+	 * from the highest square matches the order the Game scans its board (row
+	 * 8 to 1, column 8 to 1).
+	 */
+	public static int lastSquare(long mask) {
+		return 63 - Long.numberOfLeadingZeros(mask);
+	}
+
+	void add(int square, int code) {
+		long bit = 1L << square;
+		int color = codeColor(code);
+		_pieces[color][codeType(code)] |= bit;
+		_colors[color] |= bit;
+		_occupied |= bit;
+		_squares[square] = code;
+		_hash ^= pieceKey(code, square);
+		_attacksValid = false;
+		_checkInfoValid = false;
+	}
+
+	void remove(int square) {
+		int code = _squares[square];
+		long bit = ~(1L << square);
+		_pieces[codeColor(code)][codeType(code)] &= bit;
+		_colors[codeColor(code)] &= bit;
+		_occupied &= bit;
+		_squares[square] = 0;
+		_hash ^= pieceKey(code, square);
+		_attacksValid = false;
+		_checkInfoValid = false;
+	}
+
+	void clear() {
+		for (int color = Common.COLOR_START; color < Common.COLOR_NUM; color++) {
+			for (int type = Common.PIECE_TYPE_START; type < PIECE_TYPE_SLOTS; type++) {
+				_pieces[color][type] = 0L;
+			}
+			_colors[color] = 0L;
+		}
+		_occupied = 0L;
+		for (int square = 0; square < SQUARE_NUM; square++) {
+			if (_squares[square] != 0) {
+				_hash ^= pieceKey(_squares[square], square);
+				_squares[square] = 0;
+			}
+		}
+		_ply = 0;
+		_attacksValid = false;
+		_checkInfoValid = false;
+	}
+
+	void setSideToMove(int color) {
+		if (color != _sideToMove) {
+			_hash ^= Zobrist.side();
+			_checkInfoValid = false;
+		}
+		_sideToMove = color;
+	}
+
+	void setCastling(int castling) {
+		if (castling != _castling) {
+			_hash ^= castlingKey(_castling) ^ castlingKey(castling);
+			_castling = castling;
+		}
+	}
+
+	/**
+	 * Sets the columns (1 to 8) the king and the rooks castle from.
+	 */
+	void setCastlingColumns(int kingY, int queenRookY, int kingRookY) {
+		_hash ^= castlingKey(_castling);
+		_castlingKingY = kingY;
+		_castlingRookY[Common.CASTLE_QUEEN] = queenRookY;
+		_castlingRookY[Common.CASTLE_KING] = kingRookY;
+		_hash ^= castlingKey(_castling);
+	}
+
+	void setEpSquare(int epSquare) {
+		_hash ^= Zobrist.epSquare(_epSquare) ^ Zobrist.epSquare(epSquare);
+		_epSquare = epSquare;
+	}
+
+	void setPocketCount(int color, int type, int count) {
+		_hash ^= Zobrist.pocket(color, type, _pockets[color][type]) ^ Zobrist.pocket(color, type, count);
+		_pockets[color][type] = count;
+	}
+
+	/**
+	 * Sets whether the game has drop pockets (crazyhouse and bughouse), where
+	 * promoted pieces differ from others as they go back to the pockets as
+	 * pawns.
+	 */
+	void setDropPockets(boolean dropPockets) {
+		if (dropPockets != _dropPockets) {
+			for (int square = 0; square < SQUARE_NUM; square++) {
+				if ((_squares[square] & CODE_PROMOTED) != 0) {
+					_hash ^= Zobrist.promoted(square);
+				}
+			}
+		}
+		_dropPockets = dropPockets;
+	}
+
+	/**
+	 * Sets whether captured pieces go to the pocket of the capturing side
+	 * when moves are played with makeMove (crazyhouse).
+	 */
+	void setCapturesToPocket(boolean capturesToPocket) {
+		_capturesToPocket = capturesToPocket;
+	}
+
+	void setHalfmoveClock(int halfmoveClock) {
+		_halfmoveClock = halfmoveClock;
+	}
+
+	/**
+	 * Plays the given move (see MoveCode) on the board. The move is not
+	 * validated. Castling moves must have the castle flag, and en passant
+	 * captures the ep flag.
+	 */
+	public void makeMove(int move) {
+		int color = _sideToMove;
+		int from = MoveCode.getFrom(move);
+		int to = MoveCode.getTo(move);
+		int movedType;
+		int captured = 0;
+
+		if (MoveCode.isDrop(move)) {
+			movedType = MoveCode.getType(move);
+			add(to, code(movedType, color));
+			setPocketCount(color, movedType, _pockets[color][movedType] - 1);
+		} else if (MoveCode.isCastle(move)) {
+			int castle = getCastleSide(move);
+			int rookSquare = castlingRookSquare(from, castle);
+			int rook = _squares[rookSquare];
+			movedType = Common.PIECE_TYPE_KING;
+			remove(from);
+			remove(rookSquare);
+			add(castlingKingSquare(from, castle), code(Common.PIECE_TYPE_KING, color));
+			add(castlingRookTarget(from, castle), rook);
+		} else {
+			int code = _squares[from];
+			int capturedSquare = to;
+			if (MoveCode.isEp(move)) {
+				capturedSquare = to + (color == Common.COLOR_WHITE ? -8 : 8);
+			}
+			captured = _squares[capturedSquare];
+			if (captured != 0) {
+				remove(capturedSquare);
+				if (_capturesToPocket) {
+					int pocketType = pocketType(captured);
+					setPocketCount(color, pocketType, _pockets[color][pocketType] + 1);
+				}
+			}
+			remove(from);
+			if (MoveCode.isPromotion(move)) {
+				add(to, code(MoveCode.getType(move), color) | CODE_PROMOTED);
+			} else {
+				add(to, code);
+			}
+			movedType = codeType(code);
+		}
+
+		pushMove(move, movedType, captured);
+	}
+
+	/**
+	 * Takes back the last move played with makeMove.
+	 */
+	public void unmakeMove() {
+		Utils.Assert(_ply > 0, "no move to unmake");
+		int captured = (int) ((_stateStack[_ply - 1] >>> STATE_CAPTURED_SHIFT) & 0xff);
+		int move = popMove();
+		int color = _sideToMove;
+		int from = MoveCode.getFrom(move);
+		int to = MoveCode.getTo(move);
+
+		if (MoveCode.isDrop(move)) {
+			remove(to);
+			setPocketCount(color, MoveCode.getType(move), _pockets[color][MoveCode.getType(move)] + 1);
+		} else if (MoveCode.isCastle(move)) {
+			int castle = getCastleSide(move);
+			int rookTarget = castlingRookTarget(from, castle);
+			int rook = _squares[rookTarget];
+			remove(castlingKingSquare(from, castle));
+			remove(rookTarget);
+			add(from, code(Common.PIECE_TYPE_KING, color));
+			add(castlingRookSquare(from, castle), rook);
+		} else {
+			int code = _squares[to];
+			remove(to);
+			add(from, MoveCode.isPromotion(move) ? code(Common.PIECE_TYPE_PAWN, color) : code);
+			if (captured != 0) {
+				add(MoveCode.isEp(move) ? to + (color == Common.COLOR_WHITE ? -8 : 8) : to, captured);
+				if (_capturesToPocket) {
+					int pocketType = pocketType(captured);
+					setPocketCount(color, pocketType, _pockets[color][pocketType] - 1);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Records a move whose pieces were already moved on the board : saves the
+	 * state before it on the move stack, updates the castling rights, the en
+	 * passant square and the half move clock, and passes the turn. Game uses
+	 * this after moving its own pieces, so both share the state rules.
+	 *
+	 * @param move
+	 *            the move code
+	 * @param movedType
+	 *            type of the moving (or dropped) piece, before promotion
+	 * @param captured
+	 *            code of the captured piece, or 0
+	 */
+	void pushMove(int move, int movedType, int captured) {
+		if (_ply == _moveStack.length) {
+			_moveStack = Arrays.copyOf(_moveStack, _ply * 2);
+			_stateStack = Arrays.copyOf(_stateStack, _ply * 2);
+		}
+		_moveStack[_ply] = move;
+		_stateStack[_ply] = packState() | ((long) captured << STATE_CAPTURED_SHIFT);
+		_ply++;
+
+		int color = _sideToMove;
+		int from = MoveCode.getFrom(move);
+		int to = MoveCode.getTo(move);
+		int castling = _castling;
+		int epSquare = NO_SQUARE;
+		_halfmoveClock++;
+		_reversiblePlies++;
+		if ((movedType == Common.PIECE_TYPE_PAWN) || (captured != 0)) {
+			_halfmoveClock = 0;
+			_reversiblePlies = 0;
+		}
+
+		if (!MoveCode.isDrop(move)) {
+			if ((movedType == Common.PIECE_TYPE_PAWN) && (Math.abs(to - from) == 16)) {
+				// en passant is possible only next to an enemy pawn
+				long sides = ((1L << (to + 1)) & ~0x0101010101010101L) | ((1L << (to - 1)) & ~0x8080808080808080L);
+				if ((sides & _pieces[Common.OtherColor(color)][Common.PIECE_TYPE_PAWN]) != 0) {
+					epSquare = (from + to) >> 1;
+				}
+			}
+			if (movedType == Common.PIECE_TYPE_KING) {
+				castling &= ~(castlingRight(color, Common.CASTLE_KING) | castlingRight(color, Common.CASTLE_QUEEN));
+			}
+			if (castling != 0) {
+				castling &= ~(castlingLostAt(from) | castlingLostAt(to));
+			}
+		}
+
+		if ((castling != _castling) || MoveCode.isDrop(move)) {
+			_reversiblePlies = 0;
+		}
+		setCastling(castling);
+		setEpSquare(epSquare);
+		setSideToMove(Common.OtherColor(color));
+	}
+
+	/**
+	 * Removes the last move from the move stack and restores the state before
+	 * it. The pieces are not moved back. Returns the move code.
+	 */
+	int popMove() {
+		Utils.Assert(_ply > 0, "no move to pop");
+		_ply--;
+		long state = _stateStack[_ply];
+		setCastling((int) (state & 0xf));
+		setEpSquare((int) ((state >>> 4) & 0x7f) - 1);
+		_halfmoveClock = (int) ((state >>> 11) & 0xffff);
+		_reversiblePlies = (int) ((state >>> STATE_REVERSIBLE_SHIFT) & 0xffff);
+		setSideToMove(Common.OtherColor(_sideToMove));
+		return _moveStack[_ply];
+	}
+
+	private long castlingKey(int castling) {
+		long key = 0L;
+		for (int color = Common.COLOR_WHITE; color <= Common.COLOR_BLACK; color++) {
+			for (int castle = Common.CASTLE_KING; castle <= Common.CASTLE_QUEEN; castle++) {
+				if ((castling & castlingRight(color, castle)) != 0) {
+					key ^= Zobrist.castling(color, castle, _castlingRookY[castle]);
+				}
+			}
+		}
+		return key;
+	}
+
+	private long pieceKey(int code, int square) {
+		long key = Zobrist.piece(code, square);
+		if (_dropPockets && ((code & CODE_PROMOTED) != 0)) {
+			key ^= Zobrist.promoted(square);
+		}
+		return key;
+	}
+
+	/*
+	 * the type a captured piece is dropped as. promoted pieces go back to
+	 * being pawns
+	 */
+	private static int pocketType(int code) {
+		return (code & CODE_PROMOTED) != 0 ? Common.PIECE_TYPE_PAWN : codeType(code);
+	}
+
+	/**
+	 * Returns the castle side (Common.CASTLE_KING or Common.CASTLE_QUEEN) of
+	 * the given castling move.
+	 */
+	int getCastleSide(int move) {
+		int toY = squareY(MoveCode.getTo(move));
+		if (toY == _castlingRookY[Common.CASTLE_QUEEN]) {
+			return Common.CASTLE_QUEEN;
+		}
+		if (toY == _castlingRookY[Common.CASTLE_KING]) {
+			return Common.CASTLE_KING;
+		}
+		return toY < 5 ? Common.CASTLE_QUEEN : Common.CASTLE_KING;
+	}
+
+	private int castlingRookSquare(int kingSquare, int castle) {
+		return (kingSquare & ~7) + _castlingRookY[castle] - 1;
+	}
+
+	private static int castlingKingSquare(int kingSquare, int castle) {
+		return (kingSquare & ~7) + (castle == Common.CASTLE_QUEEN ? 2 : 6);
+	}
+
+	private static int castlingRookTarget(int kingSquare, int castle) {
+		return (kingSquare & ~7) + (castle == Common.CASTLE_QUEEN ? 3 : 5);
+	}
+
+	/*
+	 * the castling rights lost when a piece moves from or to the given square
+	 */
+	private int castlingLostAt(int square) {
+		int x = squareX(square);
+		if ((x != 1) && (x != 8)) {
+			return 0;
+		}
+		int color = x == 1 ? Common.COLOR_WHITE : Common.COLOR_BLACK;
+		int y = squareY(square);
+		int lost = 0;
+		if (y == _castlingRookY[Common.CASTLE_QUEEN]) {
+			lost |= castlingRight(color, Common.CASTLE_QUEEN);
+		}
+		if (y == _castlingRookY[Common.CASTLE_KING]) {
+			lost |= castlingRight(color, Common.CASTLE_KING);
+		}
+		return lost;
+	}
+
+	/*
+	 * the state before a move : castling rights, en passant square, half move
+	 * clock and reversible plies. the captured piece code is added between the
+	 * last two
+	 */
+	private long packState() {
+		return _castling | ((long) (_epSquare + 1) << 4) | ((long) _halfmoveClock << 11)
+				| ((long) _reversiblePlies << STATE_REVERSIBLE_SHIFT);
+	}
+
+	/**
+	 * Returns the squares occupied by pieces of the given type and color. If
+	 * color is 0, returns the pieces of both colors.
+	 */
+	public long getPieces(int type, int color) {
+		if (color == Common.COLOR_START) {
+			return _pieces[Common.COLOR_WHITE][type] | _pieces[Common.COLOR_BLACK][type];
+		}
+		return _pieces[color][type];
+	}
+
+	/**
+	 * Returns the squares occupied by pieces of the given color.
+	 */
+	public long getOccupied(int color) {
+		return _colors[color];
+	}
+
+	/**
+	 * Returns the squares occupied by pieces of any color.
+	 */
+	public long getOccupied() {
+		return _occupied;
+	}
+
+	/**
+	 * Returns the number of pieces of the given type and color.
+	 */
+	public int count(int type, int color) {
+		return Long.bitCount(getPieces(type, color));
+	}
+
+	public boolean isOccupied(int x, int y) {
+		return (_occupied & bit(x, y)) != 0;
+	}
+
+	/**
+	 * Returns the squares attacked by the pieces of the given color, whether
+	 * empty or occupied. Sliders see through the king of the other color, so
+	 * a square is in the map if that king would be attacked after stepping
+	 * there.
+	 */
+	public long getAttacks(int color) {
+		if (!_attacksValid) {
+			_attacks[Common.COLOR_WHITE] = calcAttacks(Common.COLOR_WHITE);
+			_attacks[Common.COLOR_BLACK] = calcAttacks(Common.COLOR_BLACK);
+			_attacksValid = true;
+		}
+		return _attacks[color];
+	}
+
+	/**
+	 * Returns true if the given square is attacked by a piece of the given
+	 * color (see getAttacks).
+	 */
+	public boolean isAttacked(int square, int color) {
+		return (getAttacks(color) & (1L << square)) != 0;
+	}
+
+	/**
+	 * Returns the pieces of the given color that attack the given square,
+	 * with the given board occupancy.
+	 */
+	public long attackersTo(int square, int color, long occupied) {
+		long[] pieces = _pieces[color];
+		long attackers = Attacks.pawnAttacks(Common.OtherColor(color), square) & pieces[Common.PIECE_TYPE_PAWN];
+		attackers |= Attacks.knightAttacks(square) & (pieces[Common.PIECE_TYPE_KNIGHT]
+				| pieces[Common.PIECE_TYPE_ARCHBISHOP] | pieces[Common.PIECE_TYPE_CHANCELLOR]);
+		attackers |= Attacks.kingAttacks(square) & pieces[Common.PIECE_TYPE_KING];
+		attackers |= Attacks.bishopAttacks(square, occupied) & (pieces[Common.PIECE_TYPE_BISHOP]
+				| pieces[Common.PIECE_TYPE_QUEEN] | pieces[Common.PIECE_TYPE_ARCHBISHOP]);
+		attackers |= Attacks.rookAttacks(square, occupied) & (pieces[Common.PIECE_TYPE_ROOK]
+				| pieces[Common.PIECE_TYPE_QUEEN] | pieces[Common.PIECE_TYPE_CHANCELLOR]);
+		if (pieces[Common.PIECE_TYPE_GRASSHOPER] != 0) {
+			attackers |= Attacks.grasshoperAttackers(square, occupied) & pieces[Common.PIECE_TYPE_GRASSHOPER];
+		}
+		return attackers & occupied;
+	}
+
+	/**
+	 * Returns the pieces standing alone between the given square and a slider
+	 * of the given color on one of the given squares. Only a piece that moves
+	 * off that line opens it.
+	 */
+	public long getBlockers(int square, int sliderColor, long sliderSquares) {
+		long[] pieces = _pieces[sliderColor];
+		long rooks = pieces[Common.PIECE_TYPE_ROOK] | pieces[Common.PIECE_TYPE_QUEEN]
+				| pieces[Common.PIECE_TYPE_CHANCELLOR];
+		long bishops = pieces[Common.PIECE_TYPE_BISHOP] | pieces[Common.PIECE_TYPE_QUEEN]
+				| pieces[Common.PIECE_TYPE_ARCHBISHOP];
+		// the sliders on the lines through the square, whatever stands between
+		long snipers = ((Attacks.rookAttacks(square, 0L) & rooks) | (Attacks.bishopAttacks(square, 0L) & bishops))
+				& sliderSquares;
+		long blockers = 0L;
+		while (snipers != 0) {
+			int sniper = Long.numberOfTrailingZeros(snipers);
+			snipers &= snipers - 1;
+			long inTheWay = Geometry.between(square, sniper) & _occupied;
+			if (Long.bitCount(inTheWay) == 1) {
+				blockers |= inTheWay;
+			}
+		}
+		return blockers;
+	}
+
+	/**
+	 * Returns the squares from which a piece of the given type of the side to
+	 * move would give check to the king of the other side, with the current
+	 * occupancy. Empty if that side doesn't have exactly one king. A
+	 * grasshoper's check depends on its hurdle, so it is not given here.
+	 */
+	public long getCheckSquares(int type) {
+		if (!_checkInfoValid) {
+			calcCheckInfo();
+		}
+		return _checkSquares[type];
+	}
+
+	/**
+	 * Returns the pieces of the side to move standing alone between the king
+	 * of the other side and a slider of the side to move. Moving one of them
+	 * off that line gives a discovered check.
+	 */
+	public long getDiscoveredCheckers() {
+		if (!_checkInfoValid) {
+			calcCheckInfo();
+		}
+		return _discoveredCheckers;
+	}
+
+	private void calcCheckInfo() {
+		int them = Common.OtherColor(_sideToMove);
+		long kings = _pieces[them][Common.PIECE_TYPE_KING];
+		Arrays.fill(_checkSquares, 0L);
+		_discoveredCheckers = 0L;
+		if (Long.bitCount(kings) == 1) {
+			int kingSquare = Long.numberOfTrailingZeros(kings);
+			// the attacks of the other pieces are the same both ways
+			_checkSquares[Common.PIECE_TYPE_PAWN] = Attacks.pawnAttacks(them, kingSquare);
+			for (int type = Common.PIECE_TYPE_KNIGHT; type < PIECE_TYPE_SLOTS; type++) {
+				if ((type != Common.PIECE_TYPE_KING) && (type != Common.PIECE_TYPE_GRASSHOPER)) {
+					_checkSquares[type] = Attacks.attacks(type, _sideToMove, kingSquare, _occupied);
+				}
+			}
+			_discoveredCheckers = getBlockers(kingSquare, _sideToMove, ~0L) & _colors[_sideToMove];
+		}
+		_checkInfoValid = true;
+	}
+
+	private long calcAttacks(int color) {
+		long occupied = _occupied & ~_pieces[Common.OtherColor(color)][Common.PIECE_TYPE_KING];
+		long attacks = 0L;
+		for (int type = Common.PIECE_TYPE_PAWN; type < PIECE_TYPE_SLOTS; type++) {
+			long pieces = _pieces[color][type];
+			while (pieces != 0) {
+				int square = Long.numberOfTrailingZeros(pieces);
+				pieces &= pieces - 1;
+				attacks |= Attacks.attacks(type, color, square, occupied);
+			}
+		}
+		return attacks;
+	}
+
+	/**
+	 * Returns the piece code on the given square, or 0 if it is empty.
+	 */
+	public int getCode(int square) {
+		return _squares[square];
+	}
+
+	public int getSideToMove() {
+		return _sideToMove;
+	}
+
+	/**
+	 * Returns the castling rights mask, see castlingRight.
+	 */
+	public int getCastling() {
+		return _castling;
+	}
+
+	public boolean hasCastlingRight(int color, int castle) {
+		return (_castling & castlingRight(color, castle)) != 0;
+	}
+
+	/**
+	 * Returns the column the king castles from.
+	 */
+	public int getCastlingKingY() {
+		return _castlingKingY;
+	}
+
+	/**
+	 * Returns the column of the rook of the given castle side.
+	 */
+	public int getCastlingRookY(int castle) {
+		return _castlingRookY[castle];
+	}
+
+	/**
+	 * Returns the square an en passant capture can move to, or NO_SQUARE.
+	 */
+	public int getEpSquare() {
+		return _epSquare;
+	}
+
+	/**
+	 * Returns the number of half moves since the last capture or pawn move.
+	 */
+	public int getHalfmoveClock() {
+		return _halfmoveClock;
+	}
+
+	/**
+	 * Returns the number of plies since the last irreversible move (a
+	 * capture, a pawn move, a drop or a castling rights change), or since the
+	 * board state was set. Only the positions in this window can repeat the
+	 * current one.
+	 */
+	public int getReversiblePlies() {
+		return _reversiblePlies;
+	}
+
+	/**
+	 * Returns the number of pieces of the given type and color in the drop
+	 * pocket of that color.
+	 */
+	public int getPocketCount(int color, int type) {
+		return _pockets[color][type];
+	}
+
+	/**
+	 * Returns the Zobrist hash of the position and state (without the half
+	 * move clock).
+	 */
+	public long getHash() {
+		return _hash;
+	}
+
+	/**
+	 * Returns the number of moves played with makeMove that can be taken
+	 * back.
+	 */
+	public int getPly() {
+		return _ply;
+	}
+}
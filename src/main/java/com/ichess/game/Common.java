@@ -57,7 +57,6 @@ public class Common {
     public static final int PIECE_TYPE_GRASSHOPER = 9;
     public static final int PIECE_TYPE_ARCHBISHOP = 10;
     public static final int PIECE_TYPE_CHANCELLOR = 11;
-    public static final int PIECE_TYPE_DROP_ANY = 12;
 
     // Return code constants
     public static final int RC_OK = 0;
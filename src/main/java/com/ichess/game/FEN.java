@@ -52,6 +52,158 @@ public class FEN {
     // by default encode in Droppable pieces in [] like winboard format for crazyhouse / bughouse
     public static boolean ENCODE_CAPTURED_AS_XFEN = false;
 
+	/*
+	 * layout of a position record, see getPositionRecord. the first longs hold
+	 * the square codes, 8 bits each
+	 */
+	private static final int RECORD_STATE = 8;
+	private static final int RECORD_HOLDING_COUNTS = 9;
+	private static final int RECORD_HOLDING_TYPES = 10;
+
+	private static final int STATE_CASTLING_SHIFT = 2;
+	private static final int STATE_HOLDING_SHIFT = 6;
+	private static final int STATE_EP_SHIFT = 8;
+	private static final int STATE_HALF_MOVES_SHIFT = 16;
+	private static final int STATE_MOVE_NUMBER_SHIFT = 32;
+
+	private static final int HOLDING_NONE = 0;
+	private static final int HOLDING_XFEN = 1;
+	private static final int HOLDING_BRACKETS = 2;
+
+	/**
+	 * Returns a compact record of the current position of the given Game, that
+	 * the FEN position and FEN string can later be made from, using
+	 * getFENPosition(long[], Game) and getFENString(long[], Game). <br>
+	 * The record holds the piece on each square, the color to move, the
+	 * castling availability, the en passant square as written in the FEN, the
+	 * half move and move numbers, and in crazyhouse and bughouse the holdings
+	 * in the order they are written.
+	 *
+	 * @param game
+	 *            the game whose position is recorded
+	 * @return The position record of the given Game. null on error.
+	 */
+	static long[] getPositionRecord(Game game) {
+		if (game == null) {
+			Log.warning("game == null");
+			return null;
+		}
+
+		int holding = HOLDING_NONE;
+		List<Piece> whiteHolding = null;
+		List<Piece> blackHolding = null;
+		if (game.isCrazyOrBugHouse()) {
+			if (!ENCODE_CAPTURED_AS_XFEN) {
+				holding = HOLDING_BRACKETS;
+				whiteHolding = game.getDroppablePieces(Common.COLOR_WHITE);
+				blackHolding = game.getDroppablePieces(Common.COLOR_BLACK);
+			} else if ((game.isCrazyHouse()) && (game.hasCapturedPieces())) {
+				holding = HOLDING_XFEN;
+				whiteHolding = game.getCapturedPieces(Common.COLOR_WHITE);
+				blackHolding = game.getCapturedPieces(Common.COLOR_BLACK);
+			}
+		}
+
+		int holdingSize = 0;
+		if (holding != HOLDING_NONE) {
+			holdingSize = whiteHolding.size() + blackHolding.size();
+		}
+		long[] record = new long[RECORD_HOLDING_TYPES + ((holdingSize + 15) >> 4)];
+
+		for (int row = 1; row < 9; row++) {
+			for (int col = 1; col < 9; col++) {
+				Piece piece = game.getPieceAt(row, col);
+				if (piece == null) {
+					continue;
+				}
+				long code = Board.code(piece.getType(), piece.getColor());
+				if (piece.isPromoted()) {
+					code |= Board.CODE_PROMOTED;
+				}
+				int square = Board.square(row, col);
+				record[square >> 3] |= code << ((square & 7) << 3);
+			}
+		}
+
+		long state = game.getCurrentColor() & 3;
+		for (int color = Common.COLOR_WHITE; color <= Common.COLOR_BLACK; color++) {
+			for (int cstl = Common.CASTLE_KING; cstl <= Common.CASTLE_QUEEN; cstl++) {
+				if (game.getCastlingAvailability(color, cstl)) {
+					state |= 1L << (STATE_CASTLING_SHIFT + castlingIndex(color, cstl));
+				}
+			}
+		}
+		state |= ((long) holding) << STATE_HOLDING_SHIFT;
+		state |= ((long) (getEpSquare(game) + 1)) << STATE_EP_SHIFT;
+		MoveInfo currentInfo = game.getCurrentMoveInfo();
+		if (currentInfo != null) {
+			state |= (currentInfo.getDraw50MovesCount() & 0xffffL) << STATE_HALF_MOVES_SHIFT;
+		}
+		state |= ((long) game.getMoveNumber()) << STATE_MOVE_NUMBER_SHIFT;
+		record[RECORD_STATE] = state;
+
+		if (holding != HOLDING_NONE) {
+			record[RECORD_HOLDING_COUNTS] = whiteHolding.size() | (blackHolding.size() << 16);
+			int index = 0;
+			for (Piece piece : whiteHolding) {
+				addHoldingType(record, index++, holdingType(piece, holding));
+			}
+			for (Piece piece : blackHolding) {
+				addHoldingType(record, index++, holdingType(piece, holding));
+			}
+		}
+		return record;
+	}
+
+	/*
+	 * index of a castling availability bit in the record state
+	 */
+	private static int castlingIndex(int color, int cstl) {
+		return ((color == Common.COLOR_WHITE) ? 0 : 2) + ((cstl == Common.CASTLE_KING) ? 0 : 1);
+	}
+
+	private static int holdingType(Piece piece, int holding) {
+		return (holding == HOLDING_XFEN) ? piece.getType() : piece.getTypeWhenDropping();
+	}
+
+	private static void addHoldingType(long[] record, int index, int type) {
+		record[RECORD_HOLDING_TYPES + (index >> 4)] |= ((long) type) << ((index & 15) << 2);
+	}
+
+	private static int getHoldingType(long[] record, int index) {
+		return (int) (record[RECORD_HOLDING_TYPES + (index >> 4)] >>> ((index & 15) << 2)) & 0xf;
+	}
+
+	/*
+	 * the en passant square written in the FEN, only if a pawn of the color
+	 * to move can make the en passant capture. Board.NO_SQUARE if none
+	 */
+	private static int getEpSquare(Game game) {
+		int epPawnSquare = game.getEpPawnSquare();
+		if (epPawnSquare == Board.NO_SQUARE) {
+			return Board.NO_SQUARE;
+		}
+		boolean ep_capture_pawn_found = false;
+		int epY = Board.squareY(epPawnSquare);
+		int epX = Board.squareX(epPawnSquare);
+		if (epY > 1) {
+			Piece capturePawn = game.getPieceAt(epX, epY - 1);
+			if ((capturePawn != null) && (capturePawn.isPawn()) && (capturePawn.isColor(game.getCurrentColor()))) {
+				ep_capture_pawn_found = true;
+			}
+		}
+		if (epY < 8) {
+			Piece capturePawn = game.getPieceAt(epX, epY + 1);
+			if ((capturePawn != null) && (capturePawn.isPawn()) && (capturePawn.isColor(game.getCurrentColor()))) {
+				ep_capture_pawn_found = true;
+			}
+		}
+		if (!ep_capture_pawn_found) {
+			return Board.NO_SQUARE;
+		}
+		return Board.square(game.getPieceAt(epX, epY).isWhite() ? epX - 1 : epX + 1, epY);
+	}
+
 	/**
 	 * Returns the FEN position of the given Game. The FEN position is the first
 	 * token of the FEN string, containing only the pieces position.
@@ -65,14 +217,32 @@ public class FEN {
 			Log.warning("game == null");
 			return null;
 		}
+		return getFENPosition(getPositionRecord(game), game);
+	}
+
+	/**
+	 * Returns the FEN position of a position record of the given Game.
+	 *
+	 * @param record
+	 *            a position record, as returned by getPositionRecord
+	 * @param game
+	 *            the game the position was recorded from
+	 * @return The FEN position of the record. null on error.
+	 */
+	static String getFENPosition(long[] record, Game game) {
+		if ((record == null) || (game == null)) {
+			Log.warning("record == null or game == null");
+			return null;
+		}
 
 		StringBuilder result = new StringBuilder();
 
 		for (int row = 8; row > 0; row--) {
 			int emptyCount = 0;
 			for (int col = 1; col < 9; col++) {
-				Piece piece = game.getPieceAt(row, col);
-				if (piece == null) {
+				int square = Board.square(row, col);
+				int code = (int) (record[square >> 3] >>> ((square & 7) << 3)) & 0xff;
+				if (code == 0) {
 					emptyCount++;
 					continue;
 				}
@@ -80,12 +250,12 @@ public class FEN {
 					result.append(emptyCount);
 					emptyCount = 0;
 				}
-				String pieceStr = Notation.sPieceToCharEng.get(piece.getType());
-				if (piece.isBlack()) {
+				String pieceStr = Notation.sPieceToCharEng.get(Board.codeType(code));
+				if (Board.codeColor(code) == Common.COLOR_BLACK) {
 					pieceStr = pieceStr.toLowerCase();
 				}
 				result.append(pieceStr);
-                if ((game.isCrazyOrBugHouse()) && (piece.isPromoted()))
+                if ((game.isCrazyOrBugHouse()) && ((code & Board.CODE_PROMOTED) != 0))
                 {
                     result.append('~');
                 }
@@ -97,45 +267,31 @@ public class FEN {
 				result.append('/');
 			}
 		}
-        if (game.isCrazyOrBugHouse())
+
+		int holding = (int) (record[RECORD_STATE] >>> STATE_HOLDING_SHIFT) & 3;
+		int whiteCount = (int) record[RECORD_HOLDING_COUNTS] & 0xffff;
+		int count = whiteCount + ((int) (record[RECORD_HOLDING_COUNTS] >>> 16) & 0xffff);
+        if (holding == HOLDING_XFEN)
         {
-            if (ENCODE_CAPTURED_AS_XFEN)
-            {
-                // add crazyhouse captured pieces
-                if (game.isCrazyHouse())
-                {
-                    if (game.hasCapturedPieces()) {
-                        result.append('/');
-                        for (Piece piece : game.getCapturedPieces(Common.COLOR_WHITE)) {
-                            String pieceChar = Notation.sPieceToCharEng.get(piece.getType());
-                            result.append(pieceChar.toUpperCase());
-                        }
-                        for (Piece piece : game.getCapturedPieces(Common.COLOR_BLACK)) {
-                            String pieceChar = Notation.sPieceToCharEng.get(piece.getType());
-                            result.append(pieceChar.toLowerCase());
-                        }
-                    }
-                }
+            // add crazyhouse captured pieces
+            result.append('/');
+            for (int index = 0; index < count; index++) {
+                String pieceChar = Notation.sPieceToCharEng.get(getHoldingType(record, index));
+                result.append((index < whiteCount) ? pieceChar.toUpperCase() : pieceChar.toLowerCase());
             }
-            else {
-                // add crazyhouse / bughouse holding
-                result.append('[');
-                boolean hasDroppablePieces = false;
-                for (Piece piece : game.getDroppablePieces(Common.COLOR_WHITE)) {
-                    String pieceChar = Notation.sPieceToCharEng.get(piece.getTypeWhenDropping());
-                    result.append(pieceChar);
-                    hasDroppablePieces = true;
-                }
-                for (Piece piece : game.getDroppablePieces(Common.COLOR_BLACK)) {
-                    String pieceChar = Notation.sPieceToCharEng.get(piece.getTypeWhenDropping());
-                    result.append(pieceChar.toLowerCase());
-                    hasDroppablePieces = true;
-                }
-                if (!hasDroppablePieces) {
-                    result.append("-");
-                }
-                result.append("]");
+        }
+        else if (holding == HOLDING_BRACKETS)
+        {
+            // add crazyhouse / bughouse holding
+            result.append('[');
+            for (int index = 0; index < count; index++) {
+                String pieceChar = Notation.sPieceToCharEng.get(getHoldingType(record, index));
+                result.append((index < whiteCount) ? pieceChar : pieceChar.toLowerCase());
+            }
+            if (count == 0) {
+                result.append("-");
             }
+            result.append("]");
         }
 		return result.toString();
 	}
@@ -157,13 +313,31 @@ public class FEN {
         if (! Utils.isEmptyString(fenString)) {
             return fenString;
         }
+		return getFENString(getPositionRecord(game), game);
+	}
+
+	/**
+	 * Returns the FEN representation of a position record of the given Game.
+	 *
+	 * @param record
+	 *            a position record, as returned by getPositionRecord
+	 * @param game
+	 *            the game the position was recorded from
+	 * @return The FEN representation of the record. null on error.
+	 */
+	static String getFENString(long[] record, Game game) {
+		if ((record == null) || (game == null)) {
+			Log.warning("record == null or game == null");
+			return null;
+		}
+		long state = record[RECORD_STATE];
 
 		StringBuilder fen = new StringBuilder();
 
-		fen.append(getFENPosition(game));
+		fen.append(getFENPosition(record, game));
 		fen.append(" ");
 
-		switch (game.getCurrentColor()) {
+		switch ((int) state & 3) {
 		case Common.COLOR_WHITE:
 			fen.append(FEN_COLOR_WHITE);
 			break;
@@ -178,41 +352,26 @@ public class FEN {
 		// append castling availability
 		fen.append(" ");
 
-		boolean[][] _castling = new boolean[Common.COLOR_NUM][Common.CASTLE_NUM];
-
-		for (int color = Common.COLOR_START; color < Common.COLOR_NUM; color++) {
-			for (int cstl = Common.CASTLE_START; cstl < Common.CASTLE_NUM; cstl++) {
-				if (Common.isBlackOrWhite(color)) {
-					_castling[color][cstl] = game.getCastlingAvailability(color, cstl);
-				}
-			}
-		}
-
         StringBuilder castlingToken = new StringBuilder();
-		boolean canCastle = false;
 		char right = 'k';
 		char left = 'q';
 		if (game.isFischer()) {
-			right = (char) ( (int)'a' + (Integer)game.getAttribute(Game.RIGHT_ROOK_LOCATION) - 1 );
-			left = (char) ( (int)'a' + (Integer)game.getAttribute(Game.LEFT_ROOK_LOCATION) - 1 );
+			right = (char) ( (int)'a' + game.getCastlingRookY(Common.CASTLE_KING) - 1 );
+			left = (char) ( (int)'a' + game.getCastlingRookY(Common.CASTLE_QUEEN) - 1 );
 		}
-		if (_castling[Common.COLOR_WHITE][Common.CASTLE_KING]) {
+		if (hasCastling(state, Common.COLOR_WHITE, Common.CASTLE_KING)) {
             castlingToken.append(Character.toUpperCase(right) );
-			canCastle = true;
 		}
-		if (_castling[Common.COLOR_WHITE][Common.CASTLE_QUEEN]) {
+		if (hasCastling(state, Common.COLOR_WHITE, Common.CASTLE_QUEEN)) {
             castlingToken.append(Character.toUpperCase(left) );
-			canCastle = true;
 		}
-		if (_castling[Common.COLOR_BLACK][Common.CASTLE_KING]) {
+		if (hasCastling(state, Common.COLOR_BLACK, Common.CASTLE_KING)) {
             castlingToken.append( right );
-			canCastle = true;
 		}
-		if (_castling[Common.COLOR_BLACK][Common.CASTLE_QUEEN]) {
+		if (hasCastling(state, Common.COLOR_BLACK, Common.CASTLE_QUEEN)) {
             castlingToken.append(left);
-			canCastle = true;
 		}
-		if (!canCastle) {
+		if (castlingToken.length() == 0) {
             castlingToken.append("-");
 		}
         // sort the string to always have the same FEN representation
@@ -225,43 +384,10 @@ public class FEN {
 
 		fen.append(" ");
 
-		Pawn epPawn = game.getEpPawn();
-		if (epPawn != null) {
-			boolean ep_capture_pawn_found = false;
-			// also check if opponent pawn can make an en passent capture
-			int epY = epPawn.getY();
-			int epX = epPawn.getX();
-			if (epY > 1) {
-				Piece capturePawn = game.getPieceAt(epX, epY - 1);
-				if (capturePawn != null) {
-					if (capturePawn.isPawn()) {
-						if (capturePawn.isColor(game.getCurrentColor())) {
-							// found
-							ep_capture_pawn_found = true;
-						}
-					}
-				}
-			}
-			if (epY < 8) {
-				Piece capturePawn = game.getPieceAt(epX, epY + 1);
-				if (capturePawn != null) {
-					if (capturePawn.isPawn()) {
-						if (capturePawn.isColor(game.getCurrentColor())) {
-							// found
-							ep_capture_pawn_found = true;
-						}
-					}
-				}
-			}
-			if (ep_capture_pawn_found) {
-				if (epPawn.isWhite()) {
-					fen.append(Notation.getSquareEng(epPawn.getX() - 1, epPawn.getY()));
-				} else {
-					fen.append(Notation.getSquareEng(epPawn.getX() + 1, epPawn.getY()));
-				}
-			} else {
-				fen.append("-");
-			}
+		int epSquare = (int) (state >>> STATE_EP_SHIFT) & 0x7f;
+		if (epSquare != 0) {
+			epSquare--;
+			fen.append(Notation.getSquareEng(Board.squareX(epSquare), Board.squareY(epSquare)));
 		} else {
 			fen.append("-");
 		}
@@ -270,22 +396,20 @@ public class FEN {
 
 		fen.append(" ");
 
-		// half moves
-		MoveInfo currentInfo = game.getCurrentMoveInfo();
-		if (currentInfo != null) {
-			fen.append(currentInfo.getDraw50MovesCount());
-		} else {
-			fen.append("0");
-		}
+		fen.append((state >>> STATE_HALF_MOVES_SHIFT) & 0xffff);
 
 		// append full moves number
 		fen.append(" ");
 
-        fen.append(game.getMoveNumber());
+        fen.append((int) (state >>> STATE_MOVE_NUMBER_SHIFT));
 
 		return fen.toString();
 	}
 
+	private static boolean hasCastling(long state, int color, int cstl) {
+		return (state & (1L << (STATE_CASTLING_SHIFT + castlingIndex(color, cstl)))) != 0;
+	}
+
 	public static String removeCastling(String fen){
 		String[] tokens = fen.split("\\s+");
 		if (tokens.length > 2) {
@@ -439,6 +563,7 @@ public class FEN {
 		}
 		Piece white_King = null;
 		Piece black_King = null;
+		int whiteKingColumn = 0, blackKingColumn = 0;
 		int currentRow = 8;
 		for (String row : rows) {
 			if (currentRow == 0) {
@@ -512,13 +637,15 @@ public class FEN {
 			}
 			int column = 1;
             Piece newPiece = null;
+            int newPieceColumn = 0;
             for (byte pieceB : row.getBytes()) {
 				char pieceCh = (char) pieceB;
 
                 if (pieceCh == '~')
                 {
                     // last piece is a promoted pawn
-                    newPiece.setPromoted();
+                    newPiece = newPiece.withPromoted(true);
+                    game.setPieceAt(currentRow, newPieceColumn, newPiece);
                     continue;
                 }
 
@@ -544,6 +671,7 @@ public class FEN {
 					return false;
 				}
 				newPiece = Piece.create(type, color);
+				newPieceColumn = column;
 				game.setPieceAt(currentRow, column, newPiece);
 				if (newPiece.isKing()) {
 					if (color == Common.COLOR_WHITE) {
@@ -562,6 +690,7 @@ public class FEN {
 							}
 						}
 						white_King = newPiece;
+						whiteKingColumn = column;
 					}
 					else {
 						if (black_King != null)
@@ -579,6 +708,7 @@ public class FEN {
 							}
 						}
 						black_King = newPiece;
+						blackKingColumn = column;
 					}
 				}
 				column++;
@@ -652,7 +782,7 @@ public class FEN {
 		int LeftRook = 1;
 		int RightRook = 8;
 		if (!(castling.equals("-") || castling.contains("k") || castling.contains("K") || castling.contains("Q") || castling.contains("q")) ) {
-			kingLoc = black_King.getY();
+			kingLoc = blackKingColumn;
 			LeftRook = 0; // if not defined in castling
 			RightRook = 0;
 			for (byte pieceB : castling.getBytes()) {
@@ -660,7 +790,7 @@ public class FEN {
 				int p = pieceCh - 'a' + 1;
 				if (p<0) { // white can castle
 					p = pieceCh - 'A' + 1;
-					kingLoc = white_King.getY();
+					kingLoc = whiteKingColumn;
 				}
 				if (p>kingLoc) {
 					RightRook = p;
@@ -683,9 +813,8 @@ public class FEN {
 			LeftRook =  kingLoc;
 			RightRook =  kingLoc;
 		}
-		game.setAttribute(Game.KING_LOCATION, kingLoc);
-		game.setAttribute(Game.LEFT_ROOK_LOCATION, LeftRook);
-		game.setAttribute(Game.RIGHT_ROOK_LOCATION, RightRook);
+		game.setCastlingColumns(kingLoc, LeftRook, RightRook);
+		game.setFischerSP(Fischer960.NO_SP);
         Log.debug("Game rooks location right " + RightRook + " king " + kingLoc + " left " + LeftRook);
 
 		Piece whiteKing = game.getPieceAt(1, kingLoc);
@@ -843,7 +972,7 @@ public class FEN {
 		/*
 		 * if FEN contains EP move, add it to the game
 		 */
-        game.setEpPawn(null);
+        game.setEpPawn(0, 0);
 		if (!("-".equals(epMoveStr))) {
 			do {
 				if (epMoveStr.length() != 2) {
@@ -894,7 +1023,7 @@ public class FEN {
 					if (capturingPawn != null) {
 						if ((capturingPawn.isPawn()) && (capturingPawn.isColor(game.getCurrentColor()))) {
 							// found a capturing pawn !
-							game.setEpPawn((Pawn) epPawn);
+							game.setEpPawn(captureX, epY);
 						}
 					}
 				}
@@ -903,7 +1032,7 @@ public class FEN {
 					if (capturingPawn != null) {
 						if ((capturingPawn.isPawn()) && (capturingPawn.isColor(game.getCurrentColor()))) {
 							// found a capturing pawn !
-							game.setEpPawn((Pawn) epPawn);
+							game.setEpPawn(captureX, epY);
 						}
 					}
 				}
@@ -919,6 +1048,8 @@ public class FEN {
 		game.setMoveNumber(_moveNumber);
 		game.setAttribute(Game.INITIAL_POSITION_FEN, fen);
 
+        game.getBoard().setHalfmoveClock(draw50MovesRuleCount);
+
         MoveInfo moveInfo;
         if (startGame) {
             moveInfo = game.getCurrentMoveInfo();
@@ -979,54 +1110,37 @@ public class FEN {
 		return null;
 	}
 
-	public static String create960FEN(){
-		List <String> pos = new ArrayList <String>();
-		pos.addAll( Arrays.asList("R", "K", "R" ) );
-		int i = Utils.random(4);
-		Log.debug(pos+ " I:"+i);
-		pos.add(i, "Q");
-		i = Utils.random(5);
-		pos.add(i, "N");
-		i = Utils.random(6);
-		pos.add(i, "N");
-		i = Utils.random(7);
-		pos.add(i, "B"); // the right bishop
-		int l = 0;
-		if (((i+1) / 2) > 0)
-		{
-			l = Utils.random((i+1)/2);
-		}
-		pos.add(2*l + (i%2), "B"); // left bishop
-		String POS = "";
-		for (i=0;i<8;i++) {
-			POS += pos.get(i);
-		}
-		List <String> letters = Arrays.asList("A","B","C","D","E","F","G","H");
-		String castle = letters.get ( pos.indexOf("R") ) + letters.get(pos.lastIndexOf("R"));
+	/**
+	 * Returns the FEN of a random Fischer 960 start position.
+	 */
+	public static String create960FEN() {
+		return create960FEN(Fischer960.randomSP());
+	}
+
+	/**
+	 * Returns the FEN of the Fischer 960 start position of the given number (0
+	 * to 959, see Fischer960), with the castling letters of its rook columns.
+	 */
+	public static String create960FEN(int sp) {
+		String backRow = Fischer960.getBackRow(sp);
+		String castle = "" + (char) ('A' + Fischer960.getRookY(sp, Common.CASTLE_QUEEN) - 1)
+				+ (char) ('A' + Fischer960.getRookY(sp, Common.CASTLE_KING) - 1);
 		castle += castle.toLowerCase();
-		return POS.toLowerCase() + "/pppppppp/8/8/8/8/PPPPPPPP/" + POS + " w " + castle + " - 0 1";
+		return backRow.toLowerCase() + "/pppppppp/8/8/8/8/PPPPPPPP/" + backRow + " w " + castle + " - 0 1";
 	}
 
     public static Piece type2piece(int type, int color) {
         switch(type) {
             case (Common.PIECE_TYPE_PAWN):
-                return new Pawn(color);
             case (Common.PIECE_TYPE_KNIGHT):
-                return new Knight(color);
             case (Common.PIECE_TYPE_BISHOP):
-                return new Bishop(color);
             case (Common.PIECE_TYPE_ROOK):
-                return new Rook(color);
             case (Common.PIECE_TYPE_QUEEN):
-                return new Queen(color);
             case (Common.PIECE_TYPE_KING):
-                return new King(color);
             case (Common.PIECE_TYPE_GRASSHOPER):
-                return new Grasshoper(color);
             case (Common.PIECE_TYPE_ARCHBISHOP):
-                return new Archbishop(color);
             case (Common.PIECE_TYPE_CHANCELLOR):
-                return new Chancellor(color);
+                return Piece.create(type, color);
         }
         return null;
     }
@@ -0,0 +1,163 @@
+//==============================================================================
+//            Copyright (c) 2009-2014 ichess.co.il
+//
+//This document contains confidential information which is protected by
+//copyright and is proprietary to ichess.co.il. No part
+//of this document may be used, copied, disclosed, or conveyed to another
+//party without prior written consent of ichess.co.il.
+//==============================================================================
+
+package com.ichess.game;
+
+/**
+ * The 960 start positions of Fischer random chess, by their Scharnagl start
+ * position number (SP), shared by all games. SP 518 is the regular start
+ * position. <br>
+ * The SP number gives the white back row : its remainder by 4 places the
+ * bishop of the light squares, the next remainder by 4 the bishop of the
+ * dark squares, the remainder by 6 the queen on the empty squares, and the
+ * rest (0 to 9) the two knights, leaving the king between the rooks. <br>
+ * The castling squares depend only on the king and rook columns, so the
+ * squares that must be empty for a castling and the squares the king passes
+ * are precomputed for every king and rook column, on the first row. A black
+ * castling uses the same masks moved to the last row.
+ *
+ * @author Ran Berenfeld
+ * @version 1.0
+ */
+public final class Fischer960 {
+
+	public static final int SP_NUM = 960;
+	public static final int SP_REGULAR = 518;
+	public static final int SP_RANDOM = -1; // a random start position
+	public static final int NO_SP = -1; // a start position that is not in the table
+
+	// the two knight squares among the five squares left, by the SP number
+	// divided by 96
+	private static final int[][] KNIGHTS = { { 0, 1 }, { 0, 2 }, { 0, 3 }, { 0, 4 }, { 1, 2 }, { 1, 3 },
+			{ 1, 4 }, { 2, 3 }, { 2, 4 }, { 3, 4 } };
+
+	private static final String[] BACK_ROWS = new String[SP_NUM];
+	// the king column, and the rook column by castle side (1 to 8)
+	private static final int[] KING_Y = new int[SP_NUM];
+	private static final int[][] ROOK_Y = new int[SP_NUM][Common.CASTLE_NUM];
+	// by castle side, king column and rook column (0 to 7)
+	private static final long[][][] CASTLING_PATH = new long[Common.CASTLE_NUM][8][8];
+	// by castle side and king column (0 to 7)
+	private static final long[][] CASTLING_KING_PATH = new long[Common.CASTLE_NUM][8];
+
+	static {
+		for (int sp = 0; sp < SP_NUM; sp++) {
+			char[] row = new char[8];
+			int n = sp;
+			row[((n % 4) << 1) + 1] = 'B';
+			n /= 4;
+			row[(n % 4) << 1] = 'B';
+			n /= 4;
+			row[emptySquare(row, n % 6)] = 'Q';
+			n /= 6;
+			// the second knight first, so the first one's square is still empty
+			row[emptySquare(row, KNIGHTS[n][1])] = 'N';
+			row[emptySquare(row, KNIGHTS[n][0])] = 'N';
+			row[emptySquare(row, 0)] = 'R';
+			row[emptySquare(row, 0)] = 'K';
+			row[emptySquare(row, 0)] = 'R';
+			BACK_ROWS[sp] = new String(row);
+			KING_Y[sp] = BACK_ROWS[sp].indexOf('K') + 1;
+			ROOK_Y[sp][Common.CASTLE_QUEEN] = BACK_ROWS[sp].indexOf('R') + 1;
+			ROOK_Y[sp][Common.CASTLE_KING] = BACK_ROWS[sp].lastIndexOf('R') + 1;
+		}
+		for (int castle = Common.CASTLE_KING; castle <= Common.CASTLE_QUEEN; castle++) {
+			int kingTarget = castle == Common.CASTLE_QUEEN ? 2 : 6;
+			int rookTarget = castle == Common.CASTLE_QUEEN ? 3 : 5;
+			for (int king = 0; king < 8; king++) {
+				for (int rook = 0; rook < 8; rook++) {
+					int left = Math.min(Math.min(king, rook), Math.min(kingTarget, rookTarget));
+					int right = Math.max(Math.max(king, rook), Math.max(kingTarget, rookTarget));
+					CASTLING_PATH[castle][king][rook] = Geometry.span(left, right) & ~(1L << king) & ~(1L << rook);
+				}
+				CASTLING_KING_PATH[castle][king] = Geometry.span(king, kingTarget);
+			}
+		}
+	}
+
+	private Fischer960() {
+	}
+
+	public static boolean isValid(int sp) {
+		return (sp >= 0) && (sp < SP_NUM);
+	}
+
+	/**
+	 * Returns a random start position number.
+	 */
+	public static int randomSP() {
+		return Utils.random(SP_NUM);
+	}
+
+	/**
+	 * Returns the white back row of the given start position, from column a
+	 * to h, for example "RNBQKBNR" for SP 518.
+	 */
+	public static String getBackRow(int sp) {
+		return BACK_ROWS[sp];
+	}
+
+	/**
+	 * Returns the start position number of the given white back row, or
+	 * NO_SP if it's not a Fischer random start position.
+	 */
+	public static int getSP(String backRow) {
+		for (int sp = 0; sp < SP_NUM; sp++) {
+			if (BACK_ROWS[sp].equals(backRow)) {
+				return sp;
+			}
+		}
+		return NO_SP;
+	}
+
+	/**
+	 * Returns the column (1 to 8) of the king in the given start position.
+	 */
+	public static int getKingY(int sp) {
+		return KING_Y[sp];
+	}
+
+	/**
+	 * Returns the column (1 to 8) of the rook of the given castle side in the
+	 * given start position.
+	 */
+	public static int getRookY(int sp, int castle) {
+		return ROOK_Y[sp][castle];
+	}
+
+	/**
+	 * Returns the squares of the first row that must be empty, except for
+	 * the king and the rook themselves, for a castling of the given side with
+	 * the king and the rook on the given columns (1 to 8).
+	 */
+	public static long getCastlingPath(int castle, int kingY, int rookY) {
+		return CASTLING_PATH[castle][kingY - 1][rookY - 1];
+	}
+
+	/**
+	 * Returns the squares of the first row the king passes, and may not be
+	 * attacked on, for a castling of the given side with the king on the
+	 * given column (1 to 8).
+	 */
+	public static long getCastlingKingPath(int castle, int kingY) {
+		return CASTLING_KING_PATH[castle][kingY - 1];
+	}
+
+	/*
+	 * the index of the n-th empty square of the row, from column a
+	 */
+	private static int emptySquare(char[] row, int n) {
+		for (int y = 0; y < 8; y++) {
+			if ((row[y] == 0) && (n-- == 0)) {
+				return y;
+			}
+		}
+		return -1;
+	}
+}
@@ -13,6 +13,7 @@ import com.ichess.game.Common;
 import com.ichess.game.piece.King;
 import com.ichess.game.piece.Pawn;
 import com.ichess.game.piece.Piece;
+import com.ichess.game.rules.VariantRules;
 import com.ichess.game.Utils;
 
 import java.util.*;
@@ -40,10 +41,6 @@ public class Game {
 	// use this attribute to set a unique ID for the game
 	public static final String GAME_ID_ATTRIBUTE = "game-id";
 
-	static final String KING_LOCATION = "king-location";
-	static final String RIGHT_ROOK_LOCATION = "right-rook-location";
-	static final String LEFT_ROOK_LOCATION = "left-rook-location";
-
     // analysis variables
     public Piece[] board_pieces;
     public int white_material;
@@ -57,6 +54,16 @@ public class Game {
 	// and increases after black move
 	private Piece[][] _board = new Piece[8][8];
 
+	// bitboards of the pieces on _board. kept in sync by putPiece
+	private Board _position = new Board();
+
+	// rows 1 and 8, where no pawn may stand
+	private static final long PAWNLESS_ROWS = 0xff000000000000ffL;
+
+	// scratch buffer of the legal moves, reused so that playing a move
+	// allocates only the history it keeps
+	private final MoveBuffer _legalMoves = new MoveBuffer();
+
 	private int _clockDuration[] = new int[Common.COLOR_NUM];
 
 	// white and black clocks
@@ -68,12 +75,10 @@ public class Game {
 	 */
 	private boolean _ended = false;
 	private String _endString;
-	private Pawn _epPawn; // pawn that just made 2 square jump
 	private boolean _isPaused = false;
-	private King _king[] = new King[Common.COLOR_NUM];
 	private ArrayList<MoveInfo> _moveInfos = new ArrayList<MoveInfo>(40);
-    private List<Piece> _whiteCaptured = new ArrayList<Piece>();
-    private List<Piece> _blackCaptured = new ArrayList<Piece>();
+    private final Pocket _whiteCaptured = new Pocket(Common.COLOR_WHITE);
+    private final Pocket _blackCaptured = new Pocket(Common.COLOR_BLACK);
     private Game _otherGame = null;
 
     public void setOtherGame(Game otherGame)
@@ -120,6 +125,54 @@ public class Game {
         return result;
     }
 
+    /*
+     * copy the number of droppable pieces of each type to the board, so they
+     * are part of the position hash. in bughouse the other game changes the
+     * pockets too, so this is done whenever the board state is read
+     */
+    private void updatePocketCounts()
+    {
+        if (! isCrazyOrBugHouse())
+        {
+            return;
+        }
+        for (int color = Common.COLOR_WHITE; color <= Common.COLOR_BLACK; color++)
+        {
+            Pocket pocket = getDropPocket(color);
+            for (int type = Common.PIECE_TYPE_PAWN; type < Board.PIECE_TYPE_SLOTS; type++)
+            {
+                int count;
+                if (pocket != null)
+                {
+                    count = pocket.getDropCount(type);
+                }
+                else
+                {
+                    // a bughouse game without the other board may drop any piece once
+                    count = (type <= Common.PIECE_TYPE_QUEEN) ? 1 : 0;
+                }
+                _position.setPocketCount(color, type, count);
+            }
+        }
+    }
+
+    /*
+     * the pocket the given color drops from, or null if there is none, as in
+     * a bughouse game that has no other game set
+     */
+    private Pocket getDropPocket(int color)
+    {
+        if (isCrazyHouse())
+        {
+            return getCapturedPieces(Common.OtherColor(color));
+        }
+        if (isBugHouse() && (_otherGame != null))
+        {
+            return _otherGame.getCapturedPieces(color);
+        }
+        return null;
+    }
+
     public List<Piece> getDroppablePieces(int color)
     {
         if (isCrazyHouse())
@@ -159,7 +212,7 @@ public class Game {
         return new ArrayList<Piece>();
     }
 
-    public List<Piece> getCapturedPieces(int color) {
+    public Pocket getCapturedPieces(int color) {
         return color == Common.COLOR_WHITE ? _whiteCaptured : _blackCaptured;
     }
 
@@ -177,11 +230,7 @@ public class Game {
 
     public void setCapturedPieces(int color, List<Piece> pieces)
     {
-        if (color == Common.COLOR_WHITE) {
-            _whiteCaptured = pieces;
-        } else {
-            _blackCaptured = pieces;
-        }
+        getCapturedPieces(color).setPieces(pieces);
     }
 
     public void setDroppablePieces(int color, List<Piece> pieces)
@@ -191,21 +240,13 @@ public class Game {
             {
                 Utils.Assert(piece.getColor() == Common.OtherColor(color));
             }
-            if (color == Common.COLOR_WHITE) {
-                _blackCaptured = pieces;
-            } else {
-                _whiteCaptured = pieces;
-            }
+            getCapturedPieces(Common.OtherColor(color)).setPieces(pieces);
         }
         else if (isBugHouse())
         {
             Game otherGame = getOtherGame();
             if (otherGame != null) {
-                if (color == Common.COLOR_WHITE) {
-                    otherGame._whiteCaptured = pieces;
-                } else {
-                    otherGame._blackCaptured = pieces;
-                }
+                otherGame.getCapturedPieces(color).setPieces(pieces);
             }
         }
     }
@@ -243,6 +284,20 @@ public class Game {
 
 	private int _grules = Common.GAME_RULES_REGULAR;
 
+	// the Fischer 960 start position number, or Fischer960.NO_SP
+	private int _fischerSP = Fischer960.NO_SP;
+
+	// the rules of the game kind and rules, bound when either is set
+	private VariantRules _rules = VariantRules.create(Common.GAME_KIND_REGULAR, Common.GAME_RULES_REGULAR);
+
+	// legal move generator for the game kind and rules. created on demand
+	private MoveGenerator _moveGenerator = null;
+
+	// a copy of the position for other threads, replaced after every move
+	// and takeback while publishing is on
+	private boolean _publishPositions = false;
+	private volatile Board _publishedPosition = null;
+
 	public int getGameRules()
 	{
 		return _grules;
@@ -255,6 +310,8 @@ public class Game {
 			Log.warning("can't change game rules of a started game");
 		}
 		_grules = grules;
+		_rules = VariantRules.create(_gkind, _grules);
+		_moveGenerator = null;
 	}
 
 	private int _gkind = Common.GAME_KIND_REGULAR;
@@ -271,6 +328,16 @@ public class Game {
 			Log.warning("can't change game kind of a started game");
 		}
 		_gkind = gkind;
+		_rules = VariantRules.create(_gkind, _grules);
+		_position.setDropPockets(_rules.getDrops() != VariantRules.DROPS_NONE);
+		_moveGenerator = null;
+	}
+
+	/**
+	 * Returns the rules of this game kind and rules.
+	 */
+	public VariantRules getRules() {
+		return _rules;
 	}
 
 	public boolean isFischer()
@@ -337,6 +404,11 @@ public class Game {
 	public Game(String whiteName, String blackName) {
 		this(whiteName, blackName, Common.GAME_KIND_REGULAR);
 	}
+
+	public Game(String whiteName, String blackName, int gkind) {
+		this(whiteName, blackName, gkind, Fischer960.SP_RANDOM);
+	}
+
 	/**
 	 * Creates a new chess game. the white and black player names are given
 	 *
@@ -344,8 +416,13 @@ public class Game {
 	 *            the white player's name
 	 * @param blackName
 	 *            the black player's name
+	 * @param gkind
+	 *            the game kind
+	 * @param sp
+	 *            the Fischer 960 start position number (0 to 959), or
+	 *            Fischer960.SP_RANDOM. Used by Fischer games only
 	 */
-	public Game(String whiteName, String blackName, int gkind) {
+	public Game(String whiteName, String blackName, int gkind, int sp) {
 		_gkind = gkind;
 		// set default game rules base on game kind
 		switch (_gkind)
@@ -363,6 +440,7 @@ public class Game {
 				_grules = Common.GAME_RULES_REGULAR;
 			break;
 		}
+		_rules = VariantRules.create(_gkind, _grules);
 
 		_whiteName = whiteName;
 		_blackName = blackName;
@@ -387,7 +465,7 @@ public class Game {
 		setAttribute(CHECK_REPEATITION_DRAW, false);
 		setAttribute(CHECK_NO_MATERIAL_DRAW, false);
 
-		initialPosition();
+		initialPosition(sp);
 	}
 
     /*
@@ -396,8 +474,13 @@ public class Game {
     public Game (Game game) {
         copyPositionFrom(game);
         _currentColor = game._currentColor;
+        _position.setSideToMove(_currentColor);
         _currentMove = game._currentMove;
         _gkind = game._gkind;
+        _grules = game._grules;
+        _rules = game._rules;
+        _position.setDropPockets(_rules.getDrops() != VariantRules.DROPS_NONE);
+        _moveGenerator = null;
         _ended = game._ended;
         _winner = game._winner;
         _movelist = game._movelist;
@@ -428,7 +511,6 @@ public class Game {
         return analyse(false);
     }
 
-    @SuppressWarnings( { "unchecked" })
 	private int analyse(boolean fast) {
 
 
@@ -440,35 +522,36 @@ public class Game {
 
 		Level debugLevelOnFail = (_currentMove == 0 ? Utils.INFO : Utils.WARNING);
 
-            // check exactly 1 king for each size
-        List<Piece> currentColorKings = findPieces(Common.PIECE_TYPE_KING, _currentColor);
-        List<Piece> otherColorKings = findPieces(Common.PIECE_TYPE_KING, otherColor);
+        // check exactly 1 king for each size. the pieces are counted on the
+        // board, so that a steady state analyse allocates only the new move info
+        long currentColorKings = _position.getPieces(Common.PIECE_TYPE_KING, _currentColor);
+        long otherColorKings = _position.getPieces(Common.PIECE_TYPE_KING, otherColor);
 
         if (!fast) {
-            if (! isSuicideOrFreePlay())
+            if (_rules.hasRoyalKings())
             {
-                if (currentColorKings.size() == 0)
+                if (currentColorKings == 0)
                 {
                     Log.debug(debugLevelOnFail, "no moving king - analyze failed");
                     ;
                     return Common.RC_GENERAL_FAILURE;
                 }
 
-                if (currentColorKings.size() > 1)
+                if (Long.bitCount(currentColorKings) > 1)
                 {
                     Log.debug(debugLevelOnFail, "more then 1 moving king - analyze failed");
                     ;
                     return Common.RC_GENERAL_FAILURE;
                 }
 
-                if (otherColorKings.size() == 0)
+                if (otherColorKings == 0)
                 {
                     Log.debug(debugLevelOnFail, "no other king - analyze failed");
                     ;
                     return Common.RC_GENERAL_FAILURE;
                 }
 
-                if (otherColorKings.size() > 1)
+                if (Long.bitCount(otherColorKings) > 1)
                 {
                     Log.debug(debugLevelOnFail, "more then 1 other king - analyze failed");
                     ;
@@ -477,710 +560,48 @@ public class Game {
             }
 
             // check that there are no pawns on lines 1 or 8
-            List<Piece> currentColorPawns = findPieces(Common.PIECE_TYPE_PAWN, _currentColor);
-            List<Piece> otherColorPawns = findPieces(Common.PIECE_TYPE_PAWN, otherColor);
-
-            for (Piece pawn : currentColorPawns)
+            if ((_position.getPieces(Common.PIECE_TYPE_PAWN, _currentColor) & PAWNLESS_ROWS) != 0)
             {
-                if ((pawn.getX() == 1) || (pawn.getX() == 8))
-                {
-                    Log.debug(debugLevelOnFail, "moving pawn on row 1 or 8 - analyze failed");
-                    ;
-                    return Common.RC_GENERAL_FAILURE;
-                }
+                Log.debug(debugLevelOnFail, "moving pawn on row 1 or 8 - analyze failed");
+                ;
+                return Common.RC_GENERAL_FAILURE;
             }
 
-            for (Piece pawn : otherColorPawns)
+            if ((_position.getPieces(Common.PIECE_TYPE_PAWN, otherColor) & PAWNLESS_ROWS) != 0)
             {
-                if ((pawn.getX() == 1) || (pawn.getX() == 8))
-                {
-                    Log.debug(debugLevelOnFail, "other pawn on row 1 or 8 - analyze failed");
-                    ;
-                    return Common.RC_GENERAL_FAILURE;
-                }
+                Log.debug(debugLevelOnFail, "other pawn on row 1 or 8 - analyze failed");
+                ;
+                return Common.RC_GENERAL_FAILURE;
             }
         }
 
-		int kingX = 0;
-		int kingY = 0;
-
-		Piece movingKing = null;
-		Piece otherKing = null;
-
-		if (! isSuicideOrFreePlay())
-		{
-			_king[_currentColor] = (King) Utils.getFirstInList(currentColorKings);
-			_king[otherColor] = (King) Utils.getFirstInList(otherColorKings);
-
-			movingKing = _king[_currentColor];
-			otherKing = _king[otherColor];
-
-			kingX = movingKing.getX();
-			kingY = movingKing.getY();
-		}
-
-		// iterate, find all the moving and other pieces
-		Vector<Piece>[] pieces = new Vector[Common.COLOR_NUM];
-		pieces[Common.COLOR_WHITE] = new Vector<Piece>();
-		pieces[Common.COLOR_BLACK] = new Vector<Piece>();
-
-		Vector<Piece> otherPieces = pieces[otherColor];
-		Vector<Piece> movingPieces = pieces[_currentColor];
-		// calculate readability for all pieces
-		for (int x = 8; x != 0; x--) {
-			for (int y = 8; y != 0; y--) {
-				Piece piece = getPieceAt(x, y);
-				if (piece == null) {
-					continue;
-				}
-				piece.setPinned(false);
-				piece.clearReachability();
-				piece.doCalcReachability(this);
-				pieces[piece.getColor()].add(piece);
-			}
-		}
-		if (!fast && ! isSuicideOrFreePlay())
+		// the squares each piece can reach, and the pinned pieces, are found by
+		// the move generator when needed
+		if (!fast && _rules.hasRoyalKings())
 		{
 			if (_currentMove == 0) {
 
 				// this is the very first move. so also check that the other color
 				// is not checked.
 				// if it is - fail the analyse
-				for (Piece movingPiece : movingPieces) {
-					movingPiece.setCheckPin(true);
-					Log.debug(_grules + " piece " + movingPiece.getType() + ":" + movingPiece.getColor() + "," + movingPiece.getPinningPiece()
-					    + " " + movingPiece.getX() + "," + movingPiece.getY());
-					if (movingPiece.canMoveTo(otherKing.getX(), otherKing.getY(), this)) {
-						Log.debug(debugLevelOnFail, "other side in check - analyse failed");
-						;
-						return Common.RC_GENERAL_FAILURE;
-					}
+				if (_position.isAttacked(Board.lastSquare(otherColorKings), _currentColor)) {
+					Log.debug(debugLevelOnFail, "other side in check - analyse failed");
+					;
+					return Common.RC_GENERAL_FAILURE;
 				}
 			}
 		}
 
-		// check if moving side is in check
-		newMoveInfo.setCheck(false);
-		newMoveInfo.setDoubleCheck(false);
-		Piece checkingPiece = null;
-		Piece oldPiece = null;
-		boolean floatCheck = false;
-
-		if (! isSuicideOrFreePlay())
-		{
-			int checkCount = 0;
-			for (Piece otherPiece : otherPieces) {
-				otherPiece.setCheckPin(true);
-				if (otherPiece.canMoveTo(kingX, kingY, this)) {
-					if (newMoveInfo.isCheck()) {
-						newMoveInfo.setDoubleCheck(true);
-					} else {
-						newMoveInfo.setCheck(true);
-					}
-					oldPiece = checkingPiece;
-					checkingPiece = otherPiece;
-					checkCount++;
-					if (checkCount == 2) {
-						floatCheck = true;
-						if (checkingPiece.isGrasshoper()) { // double check grasshopper
-							checkingPiece = oldPiece;
-							oldPiece = otherPiece; // grasshopper
-						}
-					}
-				}
-				otherPiece.setCheckPin(false);
-			}
-		}
-
-		if (newMoveInfo.isCheck()) {
-
-			newMoveInfo.setCheckMate(true);
-			// moving side is in check. find all valid moved to get out of check
-			// first test is to move the king
-			for (int x = (kingX - 1); x <= (kingX + 1); x++) {
-				for (int y = (kingY - 1); y <= (kingY + 1); y++) {
-					if ((x < 1) || (x > 8) || (y < 1) || (y > 8)) {
-						continue;
-					}
-					Piece piece = getPieceAt(x, y);
-					if (piece != null) {
-						if (piece.getColor() == _currentColor) {
-							// the king can't move there
-							continue;
-						}
-					}
-					// check if other pieces can move here by removing temporary
-					// from the board and moving the king there
-					_board[x - 1][y - 1] = movingKing;
-					_board[kingX - 1][kingY - 1] = null;
-					boolean otherGuard = false;
-					for (Piece otherPiece : otherPieces) {
-						if (otherPiece.canMoveTo(x, y, this)) {
-							otherGuard = true;
-							break;
-						}
-					}
-					_board[x - 1][y - 1] = piece;
-					_board[kingX - 1][kingY - 1] = movingKing;
-
-					if (otherGuard) {
-						// still in check mate
-						continue;
-					}
-
-					// found a valid move for the king
-					newMoveInfo.addValidMove(movingKing, x, y);
-					newMoveInfo.setCheckMate(false);
-				}
-			}
-
-			int checkingX = checkingPiece.getX();
-			int checkingY = checkingPiece.getY();
-
-			// if not float check, see if someone can capture the checking
-			// piece
-			if (!floatCheck) {
-
-				for (Piece movingPiece : movingPieces) {
-					if (movingPiece.isKing()) {
-						continue;
-					}
-					// can capture if not (pinned and pinning piece is not
-					// checking piece)
-					if (movingPiece.isReachable(checkingX, checkingY)
-						&& (!(movingPiece.isPinned() && movingPiece.getPinningPiece() != checkingPiece))) {
-						newMoveInfo.addValidMove(movingPiece, checkingX, checkingY);
-						newMoveInfo.setCheckMate(false);
-					}
-				}
-
-				// if checking piece is a pawn that just made 2 jump move, maybe
-				// it can be captured with ep
-				if (checkingPiece.isPawn()) {
-					if (getEpPawn() != null) {
-						int epCaptureX = getEpPawn().getX();
-						if (_currentColor == Common.COLOR_WHITE) {
-							epCaptureX++;
-						} else {
-							epCaptureX--;
-						}
-						for (Piece movingPiece : movingPieces) {
-							if (!movingPiece.isPawn()) {
-								continue;
-							}
-							// can capture if not (pinned and pinning piece is
-							// not checking piece)
-							if (movingPiece.isReachable(epCaptureX, checkingY) && (!(movingPiece.isPinned()))) {
-
-								newMoveInfo.addValidMove(movingPiece, epCaptureX, checkingY);
-								newMoveInfo.setCheckMate(false);
-							}
-						}
-					}
-				}
-			}
-
-			else if (oldPiece.isGrasshoper()) { // double check on grasshopper
-
-				for (Piece movingPiece : movingPieces) {
-					if (movingPiece.isKing()) {
-						continue;
-					}
-					// can capture if not (pinned and pinning piece is not
-					// checking piece)
-					if (movingPiece.isReachable(checkingX, checkingY)
-						&& (!(movingPiece.isPinned() && movingPiece.getPinningPiece() != checkingPiece))) {
-						// verify that the grass doens't check anymore
-						int X = movingPiece.getX();
-						int Y = movingPiece.getY();
-						_board[X-1][Y-1] = null;
-						if (!oldPiece.canMoveTo(kingX, kingY, this)) { // doesn't check
-                            //Log.info("adding move " + movingPiece.isQueen() + checkingX + " " + checkingY);
-							newMoveInfo.addValidMove(movingPiece, checkingX, checkingY);
-							newMoveInfo.setCheckMate(false);
-						}
-						_board[X-1][Y-1] = movingPiece;
-					}
-				}
-
-				// if checking piece is a pawn that just made 2 jump move, maybe
-				// it can be captured with ep
-				if (checkingPiece.isPawn()) {
-					if (getEpPawn() != null) {
-						int epCaptureX = getEpPawn().getX();
-						if (_currentColor == Common.COLOR_WHITE) {
-							epCaptureX++;
-						} else {
-							epCaptureX--;
-						}
-						for (Piece movingPiece : movingPieces) {
-							if (!movingPiece.isPawn()) {
-								continue;
-							}
-							// can capture if not (pinned and pinning piece is
-							// not checking piece)
-							if (movingPiece.isReachable(epCaptureX, checkingY) && (!(movingPiece.isPinned()))) {
-
-								newMoveInfo.addValidMove(movingPiece, epCaptureX, checkingY);
-								newMoveInfo.setCheckMate(false);
-							}
-						}
-					}
-				}
-			}
-
-			// if not float check, and checking piece is not knight, maybe someone
-			// can block the check
-			boolean knightCheck = false;
-
-			if (checkingPiece.isKnight() || (checkingX != kingX && checkingY != kingY && Math.abs(checkingX - kingX) != Math.abs(checkingY - kingY)) ) {
-				knightCheck = true;
-			}
-			if ((!knightCheck) && (!floatCheck)) {
-				int dirX = kingX > checkingX ? 1 : kingX < checkingX ? -1 : 0;
-				int dirY = kingY > checkingY ? 1 : kingY < checkingY ? -1 : 0;
-
-				int x = checkingX + dirX;
-				int y = checkingY + dirY;
-				while ((x != kingX) || (y != kingY)) {
-					for (Piece movingPiece : movingPieces) {
-						if (movingPiece.isKing()) {
-							continue;
-						}
-						if (movingPiece.isReachable(x, y) && (!movingPiece.isPinned())) {
-							Log.debug("in the way." + x + "," + y + ":" + kingX + "," + kingY + "~" + dirX + "," + dirY);
-							if (checkingPiece.isGrasshoper() ) {
-								if ( (x == kingX - dirX ) && (y == kingY - dirY ) ) {
-									continue; // capture piece in front of the king doesn't help
-								}
-							}
-                            Log.debug("adding blocking move by " + movingPiece.getType() + " to " + x + "," + y);
-							newMoveInfo.addValidMove(movingPiece, x, y);
-							newMoveInfo.setCheckMate(false);
-						} // maybe the checking piece is a grasshopper - then some piece might "go away" from the king
-					}
-
-
-                    // in crazy house and bug house, any piece can be dropped in the middle
-                    // in crazy house, check if we have droppable piece.
-                    // in bug house, don't check
-                    // in both cases, add drop any move
-                    if (isCrazyOrBugHouse())
-                    {
-                        // in bughouse always add drop any. we don't know what we'll get in the future
-                        boolean addDropAnyMove = true;
-                        if (isCrazyHouse())
-                        {
-                            // in crazyhouse need to check that a droppable piece can be dropped
-                            // in the target square (can be a pawn in row1/8)
-                            addDropAnyMove = false;
-                            List<Piece> droppable = getDroppablePieces(_currentColor);
-                            for (Piece piece : droppable)
-                            {
-                                Piece actuallyDroppedPiece = Piece.create( piece.getTypeWhenDropping(),
-                                        piece.getColor());
-                                if (actuallyDroppedPiece.canBeDroppedAt(x,y))
-                                {
-                                    addDropAnyMove = true;
-                                    break;
-                                }
-                            }
-                        }
-
-                        if (addDropAnyMove)
-                        {
-                            Piece droppedPiece = Piece.create(Common.PIECE_TYPE_DROP_ANY, _currentColor);
-                            Log.debug("adding drop move by " + droppedPiece.getType() + " color " + Common.GetColor(droppedPiece.getColor()) + " to " + x + "," + y);
-                            newMoveInfo.addValidMove(droppedPiece, x, y, true);
-                            newMoveInfo.setCheckMate(false);
-                        }
-                    }
-					x += dirX;
-					y += dirY;
-				}
-
-				if (checkingPiece.isGrasshoper()) {
-					Piece saver = _board[kingX - dirX - 1][kingY - dirY - 1];
-					if (saver != null && saver.isColor(_currentColor)){
-						for (int a=1; a<9; a++){ // if he can move anywhere - it won't be check
-							for (int b=1; b<9; b++){
-                                Boolean move2check = false;
-								if (saver.isReachable(a, b)) {
-                                    // check that not causing new check for grass
-                                    if (Math.abs(kingX-a) == 1 && Math.abs(kingY-b) == 1) { // moving near the king
-                                        int signX = a-kingX, signY = b-kingY;
-                                        for (int r = 1; r<7; r++) {
-                                            if (getPieceAt(a+r*signX, b+r*signY) != null) {
-                                                if (getPieceAt(a+r*signX, b+r*signY).isGrasshoper()) { // move into check by grass
-                                                    move2check = true;
-                                                    Log.debug("prevented moving into check!");
-                                                    break;
-                                                }
-                                                else {
-                                                    Log.debug("other piece");
-                                                    break; /// other piece
-                                                }
-                                            }
-                                        }
-                                    }
-                                    if (!move2check) {
-                                        Log.debug("adding saver " + checkingX + "," + checkingY + " to " + a + " " + b);
-                                        newMoveInfo.addValidMove(saver, a, b);
-                                        newMoveInfo.setCheckMate(false);
-                                    }
-								}
-							}
-						}
-					}
-				}
-			}
-		} else {
-			// not in check. verify that not in stalemate, by finding other
-			// pieces that are not tied and can move
-			newMoveInfo.setStaleMate(true);
-
-			for (Piece movingPiece : movingPieces) {
-				if (movingPiece.isKing()) {
-					// check standard king moves
-
-					// in suicide there can be multiple kings
-					kingX = movingPiece.getX();
-					kingY = movingPiece.getY();
-
-					for (int x = (kingX - 1); x <= (kingX + 1); x++) {
-						for (int y = (kingY - 1); y <= (kingY + 1); y++) {
-							if ((x < 1) || (x > 8) || (y < 1) || (y > 8)) {
-								continue;
-							}
-							// verify that the king is not moving into check by
-							// moving the king
-							Piece destPiece = getPieceAt(x, y);
-							if (destPiece != null) {
-								if (_currentColor == destPiece.getColor()) {
-										// 	king can't move there
-										continue;
-								}
-							}
-
-							boolean kingCanMove = true;
-
-							if (! isSuicideOrFreePlay())
-							{
-								// move the king and see if other piece can now
-								// attack it
-								_board[x - 1][y - 1] = movingPiece;
-								_board[kingX - 1][kingY - 1] = null;
-
-								for (Piece otherPiece : otherPieces) {
-									if (otherPiece.canMoveTo(x, y, this)) {
-										kingCanMove = false;
-										break;
-									}
-								}
-								_board[x - 1][y - 1] = destPiece;
-								_board[kingX - 1][kingY - 1] = movingKing;
-							}
-
-							if (kingCanMove) {
-								newMoveInfo.setStaleMate(false);
-								newMoveInfo.addValidMove(movingPiece, x, y);
-							}
-						}
-					}
-
-					// check special king move - castling
-					if (! isSuicideOrFreePlay())
-					{
-						if (! movingPiece.isMoved()) { // king didn't move
-
-							// check long castle
-							int RookInit = (Integer)getAttribute(LEFT_ROOK_LOCATION);
-							int KingInit = (Integer)getAttribute(KING_LOCATION);
-							int KingDest = 3; // preparation for Capablanca chess
-							int RookDest = 4;
-							do {
-								Piece rook = getPieceAt(kingX, RookInit);
-								if (rook == null) {
-									break;
-								}
-								if (!rook.isRook()) {
-									break;
-								}
-								if (!rook.isColor(_currentColor)) {
-									break;
-								}
-								if (rook.isMoved()) {
-									break;
-								}
-								boolean canCastle = true;
-								// rook didnt move
-								/* need to check 2 more things:
-								* 1. No square between the king's initial and final squares (including the initial and final
-								* squares) may be under attack by an enemy piece.
-								* 2. All the squares between the king's initial and final squares (including the final square),
-								* and all of the squares between the rook's initial and final squares (including the final square),
-								* must be vacant except for the king and castling rook. (An equivalent way of stating this is:
-								* the smallest back rank interval containing the king, the castling rook, and their destination
-								* squares, contains no pieces other than the king and castling rook.)
-								*/
-								int leftSquare = Math.min(KingDest, RookInit);
-								int rightSquare = Math.max(RookDest, KingInit);
-								for (int col = leftSquare; col <= rightSquare; col++) {
-                                    Piece pieceBetween = getPieceAt(kingX, col);
-                                    if (pieceBetween != null) { // condition 2
-                                        if (!(col == RookInit || col == KingInit)) { // not the initial rook or king
-                                            canCastle = false;
-                                            break;
-                                        }
-                                    }
-                                }
-                                // to check condition 1 we have to move the king to the target square to allow
-                                // other pieces (and pawns...) to check if they can "capture" it
-                                setPieceAt(kingX, kingY, null);
-                                for (int col = leftSquare; col <= rightSquare; col++) {
-                                    Piece pieceBetween = getPieceAt(kingX, col);
-                                    if (pieceBetween != null) {
-                                        if (isFischer() && pieceBetween.isRook())  {
-                                            for (Piece otherPiece : otherPieces) {
-                                                if (otherPiece.canMoveTo(kingX, col, this)) {
-                                                    canCastle = false;
-                                                    break;
-                                                }
-                                            }
-                                        }  // I am not sure why anyway you move the king to check if opp can move there
-                                        continue;
-                                    }
-
-									if ((col >= KingDest && col <= KingInit) ) { // condition 1
-                                        setPieceAt(kingX, col, movingPiece);
-										for (Piece otherPiece : otherPieces) {
-											if (otherPiece.canMoveTo(kingX, col, this)) {
-												canCastle = false;
-												break;
-											}
-										}
-                                        setPieceAt(kingX, col, null);
-									}
-								}
-                                setPieceAt(kingX, kingY, movingPiece);
-
-								if (canCastle) {
-									if (KingDest != KingInit && KingDest != RookInit) {
-										newMoveInfo.addValidMove(movingPiece, kingX, KingDest);
-									}
-									if (isFischer())
-									{
-										newMoveInfo.addValidMove(movingPiece, kingX, RookInit); // allow castling by king + rook press
-									}
-                                    Log.debug("gkind " + Common.GAME_KIND_TEXT[getGameKind()] + " allowing O-O-O of " + Common.GetColor(this._currentColor) +
-                                            " king from " + kingX + "," + kingY + " to " + KingDest + " or " + RookInit);
-								}
-							} while (false);
-							// check short castle
-							do {
-								RookInit = (Integer)getAttribute(RIGHT_ROOK_LOCATION);
-								Piece rook = getPieceAt(kingX, RookInit);
-								if (rook == null) {
-									break;
-								}
-								if (!rook.isRook()) {
-									break;
-								}
-								if (!rook.isColor(_currentColor)) {
-									break;
-								}
-								if (rook.isMoved()) {
-									break;
-								}
-								boolean canCastle = true;
-
-								KingDest = 7;
-								RookDest = 6;
-								int leftSquare = Math.min(RookDest, KingInit);
-								int rightSquare = Math.max(KingDest, RookInit);
-								for (int col = leftSquare; col <= rightSquare; col++) {
-                                    Piece pieceBetween = getPieceAt(kingX, col);
-                                    if (pieceBetween != null) { // condition 2
-                                        if (!(col == RookInit || col == KingInit)) { // not the initial rook or king
-                                            canCastle = false;
-                                            break;
-                                        }
-                                    }
-                                }
-                                // to check condition 1 we have to move the king to the target square to allow
-                                // other pieces (and pawns...) to check if they can "capture" it
-                                setPieceAt(kingX, kingY, null);
-                                for (int col = leftSquare; col <= rightSquare; col++) {
-									if (col <= KingDest && col >= KingInit) { // condition 1
-                                        Piece pieceBetween = getPieceAt(kingX, col);
-                                        if (pieceBetween != null) {
-                                            if (isFischer() && pieceBetween.isRook())  {
-                                                for (Piece otherPiece : otherPieces) {
-                                                    if (otherPiece.canMoveTo(kingX, col, this)) {
-                                                        canCastle = false;
-                                                        break;
-                                                    }
-                                                }
-                                            }
-                                            continue;
-                                        }
-
-                                        setPieceAt(kingX, col, movingPiece);
-										for (Piece otherPiece : otherPieces) {
-											if (otherPiece.canMoveTo(kingX, col, this)) {
-												canCastle = false;
-												break;
-											}
-										}
-                                        setPieceAt(kingX, col, null);
-									}
-								}
-                                setPieceAt(kingX, kingY, movingPiece);
-
-								if (canCastle) {
-									if (KingDest != KingInit && KingDest != RookInit) {
-										newMoveInfo.addValidMove(movingPiece, kingX, KingDest);
-									}
-									if (isFischer()){
-										newMoveInfo.addValidMove(movingPiece, kingX, RookInit); // allow castling by king + rook press
-									}
-                                    Log.debug("grules " + Common.GAME_RULES_TEXT[getGameRules()] + " allowing O-O of " + Common.GetColor(this._currentColor) +
-                                            " king from " + kingX + "," + kingY + " to " + KingDest + " or " + RookInit);
-								}
-							} while (false);
-						}
-					}
-				} else {
-					// piece is not a king. see if it can move somewhere
-					Log.debug("PIECE:" + movingPiece.getX() + ", " + movingPiece.getY() + " @ " + movingPiece.getColor() + ":" + movingPiece.getType());
-					for (int x = 8; x != 0; x--) {
-						for (int y = 8; y != 0; y--) {
-							boolean badMoveGrassHopperIntoCheck = false;
-
-                            // need to check that you don't move into check !@!
-                            if (    (hasTypePiece(otherPieces, Common.PIECE_TYPE_GRASSHOPER)) &&
-                                    (! isSuicideOrFreePlay())   )
-                            {
-								int mx = movingPiece.getX();
-								int my = movingPiece.getY();
-								Piece temp = _board[x - 1][y - 1];
-								_board[x - 1][y - 1] = movingPiece;
-								_board[mx - 1][my - 1] = null;
-
-                                King king = ((King) Utils.getFirstInList(currentColorKings));
-                                kingX = ((King) Utils.getFirstInList(currentColorKings)).getX();
-    						    kingY = ((King) Utils.getFirstInList(currentColorKings)).getY();
-
-								for (Piece otherPiece : otherPieces) {
-									if (otherPiece.canMoveTo(kingX, kingY, this)) {
-										if (otherPiece.getX() != x || otherPiece.getY() != y) { // not captured
-                                            badMoveGrassHopperIntoCheck = true;
-											break; // can't move there
-										}
-									}
-								}
-								_board[x - 1][y - 1] = temp;
-								_board[mx - 1][my - 1] = movingPiece;
-                                if (badMoveGrassHopperIntoCheck)
-                                {
-                                    continue;
-                                }
-							}
-
-                            if (movingPiece.isPinned()) {
-                                // the piece can only move within the pinning
-                                Piece PinningPiece = movingPiece.getPinningPiece();
-                                Utils.AssertNull(PinningPiece);
-                                if (movingPiece.isReachable(x, y)) {
-                                    // the moving point should fall exactly
-                                    // inside the path from
-                                    // the pinning piece to the king
-                                    if (Utils.isInPath(x, y, PinningPiece.getX(), PinningPiece.getY(), kingX, kingY)) {
-
-                                        // valid move within the pin
-                                        newMoveInfo.setStaleMate(false);
-                                        newMoveInfo.addValidMove(movingPiece, x, y);
-                                    }
-                                }
-                            } else {
-                                if (movingPiece.isReachable(x, y)) {
-                                    newMoveInfo.setStaleMate(false);
-                                    newMoveInfo.addValidMove(movingPiece, x, y);
-                                }
-                            }
-						}
-					}
-				}
-			}
-
-            // in crazy house and bug house, any piece can be dropped in the middle
-            // in crazy house, check if we have droppable piece.
-            // in bug house, don't check
-            // in both cases, add drop any move
-            if (isCrazyOrBugHouse())
-            {
-                boolean addDropAnyMove = true;
-                if (isCrazyHouse())
-                {
-                    List<Piece> droppable = getDroppablePieces(_currentColor);
-                    addDropAnyMove = ! droppable.isEmpty();
-                }
-                if (addDropAnyMove)
-                {
-                    // there is a piece to drop. its not a stale mate
-                    newMoveInfo.setStaleMate(false);
-                    Piece droppedPiece = Piece.create(Common.PIECE_TYPE_DROP_ANY, _currentColor);
-                    Log.debug("move " + _currentMove + " color " + _currentColor + " adding drop moves in all squares");
-                    // piece can be dropped anywhere
-                    for ( int x = 8 ;x != 0 ; x-- )
-                    {
-                        for ( int y = 8 ;y != 0 ; y-- )
-                        {
-                            if (getPieceAt(x,y) == null)
-                            {
-                                newMoveInfo.addValidMove(droppedPiece, x, y, true);
-                            }
-                        }
-                    }
-                }
-            }
-		}
-
-		// in suicide if there is a valid capture move then remove all non capture moves
-		if (isSuicide())
-		{
-			boolean hasCaptureMove = false;
-			for (Move nextMove : newMoveInfo.getValidNextMoves())
-			{
-				if (nextMove.getCapturedPiece() != null)
-				{
-					hasCaptureMove = true;
-					break;
-				}
-			}
-
-			if (hasCaptureMove)
-			{
-				List<Move> newValidNextMoves = new ArrayList<Move>();
-
-				for (Move nextMove : newMoveInfo.getValidNextMoves())
-				{
-					Log.debug("checking move " + nextMove.getFromX() + "," + nextMove.getFromY() + " - " +
-						nextMove.getToX() + "," + nextMove.getToY());
-
-					Piece capturedPiece = nextMove.getCapturedPiece();
-					if (capturedPiece != null)
-					{
-						Log.debug("move " + nextMove.getFromX() + "," + nextMove.getFromY() + " - " +
-							nextMove.getToX() + "," + nextMove.getToY() + " has captured piece");
-
-						newValidNextMoves.add(nextMove);
-					}
-				}
-				newMoveInfo.getValidNextMoves().clear();
-				newMoveInfo.getValidNextMoves().addAll(newValidNextMoves);
-			}
-		}
+		// find the pieces checking the moving side, and if it has any legal
+		// move. the legal moves themselves are generated on first use
+		updatePocketCounts();
+		MoveGenerator generator = getMoveGenerator();
+		int checkCount = Long.bitCount(generator.getCheckers(_position));
+		boolean hasLegalMove = generator.hasLegalMove(_position);
+		newMoveInfo.setCheck(checkCount > 0);
+		newMoveInfo.setDoubleCheck(checkCount > 1);
+		newMoveInfo.setCheckMate(newMoveInfo.isCheck() && !hasLegalMove);
+		newMoveInfo.setStaleMate(!newMoveInfo.isCheck() && !hasLegalMove);
 
 		if (newMoveInfo.isCheckMate()) {
 			if (_currentColor == Common.COLOR_WHITE)
@@ -1195,10 +616,10 @@ public class Game {
 		}
 		if (newMoveInfo.isStaleMate()) {
 			_endString = PGN.STR_STALEMATE;
-			if (isSuicide())
+			int winner = _rules.getStaleMateWinner(_currentColor);
+			if (winner == _currentColor)
 			{
 				// in suicide game if you enter stale mate you win
-				endGame(_currentColor);
                 if (_currentColor == Common.COLOR_WHITE)
                 {
                     _endString = PGN.STR_WHITE_WIN;
@@ -1208,25 +629,13 @@ public class Game {
                     _endString = PGN.STR_BLACK_WIN;
                 }
 			}
-			else if (isFreePlay())
-			{
-                // in free play game if you enter stale mate you win
-				endGame(Common.OtherColor(_currentColor));
-			}
-			else
-			{
-                // in normal game stale mate is a draw
-				endGame(Common.COLOR_ILLEGAL);
-			}
+			endGame(winner);
 		}
 
-		if (movingPieces.isEmpty())
+		if (_position.getOccupied(_currentColor) == 0)
 		{
-			boolean white = _currentColor == Common.COLOR_WHITE;
-			if (isFreePlay()) {
-				white = !white;
-			}
-			if ( white )
+			int winner = _rules.getNoPiecesWinner(_currentColor);
+			if (winner == Common.COLOR_WHITE)
 			{
 				_endString = PGN.STR_WHITE_WIN;
 			}
@@ -1234,53 +643,14 @@ public class Game {
 			{
 				_endString = PGN.STR_BLACK_WIN;
 			}
-			if (isFreePlay() ) {
-				endGame(otherColor);
-			}
-			else {
-				endGame(_currentColor);
-			}
+			endGame(winner);
 		}
 
 		if ((Boolean) getAttribute(CHECK_NO_MATERIAL_DRAW)) {
 
 			// calculate having enough material
 			for (int color = Common.COLOR_WHITE; color <= Common.COLOR_BLACK; color++) {
-                // in bug house and crazy house there is always material
-                if (isCrazyOrBugHouse())
-                {
-                    newMoveInfo.getHasEnoughMaterial()[color] = true;
-                    continue;
-                }
-				newMoveInfo.getHasEnoughMaterial()[color] = false;
-				int numberOfBishops = 0, numberOfKnights = 0;
-
-				for (Piece movingPiece : pieces[color]) {
-					switch (movingPiece.getType()) {
-					case Common.PIECE_TYPE_PAWN:
-					case Common.PIECE_TYPE_ROOK:
-					case Common.PIECE_TYPE_QUEEN:
-					case Common.PIECE_TYPE_ARCHBISHOP:
-					case Common.PIECE_TYPE_CHANCELLOR:
-						newMoveInfo.getHasEnoughMaterial()[color] = true;
-						break;
-					case Common.PIECE_TYPE_KING:
-						break;
-					case Common.PIECE_TYPE_BISHOP:
-					case Common.PIECE_TYPE_GRASSHOPER: // this seems ok to count it as bishop
-						numberOfBishops++;
-						break;
-					case Common.PIECE_TYPE_KNIGHT:
-						numberOfKnights++;
-						break;
-					}
-				}
-
-				// 2 pieces of any kind are enough
-				if ((numberOfBishops + numberOfKnights) > 1)
-				{
-					newMoveInfo.getHasEnoughMaterial()[color] = true;
-				}
+				newMoveInfo.getHasEnoughMaterial()[color] = _rules.hasEnoughMaterial(_position, color);
 			}
 
 			if ((!newMoveInfo.getHasEnoughMaterial()[Common.COLOR_WHITE])
@@ -1291,22 +661,9 @@ public class Game {
 		}
 
 		if ((Boolean) getAttribute(CHECK_50_MOVES_DRAW)) {
-			// calculate 50 moves count
-
-			Move lastMove = getLastMove();
-			if (lastMove == null) {
-				newMoveInfo.setDraw50MovesCount(0);
-			} else {
-				if ((lastMove.getMovedPiece().isPawn()) || (lastMove.getCapturedPiece() != null)) {
-					// capture or pawn move. zero the count
-					newMoveInfo.setDraw50MovesCount(0);
-				} else {
-					MoveInfo lastInfo = getCurrentMoveInfo();
-					if (lastInfo != null) {
-						newMoveInfo.setDraw50MovesCount(lastInfo.getDraw50MovesCount() + 1);
-					}
-				}
-			}
+			// the half move clock is kept by the board with the other
+			// irreversible state, and zeroed by captures and pawn moves
+			newMoveInfo.setDraw50MovesCount(_position.getHalfmoveClock());
 
 			if (newMoveInfo.getDraw50MovesCount() >= 100) {
 				_endString = "50 מסעים ללא הכאת כלי או מסע רגלי.";
@@ -1315,22 +672,27 @@ public class Game {
 		}
 
 		_moveInfos.add(newMoveInfo);
+		newMoveInfo.setPositionHash(getPositionHash());
+		publishPosition();
 
-        newMoveInfo.setFENString(FEN.getFENString(this));
-        newMoveInfo.setFENPosition(FEN.getFENPosition(this));
+        // the FEN strings are made from the record on first use
+        newMoveInfo.setPositionRecord(FEN.getPositionRecord(this));
 
         if ((Boolean) getAttribute(CHECK_REPEATITION_DRAW)) {
             // calculate repeatition by counting how many past position matches
             // this one.
             // if 3 or more, declare draw
+            // only positions since the last irreversible move, with the same
+            // color to move, can match. the nearest one is 4 plies back
             int matches = 1;
-            for (int moveIndex = 0; moveIndex < _currentMove; moveIndex++) {
+            long positionHash = newMoveInfo.getPositionHash();
+            int firstIndex = Math.max(0, _currentMove - _position.getReversiblePlies());
+            for (int moveIndex = _currentMove - 4; moveIndex >= firstIndex; moveIndex -= 2) {
                 MoveInfo lastMoveInfo = getMoveInfo(moveIndex);
                 if (lastMoveInfo == null) {
                     continue;
                 }
-                String newFen = newMoveInfo.getFenStringForDrawTesting(), lastFen = lastMoveInfo.getFenStringForDrawTesting();
-                if (newFen.equals(lastFen)) {
+                if (lastMoveInfo.getPositionHash() == positionHash) {
                     matches++;
                 }
             }
@@ -1341,11 +703,121 @@ public class Game {
         }
 
 
-        for (Move move : newMoveInfo.getValidNextMoves()) {
-			Notation.getNames(move);
+		return Common.RC_OK;
+	}
+
+	/*
+	 * generate the legal moves of the given move info, which must be the
+	 * current one, as the moves are found on the current position
+	 */
+	void generateValidMoves(MoveInfo moveInfo) {
+		if ((_moveInfos.size() != (_currentMove + 1)) || (_moveInfos.get(_currentMove) != moveInfo)) {
+			Log.warning("can't generate the valid moves of a past move, the game is at move " + _currentMove);
+			return;
+		}
+		updatePocketCounts();
+		_legalMoves.clear();
+		getMoveGenerator().generate(_position, _legalMoves);
+		moveInfo.addValidMoves(_legalMoves);
+	}
+
+	/**
+	 * Sets whether a copy of the current position is published after every
+	 * move and takeback, for getLegalTargets calls from other threads.
+	 *
+	 * @param publishPositions
+	 *            true to publish the positions
+	 */
+	public void setPublishPositions(boolean publishPositions) {
+		_publishPositions = publishPositions;
+		_publishedPosition = null;
+		publishPosition();
+	}
+
+	/*
+	 * publish a copy of the current position. its attack maps and check
+	 * squares are found before it is published, so the readers never change it
+	 */
+	private void publishPosition() {
+		if (!_publishPositions) {
+			return;
+		}
+		updatePocketCounts();
+		Board position = new Board(_position);
+		position.getAttacks(Common.COLOR_WHITE);
+		position.getCheckSquares(Common.PIECE_TYPE_PAWN);
+		_publishedPosition = position;
+	}
+
+	/**
+	 * Returns the squares the piece at the given square can legally move to,
+	 * as a mask of Board square bits. Only the moves of this piece are
+	 * looked at, using the checks and pins of the position. <br>
+	 * While positions are published (see setPublishPositions), the last
+	 * published position is used, and this may be called from any thread.
+	 * Otherwise the current position is used.
+	 *
+	 * @param x
+	 *            the row of the piece
+	 * @param y
+	 *            the column of the piece
+	 * @return the target squares, or 0 if there is no piece of the side to
+	 *         move there
+	 */
+	public long getLegalTargets(int x, int y) {
+		Board position = _publishedPosition;
+		if (position == null) {
+			updatePocketCounts();
+			position = _position;
 		}
+		return getMoveGenerator().getTargets(position, Board.square(x, y));
+	}
 
-		return Common.RC_OK;
+	/**
+	 * Returns true if the given move is legal in the current position, found
+	 * from the checks and pins of the position without generating the legal
+	 * moves. A castling is given as the king move. Returns false once the
+	 * game ended.
+	 *
+	 * @param fromX
+	 *            the source row, or the target row for a drop
+	 * @param fromY
+	 *            the source column, or the target column for a drop
+	 * @param toX
+	 *            the target row
+	 * @param toY
+	 *            the target column
+	 * @param promotionOrDropType
+	 *            the promotion piece type or the dropped piece type, or
+	 *            PIECE_TYPE_ILLEGAL
+	 * @return true if the move is legal
+	 */
+	public boolean isLegal(int fromX, int fromY, int toX, int toY, int promotionOrDropType) {
+		if (_ended || !Board.isValidSquare(fromX, fromY) || !Board.isValidSquare(toX, toY)) {
+			return false;
+		}
+		int type = promotionOrDropType == Common.PIECE_TYPE_ILLEGAL ? 0 : promotionOrDropType;
+		int to = Board.square(toX, toY);
+		int move;
+		if ((fromX == toX) && (fromY == toY)) {
+			move = MoveCode.createDrop(to, type);
+		} else {
+			move = MoveCode.create(Board.square(fromX, fromY), to, type, 0);
+		}
+		updatePocketCounts();
+		return getMoveGenerator().isLegal(_position, move);
+	}
+
+	/**
+	 * Returns true if the side to move has any legal move in the current
+	 * position. This stops at the first legal move found, without generating
+	 * all of them.
+	 *
+	 * @return true if there is a legal move
+	 */
+	public boolean hasLegalMove() {
+		updatePocketCounts();
+		return getMoveGenerator().hasLegalMove(_position);
 	}
 
 	/**
@@ -1358,6 +830,9 @@ public class Game {
 				setPieceAt(x, y, null);
 			}
 		}
+		_position.setCastling(0);
+		_position.setEpSquare(Board.NO_SQUARE);
+		_position.setHalfmoveClock(0);
 		_moveInfos.clear();
 	}
 
@@ -1408,69 +883,32 @@ public class Game {
 	}
 
 	public Piece findPiece(int type, int color) {
-		for (int x = 8; x != 0; x--) {
-			for (int y = 8; y != 0; y--) {
-				Piece piece = getPieceAt(x, y);
-				if (piece != null) {
-					if ((piece.getType() == type) && (piece.getColor() == color)) {
-						return piece;
-					}
-				}
-			}
+		long pieces = _position.getPieces(type, color);
+		if (pieces == 0) {
+			return null;
 		}
-		return null;
+		int square = Board.lastSquare(pieces);
+		return getPieceAt(Board.squareX(square), Board.squareY(square));
 	}
 
-    Piece findCapturedPiece(int color, int type)
-    {
-        List<Piece> pieces = getCapturedPieces(color);
-        for (Piece piece : pieces )
-        {
-            if (piece.getType() == type)
-            {
-                return piece;
-            }
-        }
-        return null;
-    }
-
-    public static Piece findPieceToDrop(List<Piece> pieces, int droppedPieceType)
-    {
-        // first look in regular piece type
-        for (Piece piece : pieces )
-        {
-            if ((piece.getType() == droppedPieceType) && (piece.getTypeWhenDropping() == droppedPieceType))
-            {
-                return piece;
-            }
-        }
-        // now look in promoted pawns
-        for (Piece piece : pieces )
-        {
-            if (piece.getTypeWhenDropping() == droppedPieceType)
-            {
-                return piece;
-            }
-        }
-        return null;
-    }
-
 	/**
 	 * find all pieces of the given type and color
 	 * if color = 0, get all pieces of that type
 	 */
+	/*
+	 * the piece on the given Board square
+	 */
+	private Piece pieceAt(int square) {
+		return _board[square >> 3][square & 7];
+	}
+
 	List<Piece> findPieces(int type, int color) {
-		List<Piece> pieces = new ArrayList<Piece>();
-		for (int x = 8; x != 0; x--) {
-			for (int y = 8; y != 0; y--) {
-				Piece piece = getPieceAt(x, y);
-				if (piece != null) {
-					if (	(piece.getType() == type) &&
-							((piece.getColor() == color) || (color == 0))	) {
-						pieces.add(piece);
-					}
-				}
-			}
+		long mask = _position.getPieces(type, color);
+		List<Piece> pieces = new ArrayList<Piece>(Long.bitCount(mask));
+		while (mask != 0) {
+			int square = Board.lastSquare(mask);
+			mask &= ~(1L << square);
+			pieces.add(_board[square >> 3][square & 7]);
 		}
 		return pieces;
 	}
@@ -1496,23 +934,16 @@ public class Game {
 	 */
 	public boolean getCastlingAvailability(int color, int castle) {
 
-		if (_king[color] == null) {
+		if (_position.getPieces(Common.PIECE_TYPE_KING, color) == 0) {
 			return false;
 		}
-		if (_king[color].isMoved()) {
+		if (!_position.hasCastlingRight(color, castle)) {
 			return false;
 		}
 
-		List<Piece> rooks = findPieces(Common.PIECE_TYPE_ROOK, color);
-		for (Piece rook : rooks) {
-			if ((castle == Common.CASTLE_QUEEN) && (rook.getY() == (Integer)getAttribute(LEFT_ROOK_LOCATION)) && (!rook.isMoved())) {
-				return true;
-			}
-			if ((castle == Common.CASTLE_KING) && (rook.getY() == (Integer)getAttribute(RIGHT_ROOK_LOCATION)) && (!rook.isMoved())) {
-				return true;
-			}
-		}
-		return false;
+		// the rook of that side must still be on its column
+		long rookColumn = 0x0101010101010101L << (_position.getCastlingRookY(castle) - 1);
+		return (_position.getPieces(Common.PIECE_TYPE_ROOK, color) & rookColumn) != 0;
 	}
 
 	public int getClockDuration(int color) {
@@ -1578,7 +1009,26 @@ public class Game {
 	}
 
 	public Pawn getEpPawn() {
-		return _epPawn;
+		int square = getEpPawnSquare();
+		return square == Board.NO_SQUARE ? null : (Pawn) pieceAt(square);
+	}
+
+	/*
+	 * the square of the pawn that can be captured en passant, or
+	 * Board.NO_SQUARE
+	 */
+	int getEpPawnSquare() {
+		int epSquare = _position.getEpSquare();
+		if (epSquare == Board.NO_SQUARE) {
+			return Board.NO_SQUARE;
+		}
+		// the pawn that made the 2 square jump is one square beyond
+		int square = Board.square(Board.squareX(epSquare) == 3 ? 4 : 5, Board.squareY(epSquare));
+		Piece epPawn = pieceAt(square);
+		if ((epPawn == null) || (!epPawn.isPawn())) {
+			return Board.NO_SQUARE;
+		}
+		return square;
 	}
 
 	/**
@@ -1938,30 +1388,51 @@ public class Game {
                 Piece otherPiece = other.getPieceAt(x,y);
                 if (otherPiece != null)
                 {
-                    setPieceAt(x, y, Piece.create(otherPiece.getType(), otherPiece.getColor()));
+                    // pieces are immutable, so the games share them
+                    setPieceAt(x, y, otherPiece);
                 }
             }
         }
         if (isFischer())
         {
-            setAttribute(Game.KING_LOCATION, other.getAttribute(Game.KING_LOCATION));
-            setAttribute(Game.LEFT_ROOK_LOCATION, other.getAttribute(Game.LEFT_ROOK_LOCATION));
-            setAttribute(Game.RIGHT_ROOK_LOCATION, other.getAttribute(Game.RIGHT_ROOK_LOCATION));
+            setCastlingColumns(other.getCastlingKingY(), other.getCastlingRookY(Common.CASTLE_QUEEN),
+                    other.getCastlingRookY(Common.CASTLE_KING));
+            _fischerSP = other._fischerSP;
         }
+        _position.setCastling(other._position.getCastling());
+        _position.setEpSquare(other._position.getEpSquare());
+        _position.setHalfmoveClock(other._position.getHalfmoveClock());
     }
 
 	/**
-	 * Take back all moves and set the initial position.
+	 * Take back all moves and set the initial position. A Fischer game gets
+	 * a random start position.
 	 */
 	public void initialPosition() {
+		initialPosition(Fischer960.SP_RANDOM);
+	}
+
+	/**
+	 * Take back all moves and set the initial position. A Fischer game gets
+	 * the start position of the given number (0 to 959), or a random one for
+	 * Fischer960.SP_RANDOM.
+	 */
+	public void initialPosition(int sp) {
 		takebackAllMoves();
 
 		String initPosition;
+		_fischerSP = Fischer960.NO_SP;
 
 		switch (_gkind)
 		{
 			case Common.GAME_KIND_FISCHER:
-				initPosition = FEN.create960FEN();
+				if (!Fischer960.isValid(sp)) {
+					if (sp != Fischer960.SP_RANDOM) {
+						Log.warning("illegal Fischer 960 start position " + sp);
+					}
+					sp = Fischer960.randomSP();
+				}
+				initPosition = FEN.create960FEN(sp);
 			break;
 			case Common.GAME_KIND_MINICAPA:
 				initPosition = FEN.FEN_MINICAPA_POS;
@@ -1984,9 +1455,11 @@ public class Game {
 
 		FEN.loadGame(this, initPosition , true, _gkind);
 		setAttribute(Game.INITIAL_POSITION_FEN, initPosition);
-		setAttribute(Game.KING_LOCATION, initPosition.indexOf('k') + 1);
-		setAttribute(Game.LEFT_ROOK_LOCATION, initPosition.indexOf('r') + 1);
-		setAttribute(Game.RIGHT_ROOK_LOCATION, initPosition.lastIndexOf('r') + 1);
+		if (_gkind == Common.GAME_KIND_FISCHER) {
+			_fischerSP = sp;
+			setCastlingColumns(Fischer960.getKingY(sp), Fischer960.getRookY(sp, Common.CASTLE_QUEEN),
+					Fischer960.getRookY(sp, Common.CASTLE_KING));
+		}
 		analyse();
 	}
 
@@ -2174,40 +1647,45 @@ public class Game {
 
         move.setMoveNumber(_currentMove);
 
+        int code;
+        int movedType;
+        Piece capturedPiece = null;
+
         if (move.isDropMove())
         {
             // drop move
-            List<Piece> droppable = getDroppablePieces(_currentColor);
-            Piece droppedPiece = findPieceToDrop(droppable, move.getAdditionalPieceTypeInfo());
+            code = getMoveCode(move);
+            Pocket pocket = getDropPocket(_currentColor);
+            Piece droppedPiece;
+            if (pocket != null)
+            {
+                droppedPiece = pocket.takePieceToDrop(move.getAdditionalPieceTypeInfo());
+            }
+            else
+            {
+                droppedPiece = isBugHouse() ? Piece.create(move.getAdditionalPieceTypeInfo(), _currentColor) : null;
+            }
             if (droppedPiece == null) {
                 Log.warning("can't find dropped piece " + move.getAdditionalPieceTypeInfo());
                 return Common.RC_GENERAL_FAILURE;
             }
-            Log.debug("move " + _currentMove + " color " + Common.GetColor(_currentColor) + " drop move " +
-                    droppedPiece.getType() + " at " + toX + "," + toY);
-            if (! droppable.remove(droppedPiece))
-            {
-                Log.warning("could not remove droppable piece");
+            if (Log.isDebug()) {
+                Log.debug("move " + _currentMove + " color " + Common.GetColor(_currentColor) + " drop move " +
+                        droppedPiece.getType() + " at " + toX + "," + toY);
             }
-            int droppedPieceType = droppedPiece.getType();
+            int droppedPieceType = droppedPiece.getTypeWhenDropping();
             int droppedPieceColor = droppedPiece.getColor();
-            int promotedTo = Common.PIECE_TYPE_ILLEGAL;
-            if (isCrazyHouse())
+            if (_rules.isCapturesToPocket())
             {
                 droppedPieceColor = Common.OtherColor(droppedPieceColor);
             }
-            if (droppedPiece.isPromoted())
-            {
-                promotedTo = droppedPieceType;
-                droppedPieceType = Common.PIECE_TYPE_PAWN;
-            }
+            // a promoted piece is dropped as a pawn. the pocket piece is kept
+            // on the move, to put it back on takeback
             Piece actuallyDropped = Piece.create(droppedPieceType, droppedPieceColor);
-            if (promotedTo != Common.PIECE_TYPE_ILLEGAL)
-            {
-                ((Pawn)actuallyDropped).setWasPromotedTo(promotedTo);
-            }
+            move.setPocketPiece(droppedPiece);
             setPieceAt(toX, toY, actuallyDropped);
             move.setMovedPiece(actuallyDropped);
+            movedType = droppedPieceType;
         }
         else
         {
@@ -2231,132 +1709,75 @@ public class Game {
             }
 
             move.setMovedPiece(movingPiece);
-
-            Piece capturedPiece = getPieceAt(toX, toY);
-            boolean FischerCastle = false;
-            if (capturedPiece != null) {
-                // don't allow to capture a king
-                if (capturedPiece.isKing() && ! isSuicideOrFreePlay()) {
-                    // can't capture a king
-                    Log.warning("can't capture a king");
-                    ;
-                    return Common.RC_GENERAL_FAILURE;
-                }
-                // don't allow to capture your own pieces
-                if (capturedPiece.getColor() == _currentColor) {
-                    if (isFischer() && capturedPiece.isRook() && movingPiece.isKing()) {
-                        FischerCastle = true;
-                        capturedPiece = null;
+            movedType = movingPiece.getType();
+            code = getMoveCode(move);
+
+            if (MoveCode.isCastle(code)) {
+                // castling. in Fischer chess the king may also move onto its rook,
+                // so clear both squares before placing them
+                int castle = _position.getCastleSide(code);
+                int rookY = _position.getCastlingRookY(castle);
+                Piece rook = getPieceAt(fromX, rookY);
+                Utils.AssertNull(rook);
+                Utils.Assert(rook.isRook());
+                Utils.Assert(rook.isColor(_currentColor));
+                setPieceAt(fromX, fromY, null);
+                setPieceAt(fromX, rookY, null);
+                setPieceAt(fromX, castle == Common.CASTLE_QUEEN ? 3 : 7, movingPiece);
+                setPieceAt(fromX, castle == Common.CASTLE_QUEEN ? 4 : 6, rook);
+            } else {
+                capturedPiece = getPieceAt(toX, toY);
+                if (capturedPiece != null) {
+                    // don't allow to capture a king
+                    if (capturedPiece.isKing() && _rules.hasRoyalKings()) {
+                        // can't capture a king
+                        Log.warning("can't capture a king");
+                        ;
+                        return Common.RC_GENERAL_FAILURE;
                     }
-                    else {
+                    // don't allow to capture your own pieces
+                    if (capturedPiece.getColor() == _currentColor) {
                         Log.warning("can't capture same color");
                         ;
                         return Common.RC_GENERAL_FAILURE;
                     }
                 }
-            }
-            else if (isFischer() && movingPiece.isKing() && (Math.abs(fromY - toY) >= 2) ) {
-                FischerCastle = true;
-            }
-
-            int rookY, rookToY;
-            int dest = 7;
-            if (FischerCastle){ // eating our own rook
-                setPieceAt(fromX, fromY, null); // remove the king
-            }
-            else {
-                movePiece(fromX, fromY, toX, toY); // normal castle - move the king
-            }
-
-            // special case : castle
-            Piece rook = null;
-            if ((movingPiece.isKing()) && ((Math.abs(fromY - toY) >= 2) || FischerCastle) ) {
-                // castling
-                if (fromY > toY) {
-                    rookY = (Integer)getAttribute(LEFT_ROOK_LOCATION);
-                    rookToY = 4;
-                    dest = 3;
-                } else {
-                    rookY = (Integer)getAttribute(RIGHT_ROOK_LOCATION);
-                    rookToY = 6;
-                }
-                rook = getPieceAt(fromX, rookY);
-                Utils.AssertNull(rook);
-                Utils.Assert(rook.isRook());
-                Utils.Assert(rook.isColor(_currentColor));
-                movePiece(rook.getX(), rookY, rook.getX(), rookToY); // move the rook
-                if (FischerCastle){
-                    setPieceAt(toX, dest, movingPiece); // put the king in his place
-                }
-            }
-            if (rook != null) {
-                currentInfo.getMovedPiece()[1] = rook;
-                rook.setMoved(true);
+                movePiece(fromX, fromY, toX, toY);
             }
 
-            // special case : promotion
-            int promotionSquare[] = new int[Common.COLOR_NUM];
-            promotionSquare[Common.COLOR_WHITE] = 8;
-            promotionSquare[Common.COLOR_BLACK] = 1;
-            if ((movingPiece.isPawn()) && (toX == promotionSquare[_currentColor])) {
-                Log.debug("promotion move. promotion piece is " + move.getAdditionalPieceTypeInfo());
-                Piece promotedPiece = Piece.create(move.getAdditionalPieceTypeInfo(), _currentColor);
-                promotedPiece.setPromoted();
-                setPieceAt(fromX, fromY, null);
-                setPieceAt(toX, toY, promotedPiece);
-            }
-
-            if (isSevenBoom() && movingPiece.isPawn() &&
-                 ( (_currentColor == Common.COLOR_WHITE && toX == 7) ||  (_currentColor == Common.COLOR_BLACK && toX == 2) ) ) {
-                Log.debug("Seven promotion move. promotion piece is " + move.getAdditionalPieceTypeInfo());
-                Piece promotedPiece = Piece.create(move.getAdditionalPieceTypeInfo(), _currentColor);
-                promotedPiece.setPromoted();
+            // special case : promotion, also on the 7th row in seven boom
+            if (movingPiece.isPawn() && (_rules.getPromotionTypes(_currentColor, toX) != null)) {
+                Piece promotedPiece = Piece.create(move.getAdditionalPieceTypeInfo(), _currentColor, true);
                 setPieceAt(fromX, fromY, null);
                 setPieceAt(toX, toY, promotedPiece);
             }
 
             // special move : ep capture by pawn
-            if (movingPiece.isPawn()) {
-                if ((toY != fromY) && (capturedPiece == null)) {
-                    if (_epPawn != null) {
-                        capturedPiece = _epPawn;
-                        setPieceAt(_epPawn.getX(), _epPawn.getY(), null);
-                        move.setEpCapture(true);
-                    }
+            if (MoveCode.isEp(code)) {
+                int epPawnSquare = getEpPawnSquare();
+                if (epPawnSquare != Board.NO_SQUARE) {
+                    capturedPiece = pieceAt(epPawnSquare);
+                    setPieceAt(Board.squareX(epPawnSquare), Board.squareY(epPawnSquare), null);
+                    move.setEpCapture(true);
                 }
             }
 
-            // special move : mark ep pawn for next move
-            if ((movingPiece.isPawn() && (Math.abs(fromX - toX) == 2))) {
-                Piece isOtherPawn = getPieceAt(toX, toY + 1);
-                if ((isOtherPawn != null) && isOtherPawn.isPawn() && isOtherPawn.isColor(Common.OtherColor(_currentColor))) {
-                    setEpPawn((Pawn) movingPiece);
-                }
-                isOtherPawn = getPieceAt(toX, toY - 1);
-                if ((isOtherPawn != null) && isOtherPawn.isPawn() && isOtherPawn.isColor(Common.OtherColor(_currentColor))) {
-                    setEpPawn((Pawn) movingPiece);
-                }
-            } else {
-                _epPawn = null;
-            }
-            if (!movingPiece.isMoved()) {
-                currentInfo.getMovedPiece()[0] = movingPiece;
-                movingPiece.setMoved(true);
-            }
-
             move.setCapturedPiece(capturedPiece);
 
             // add captured piece to list
             if (capturedPiece != null)
             {
                 getCapturedPieces(Common.OtherColor(_currentColor)).add( capturedPiece );
-                capturedPiece.setX(0);
-                capturedPiece.setY(0);
             }
         }
 
+        _position.pushMove(code, movedType, capturedPiece == null ? 0 : pieceCode(capturedPiece));
+
         currentInfo.setMove(move);
         move.setMoveInfo(currentInfo);
+        if (move.getFromInfo() == null) {
+            move.setFromInfo(currentInfo);
+        }
 
         _reqTakeback[Common.COLOR_WHITE] = false;
         _reqTakeback[Common.COLOR_BLACK] = false;
@@ -2383,8 +1804,10 @@ public class Game {
             }
             _timeLeftMs[_currentColor] += (_incrForMove * Utils.MS_IN_SECOND * factor);
 
-			Log.debug(" Game " + getName() + " : Time Left W " + (_timeLeftMs[Common.COLOR_WHITE] / Utils.MS_IN_SECOND) + " B "
-				+ (_timeLeftMs[Common.COLOR_BLACK] / Utils.MS_IN_SECOND));
+			if (Log.isDebug()) {
+				Log.debug(" Game " + getName() + " : Time Left W " + (_timeLeftMs[Common.COLOR_WHITE] / Utils.MS_IN_SECOND) + " B "
+					+ (_timeLeftMs[Common.COLOR_BLACK] / Utils.MS_IN_SECOND));
+			}
 
 			startClock(Common.OtherColor(_currentColor));
 		}
@@ -2396,13 +1819,14 @@ public class Game {
 		}
 		analyse(fast);
 
-		Notation.getNames(move);
-
+		// the move is named on first use
 		_movelist.addMove(move);
 
-		Log.debug(" Game " + getName() + " : " + ((_currentMove + 1) / 2) + "." + (((_currentMove % 2) == 0) ? ".. " : " ")
-                + move.getNameAlg() + " . Time left : [ " + _timeLeftMs[Common.COLOR_WHITE] + " ] , [ "
-                + _timeLeftMs[Common.COLOR_BLACK] + " ]");
+		if (Log.isDebug()) {
+			Log.debug(" Game " + getName() + " : " + ((_currentMove + 1) / 2) + "." + (((_currentMove % 2) == 0) ? ".. " : " ")
+	                + move.getNameAlg() + " . Time left : [ " + _timeLeftMs[Common.COLOR_WHITE] + " ] , [ "
+	                + _timeLeftMs[Common.COLOR_BLACK] + " ]");
+		}
 
 		;
 		return Common.RC_OK;
@@ -2486,6 +1910,42 @@ public class Game {
 		_properties.put(key, value);
 	}
 
+	/**
+	 * Sets the columns (1 to 8) the king and the rooks castle from, as read
+	 * from the castling letters of a FEN, or from the start position.
+	 */
+	void setCastlingColumns(int kingY, int queenRookY, int kingRookY) {
+		// the board keeps them with the castling rights
+		_position.setCastlingColumns(kingY, queenRookY, kingRookY);
+	}
+
+	/**
+	 * Returns the column (1 to 8) the king castles from.
+	 */
+	public int getCastlingKingY() {
+		return _position.getCastlingKingY();
+	}
+
+	/**
+	 * Returns the column (1 to 8) the rook of the given castle side
+	 * (Common.CASTLE_KING or Common.CASTLE_QUEEN) castles from.
+	 */
+	public int getCastlingRookY(int castle) {
+		return _position.getCastlingRookY(castle);
+	}
+
+	/**
+	 * Returns the Fischer 960 start position number of the game, or
+	 * Fischer960.NO_SP if it didn't start from one of its start positions.
+	 */
+	public int getFischerSP() {
+		return _fischerSP;
+	}
+
+	void setFischerSP(int sp) {
+		_fischerSP = sp;
+	}
+
 	public void setBlackName(String blackName) {
 		_blackName = blackName;
 		setAttribute(PGN.STR_BLACK, _blackName);
@@ -2505,14 +1965,11 @@ public class Game {
 			return Common.RC_GENERAL_FAILURE;
 		}
 
-		List<Piece> rooks = findPieces(Common.PIECE_TYPE_ROOK, color);
-		for (Piece rook : rooks) {
-			if ((castle == Common.CASTLE_QUEEN) && (rook.getY() == (Integer)getAttribute(LEFT_ROOK_LOCATION) ) ) {
-				rook.setMoved(!available);
-			}
-			if ((castle == Common.CASTLE_KING) && (rook.getY() == (Integer)getAttribute(RIGHT_ROOK_LOCATION))) {
-				rook.setMoved(!available);
-			}
+		int right = Board.castlingRight(color, castle);
+		if (available) {
+			_position.setCastling(_position.getCastling() | right);
+		} else {
+			_position.setCastling(_position.getCastling() & ~right);
 		}
 
 		return Common.RC_OK;
@@ -2522,8 +1979,17 @@ public class Game {
 		_endString = endString;
 	}
 
-	void setEpPawn(Pawn epPawn) {
-		this._epPawn = epPawn;
+	/*
+	 * sets the pawn at x,y as the pawn that can be captured en passant. x 0
+	 * means none
+	 */
+	void setEpPawn(int x, int y) {
+		if (x == 0) {
+			_position.setEpSquare(Board.NO_SQUARE);
+			return;
+		}
+		Piece epPawn = getPieceAt(x, y);
+		_position.setEpSquare(Board.square(x + (epPawn.isWhite() ? -1 : 1), y));
 	}
 
 	/**
@@ -2574,22 +2040,164 @@ public class Game {
 	 * color.
 	 */
     public King getEnemyKing() {
-        return _king[Common.OtherColor(_currentColor)];
+        long kings = _position.getPieces(Common.PIECE_TYPE_KING, Common.OtherColor(_currentColor));
+        return kings == 0 ? null : (King) pieceAt(Board.lastSquare(kings));
     }
 
 	int setPieceAt(int x, int y, Piece piece) {
+		putPiece(x, y, piece);
+		return Common.RC_OK;
+	}
+
+	/*
+	 * place a piece on the board (or clear the square) and update the
+	 * bitboards. unlike setPieceAt, the piece location is not changed, so this
+	 * is also used to temporary change the board while analysing.
+	 */
+	private void putPiece(int x, int y, Piece piece) {
+		int square = Board.square(x, y);
+		Piece oldPiece = _board[x - 1][y - 1];
+		if (oldPiece != null) {
+			_position.remove(square);
+		}
 		_board[x - 1][y - 1] = piece;
 		if (piece != null) {
-			piece.setX(x);
-			piece.setY(y);
-			if (piece.isRook()){
+			_position.add(square, pieceCode(piece));
+		}
+	}
+
+	/*
+	 * the Board piece code of the given piece
+	 */
+	private static int pieceCode(Piece piece) {
+		int code = Board.code(piece.getType(), piece.getColor());
+		return piece.isPromoted() ? code | Board.CODE_PROMOTED : code;
+	}
+
+	/**
+	 * Returns the bitboards of the pieces on the board.
+	 *
+	 * @return The bitboards of the pieces on the board.
+	 */
+	public Board getBoard() {
+		return _position;
+	}
+
+	/**
+	 * Returns the legal move generator of this game kind and rules.
+	 */
+	public MoveGenerator getMoveGenerator() {
+		if (_moveGenerator == null) {
+			_moveGenerator = new MoveGenerator(_rules);
+		}
+		return _moveGenerator;
+	}
+
+	/**
+	 * Counts the leaf positions of the legal move tree of the given depth
+	 * from the current position (perft), on a search copy of the board.
+	 *
+	 * @param depth
+	 *            the number of plies
+	 * @return the number of positions
+	 */
+	public long perft(int depth) {
+		return getMoveGenerator().perft(getSearchBoard(), depth);
+	}
+
+	/**
+	 * Returns the number of legal moves in the current position, counted on
+	 * the target squares of the pieces without creating the moves or
+	 * analysing the position.
+	 *
+	 * @return the number of legal moves
+	 */
+	public int countLegalMoves() {
+		updatePocketCounts();
+		return getMoveGenerator().count(_position, null);
+	}
+
+	/**
+	 * Returns the number of legal moves of every piece type of the side to
+	 * move, indexed by the piece type. The drops are counted by the type of
+	 * the dropped piece.
+	 *
+	 * @return the legal moves per piece type
+	 */
+	public int[] getMobility() {
+		int mobility[] = new int[Board.PIECE_TYPE_SLOTS];
+		updatePocketCounts();
+		getMoveGenerator().count(_position, mobility);
+		return mobility;
+	}
+
+	/**
+	 * Returns a copy of the current position and game state. Moves can be
+	 * played and taken back on the copy with Board.makeMove and
+	 * Board.unmakeMove, without analysing and without changing this game.
+	 *
+	 * @return a copy of the current position
+	 */
+	public Board getSearchBoard() {
+		getCurrentMoveInfo();
+		updatePocketCounts();
+		Board board = new Board(_position);
+		if (!_rules.hasRoyalKings()) {
+			board.setCastling(0);
+		}
+		board.setCapturesToPocket(_rules.isCapturesToPocket());
+		return board;
+	}
+
+	/**
+	 * Returns the Zobrist hash of the current position. Positions with the
+	 * same pieces, side to move, castling rights, en passant file, Fischer
+	 * rook columns and drop pockets have the same hash.
+	 *
+	 * @return the hash of the current position
+	 */
+	public long getPositionHash() {
+		updatePocketCounts();
+		return _position.getHash();
+	}
+
+	/**
+	 * Returns the int code (see MoveCode) of the given move, which should be a
+	 * valid move in the current position.
+	 *
+	 * @param move
+	 *            a valid move in the current position
+	 * @return the move code
+	 */
+	public int getMoveCode(Move move) {
+		int fromX = move.getFromX();
+		int fromY = move.getFromY();
+		int toX = move.getToX();
+		int toY = move.getToY();
+		int to = Board.square(toX, toY);
+		if (move.isDropMove()) {
+			return MoveCode.createDrop(to, move.getAdditionalPieceTypeInfo());
+		}
+
+		int type = 0;
+		int flags = 0;
+		Piece movingPiece = getPieceAt(fromX, fromY);
+		Piece destPiece = getPieceAt(toX, toY);
+		if (movingPiece.isKing()) {
+			boolean fischerCastle = _rules.isFischer() && (destPiece != null) && destPiece.isRook()
+					&& destPiece.isColor(movingPiece.getColor());
+			if ((Math.abs(fromY - toY) >= 2) || fischerCastle) {
+				flags = MoveCode.FLAG_CASTLE;
 			}
-			if (piece.isKing()) {
-				_king[piece.getColor()] = (King) piece;
+		} else if (movingPiece.isPawn()) {
+			if ((fromY != toY) && (destPiece == null)) {
+				flags = MoveCode.FLAG_EP;
+			}
+			if (_rules.getPromotionTypes(movingPiece.getColor(), toX) != null) {
+				type = move.getAdditionalPieceTypeInfo();
 			}
 		}
-
-		return Common.RC_OK;
+		return MoveCode.create(Board.square(fromX, fromY), to, type, flags);
 	}
 
 	public void setRated(boolean rated) {
@@ -2620,6 +2228,7 @@ public class Game {
 		Utils.Assert(Common.isBlackOrWhite(color), "bad color " + color);
 		_startingColor = color;
 		_currentColor = color;
+		_position.setSideToMove(color);
 		return Common.RC_OK;
 	}
 
@@ -2839,6 +2448,9 @@ public class Game {
 		Piece movedPiece = lastMove.getMovedPiece();
 		Piece capturedPiece = lastMove.getCapturedPiece();
 
+		// restores the castling rights, ep square and half move clock
+		int code = _position.popMove();
+
 		int fromX = lastMove.getFromX();
 		int fromY = lastMove.getFromY();
 		int toX = lastMove.getToX();
@@ -2849,28 +2461,26 @@ public class Game {
             // takeback drop move. just remove the piece and return to the droppable list
             setPieceAt(toX, toY, null);
 
-            List<Piece> droppable = getDroppablePieces(Common.OtherColor(_currentColor));
-            Piece droppedPiece = lastMove.getMovedPiece();
-            Piece capturedBeforeDropped = droppedPiece;
-            // in crazy house piece reversed color when it was dropped. so reverse back
-            if (isCrazyHouse())
+            Pocket pocket = getDropPocket(Common.OtherColor(_currentColor));
+            Piece capturedBeforeDropped = lastMove.getPocketPiece();
+            if (pocket != null)
             {
-                capturedBeforeDropped = Piece.create(droppedPiece.getType(), Common.OtherColor(droppedPiece.getColor()));
+                pocket.add(capturedBeforeDropped);
             }
-            if (droppedPiece.isPawn() && (((Pawn)droppedPiece).getWasPromotedTo() != Common.PIECE_TYPE_ILLEGAL))
-            {
-                capturedBeforeDropped = Piece.create(((Pawn) droppedPiece).getWasPromotedTo(), capturedBeforeDropped.getColor());
-                capturedBeforeDropped.setPromoted();
-            }
-            droppable.add(capturedBeforeDropped);
             lastMove.setMovedPiece(capturedBeforeDropped);
         }
         else
         {
-            boolean fischerCastle = isFischer() && capturedPiece != null && movedPiece.isKing() &&
-                capturedPiece.isColor(movedPiece.getColor()) && capturedPiece.isRook();
-
-            if (! fischerCastle) { // fischer KxR - the rook might go elsewhere
+            if (MoveCode.isCastle(code)) {
+                // castling. clear the king and rook targets before putting them
+                // back, as in Fischer chess they may overlap the initial squares
+                int castle = _position.getCastleSide(code);
+                Piece rook = getPieceAt(fromX, castle == Common.CASTLE_QUEEN ? 4 : 6);
+                setPieceAt(fromX, castle == Common.CASTLE_QUEEN ? 3 : 7, null);
+                setPieceAt(fromX, castle == Common.CASTLE_QUEEN ? 4 : 6, null);
+                setPieceAt(fromX, fromY, movedPiece);
+                setPieceAt(fromX, _position.getCastlingRookY(castle), rook);
+            } else {
                 setPieceAt(toX, toY, capturedPiece);
                 setPieceAt(fromX, fromY, movedPiece);
             }
@@ -2885,39 +2495,6 @@ public class Game {
                 }
             }
 
-            // special case - castling
-            if ( movedPiece.isKing() && ( (Math.abs(fromY - toY) >= 2) || fischerCastle) ) {
-                // castling
-                Piece rook;
-                int rookY, rookToY, kingTo = 3;
-                if (fromY > toY) { // long
-                    rookY = 4;
-                    rookToY = (Integer)getAttribute(LEFT_ROOK_LOCATION);
-                } else {
-                    rookY = 6;
-                    kingTo = 7;
-                    rookToY = (Integer)getAttribute(RIGHT_ROOK_LOCATION);
-                }
-                rook = getPieceAt(fromX, rookY);
-                if (fischerCastle){
-                    setPieceAt(toX, kingTo, null); // clean kings square
-                    setPieceAt(toX, rookY, null); // clean rooks square
-                    setPieceAt(fromX, fromY, movedPiece); // put king in place
-                    setPieceAt(fromX, rookToY, rook); // put king in place
-                }
-
-                if (!fischerCastle){
-                    movePiece(fromX, rookY, fromX, rookToY); // place the rook
-                }
-            }
-
-            if (lastMoveInfo.getMovedPiece()[0] != null) {
-                lastMoveInfo.getMovedPiece()[0].setMoved(false);
-            }
-            if (lastMoveInfo.getMovedPiece()[1] != null) {
-                lastMoveInfo.getMovedPiece()[1].setMoved(false);
-            }
-
             if (capturedPiece != null)
             {
                 if (! getCapturedPieces(_currentColor).remove( capturedPiece )) {
@@ -2936,32 +2513,13 @@ public class Game {
 		_moveInfos.remove(_moveInfos.size() - 1);
 		_currentColor = Common.OtherColor(_currentColor);
 		_currentMove--;
+		publishPosition();
 
-		// re-set game EP pawn
-		Move move = getLastMove();
-		setEpPawn(null);
-		if (move != null) {
-			movedPiece = move.getMovedPiece();
-            // check if pawn made a 2 jump
-			if (movedPiece.isPawn()) {
-				if (Math.abs(move.getToX() - move.getFromX()) == 2) {
-                    // check if there is another pawn nearby
-                    Piece isOtherPawn = getPieceAt(move.getToX(), move.getToY() + 1);
-                    if ((isOtherPawn != null) && isOtherPawn.isPawn() && isOtherPawn.isColor(_currentColor)) {
-                        setEpPawn((Pawn) movedPiece);
-                    }
-                    isOtherPawn = getPieceAt(move.getToX(), move.getToY() - 1);
-                    if ((isOtherPawn != null) && isOtherPawn.isPawn() && isOtherPawn.isColor(_currentColor)) {
-                        setEpPawn((Pawn) movedPiece);
-                    }
-				}
-			}
+		if (Log.isDebug()) {
+			Log.debug(" Game " + getName() + " : taking back move " + lastMove.getNameAlg());
+			Log.debug("\n" + toString());
 		}
 
-		Log.debug(" Game " + getName() + " : taking back move " + lastMove.getNameAlg());
-
-		Log.debug("\n" + toString());
-
 		// must be called last
 		_movelist.takeback();
 
@@ -0,0 +1,116 @@
+//==============================================================================
+//            Copyright (c) 2009-2014 ichess.co.il
+//
+//This document contains confidential information which is protected by
+//copyright and is proprietary to ichess.co.il. No part
+//of this document may be used, copied, disclosed, or conveyed to another
+//party without prior written consent of ichess.co.il.
+//==============================================================================
+
+package com.ichess.game;
+
+/**
+ * Precomputed geometry of square pairs, shared by all games. Squares use the
+ * Board numbering (a1 is 0, h8 is 63). <br>
+ * Two squares are aligned if they share a row, a column or a diagonal. For
+ * aligned squares the tables give the squares between them, the whole board
+ * line through them and the square step from the first towards the second.
+ * For squares that are not aligned these are 0.
+ *
+ * @author Ran Berenfeld
+ * @version 1.0
+ */
+public final class Geometry {
+
+	private static final long[][] BETWEEN = new long[Board.SQUARE_NUM][Board.SQUARE_NUM];
+	private static final long[][] LINE = new long[Board.SQUARE_NUM][Board.SQUARE_NUM];
+	private static final int[][] DIRECTION = new int[Board.SQUARE_NUM][Board.SQUARE_NUM];
+	private static final int[][] DISTANCE = new int[Board.SQUARE_NUM][Board.SQUARE_NUM];
+
+	static {
+		for (int from = 0; from < Board.SQUARE_NUM; from++) {
+			int fromX = from >> 3;
+			int fromY = from & 7;
+			for (int to = 0; to < Board.SQUARE_NUM; to++) {
+				int deltaX = (to >> 3) - fromX;
+				int deltaY = (to & 7) - fromY;
+				DISTANCE[from][to] = Math.max(Math.abs(deltaX), Math.abs(deltaY));
+				if ((from == to) || ((deltaX != 0) && (deltaY != 0) && (Math.abs(deltaX) != Math.abs(deltaY)))) {
+					continue;
+				}
+				int dirX = Integer.signum(deltaX);
+				int dirY = Integer.signum(deltaY);
+				DIRECTION[from][to] = (dirX << 3) + dirY;
+
+				long between = 0L;
+				for (int x = fromX + dirX, y = fromY + dirY; (x != (to >> 3)) || (y != (to & 7)); x += dirX, y += dirY) {
+					between |= 1L << ((x << 3) + y);
+				}
+				BETWEEN[from][to] = between;
+
+				long line = 0L;
+				for (int x = fromX, y = fromY; (x >= 0) && (x < 8) && (y >= 0) && (y < 8); x += dirX, y += dirY) {
+					line |= 1L << ((x << 3) + y);
+				}
+				for (int x = fromX, y = fromY; (x >= 0) && (x < 8) && (y >= 0) && (y < 8); x -= dirX, y -= dirY) {
+					line |= 1L << ((x << 3) + y);
+				}
+				LINE[from][to] = line;
+			}
+		}
+	}
+
+	private Geometry() {
+	}
+
+	/**
+	 * Returns the squares strictly between the two squares, or 0 if they are
+	 * not aligned or adjacent.
+	 */
+	public static long between(int from, int to) {
+		return BETWEEN[from][to];
+	}
+
+	/**
+	 * Returns the two squares and the squares between them if they are
+	 * aligned, or just the two squares otherwise.
+	 */
+	public static long span(int from, int to) {
+		return BETWEEN[from][to] | (1L << from) | (1L << to);
+	}
+
+	/**
+	 * Returns the whole board line (row, column or diagonal) through the two
+	 * squares, or 0 if they are not aligned.
+	 */
+	public static long line(int from, int to) {
+		return LINE[from][to];
+	}
+
+	public static boolean isAligned(int from, int to) {
+		return LINE[from][to] != 0;
+	}
+
+	/**
+	 * Returns true if the three squares are on one board line.
+	 */
+	public static boolean isAligned(int from, int to, int square) {
+		return (LINE[from][to] & (1L << square)) != 0;
+	}
+
+	/**
+	 * Returns the square step from one square towards the other (for example 8
+	 * for one row up, or 9 for one row up and one column right), or 0 if they
+	 * are not aligned.
+	 */
+	public static int direction(int from, int to) {
+		return DIRECTION[from][to];
+	}
+
+	/**
+	 * Returns the number of king steps between the two squares.
+	 */
+	public static int distance(int from, int to) {
+		return DISTANCE[from][to];
+	}
+}
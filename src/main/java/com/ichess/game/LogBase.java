@@ -27,6 +27,14 @@ public class LogBase {
         logger.log(level, message);
     }
 
+    /**
+     * Returns true if debug messages are logged. Callers on hot paths check it
+     * before building a debug message.
+     */
+    public boolean isDebug() {
+        return Logger.getLogger(CLASSNAME).isLoggable(Utils.DEBUG);
+    }
+
     public void debug(String message) {
         debug(Utils.DEBUG, message);
     }
@@ -26,7 +26,9 @@ public class Move {
 	private int _fromX, _fromY, _toX, _toY;
 	private Game _game = null;
 	private Piece _movedPiece = null;
+	private Piece _pocketPiece = null; // the piece a drop move took from the pocket
 	private MoveInfo _moveInfo; // move info after the move is played
+	private MoveInfo _fromInfo; // move info of the position the move is played from, for naming
 	private int _moveNumber;
 	private String _nameAlg = null; // move name in algebraic notation Nxf3
 	private String _nameAlgHeb = null; // move name in algebraic hebrew notation
@@ -90,6 +92,18 @@ public class Move {
 		return _movedPiece;
 	}
 
+	/*
+	 * the piece a played drop move took from the pocket. it is returned there
+	 * on takeback
+	 */
+	Piece getPocketPiece() {
+		return _pocketPiece;
+	}
+
+	void setPocketPiece(Piece pocketPiece) {
+		_pocketPiece = pocketPiece;
+	}
+
 	public MoveInfo getMoveInfo() {
 		return _moveInfo;
 	}
@@ -99,18 +113,22 @@ public class Move {
 	}
 
 	public String getNameAlg() {
+		calcNames();
 		return (_nameAlg != null ? _nameAlg : "") + (_nameAlgSuffix != null ? _nameAlgSuffix : "");
 	}
 
 	public String getNameAlgHeb() {
+		calcNames();
 		return (_nameAlgHeb != null ? _nameAlgHeb : "") + (_nameAlgSuffix != null ? _nameAlgSuffix : "");
 	}
 
 	public String getNameFig() {
+		calcNames();
 		return (_nameFig != null ? _nameFig : "") + (_nameAlgSuffix != null ? _nameAlgSuffix : "");
 	}
 
 	public String getNameFigHeb() {
+		calcNames();
 		return (_nameFigHeb != null ? _nameFigHeb : "") + (_nameAlgSuffix != null ? _nameAlgSuffix : "");
 	}
 
@@ -119,9 +137,31 @@ public class Move {
 	}
 
 	public String getNameNum() {
+		calcNames();
 		return _nameNum;
 	}
 
+	/*
+	 * the names are found on first use, see Notation.getNames
+	 */
+	private void calcNames() {
+		if (_nameNum == null) {
+			Notation.getNames(this);
+		}
+	}
+
+	/**
+	 * Returns the move info of the position this move is played from, whose
+	 * valid moves tell which other pieces could move to the same square.
+	 */
+	public MoveInfo getFromInfo() {
+		return _fromInfo;
+	}
+
+	void setFromInfo(MoveInfo fromInfo) {
+		_fromInfo = fromInfo;
+	}
+
 	public int getAdditionalPieceTypeInfo() {
 		return _additionalPieceTypeInfo;
 	}
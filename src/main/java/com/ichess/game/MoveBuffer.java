@@ -0,0 +1,71 @@
+//==============================================================================
+//            Copyright (c) 2009-2014 ichess.co.il
+//
+//This document contains confidential information which is protected by
+//copyright and is proprietary to ichess.co.il. No part
+//of this document may be used, copied, disclosed, or conveyed to another
+//party without prior written consent of ichess.co.il.
+//==============================================================================
+
+package com.ichess.game;
+
+import java.util.Arrays;
+
+/**
+ * A growable list of int coded moves (see MoveCode), without boxing. Move
+ * generators fill a buffer, and the same buffer can be cleared and reused for
+ * the next position.
+ *
+ * @author Ran Berenfeld
+ * @version 1.0
+ */
+public final class MoveBuffer {
+
+	private int[] _moves;
+	private int _size = 0;
+
+	public MoveBuffer() {
+		this(64);
+	}
+
+	public MoveBuffer(int capacity) {
+		_moves = new int[Math.max(capacity, 1)];
+	}
+
+	public void add(int move) {
+		if (_size == _moves.length) {
+			_moves = Arrays.copyOf(_moves, _size * 2);
+		}
+		_moves[_size++] = move;
+	}
+
+	public int get(int index) {
+		return _moves[index];
+	}
+
+	public int size() {
+		return _size;
+	}
+
+	public boolean isEmpty() {
+		return _size == 0;
+	}
+
+	public void clear() {
+		_size = 0;
+	}
+
+	/**
+	 * Returns the index of the move with the same key (see MoveCode.getKey)
+	 * as the given move, or -1 if there is none.
+	 */
+	public int indexOfKey(int move) {
+		int key = MoveCode.getKey(move);
+		for (int index = 0; index < _size; index++) {
+			if (MoveCode.getKey(_moves[index]) == key) {
+				return index;
+			}
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,156 @@
+//==============================================================================
+//            Copyright (c) 2009-2014 ichess.co.il
+//
+//This document contains confidential information which is protected by
+//copyright and is proprietary to ichess.co.il. No part
+//of this document may be used, copied, disclosed, or conveyed to another
+//party without prior written consent of ichess.co.il.
+//==============================================================================
+
+package com.ichess.game;
+
+/**
+ * Static helpers for moves packed into an int, as used by Board.makeMove. <br>
+ * Bits 0-5 hold the source square and bits 6-11 the target square (Board
+ * square numbering). Bits 12-15 hold the promotion piece type, or the dropped
+ * piece type of a drop move, and 0 otherwise. These bits and the drop flag
+ * are the key of the move, which tells it apart from the other moves of a
+ * position. <br>
+ * The higher bits are flags, followed by the types of the moving and the
+ * captured piece. Board.makeMove needs only the key and the castle and ep
+ * flags, the rest describe the move for its users. <br>
+ * A castling move goes from the king square to the king target square, which
+ * in Fischer chess can also be the castling rook square.
+ *
+ * @author Ran Berenfeld
+ * @version 1.0
+ */
+public final class MoveCode {
+
+	public static final int NONE = 0;
+
+	public static final int FLAG_DROP = 1 << 16;
+	public static final int FLAG_CASTLE = 1 << 17;
+	public static final int FLAG_EP = 1 << 18;
+	public static final int FLAG_CAPTURE = 1 << 19;
+	public static final int FLAG_CHECK = 1 << 20;
+
+	private static final int SQUARE_MASK = 0x3f;
+	private static final int TYPE_SHIFT = 12;
+	private static final int TYPE_MASK = 0xf;
+	private static final int KEY_MASK = (1 << 17) - 1;
+	private static final int PIECE_SHIFT = 21;
+	private static final int CAPTURED_SHIFT = 25;
+
+	private MoveCode() {
+	}
+
+	public static int create(int from, int to) {
+		return from | (to << 6);
+	}
+
+	public static int create(int from, int to, int type, int flags) {
+		return from | (to << 6) | (type << TYPE_SHIFT) | flags;
+	}
+
+	/**
+	 * Returns the code of a drop move of the given piece type.
+	 */
+	public static int createDrop(int square, int type) {
+		return create(square, square, type, FLAG_DROP);
+	}
+
+	/**
+	 * Returns the given move with the types of the moving piece and of the
+	 * captured piece (0 if none) added.
+	 */
+	public static int withPieces(int move, int pieceType, int capturedType) {
+		return move | (pieceType << PIECE_SHIFT) | (capturedType << CAPTURED_SHIFT);
+	}
+
+	/**
+	 * Returns the from, to and type bits and the drop flag, which are the
+	 * same for a move however it was created.
+	 */
+	public static int getKey(int move) {
+		return move & KEY_MASK;
+	}
+
+	public static int getFrom(int move) {
+		return move & SQUARE_MASK;
+	}
+
+	public static int getTo(int move) {
+		return (move >>> 6) & SQUARE_MASK;
+	}
+
+	/**
+	 * Returns the promotion piece type, or the dropped piece type of a drop
+	 * move. Returns 0 if none.
+	 */
+	public static int getType(int move) {
+		return (move >>> TYPE_SHIFT) & TYPE_MASK;
+	}
+
+	public static boolean isDrop(int move) {
+		return (move & FLAG_DROP) != 0;
+	}
+
+	public static boolean isCastle(int move) {
+		return (move & FLAG_CASTLE) != 0;
+	}
+
+	public static boolean isEp(int move) {
+		return (move & FLAG_EP) != 0;
+	}
+
+	/**
+	 * Returns true if the move captures an enemy piece (including en passant).
+	 */
+	public static boolean isCapture(int move) {
+		return (move & FLAG_CAPTURE) != 0;
+	}
+
+	public static boolean isCheck(int move) {
+		return (move & FLAG_CHECK) != 0;
+	}
+
+	/**
+	 * Returns the type of the moving piece, or 0 if it was not added.
+	 */
+	public static int getPieceType(int move) {
+		return (move >>> PIECE_SHIFT) & TYPE_MASK;
+	}
+
+	/**
+	 * Returns the type of the captured piece, or 0. For a Fischer chess
+	 * castling by moving the king onto its rook, this is the rook.
+	 */
+	public static int getCapturedType(int move) {
+		return (move >>> CAPTURED_SHIFT) & TYPE_MASK;
+	}
+
+	public static boolean isPromotion(int move) {
+		return ((move & FLAG_DROP) == 0) && (getType(move) != 0);
+	}
+
+	/**
+	 * Returns the move in numeric notation (e2e4, e7e8q, or N@f3 for drops),
+	 * mainly for logging.
+	 */
+	public static String toString(int move) {
+		String to = squareName(getTo(move));
+		if (isDrop(move)) {
+			return Character.toUpperCase(Board.typeChar(getType(move))) + "@" + to;
+		}
+		String result = squareName(getFrom(move)) + to;
+		if (isPromotion(move)) {
+			result += Board.typeChar(getType(move));
+		}
+		return result;
+	}
+
+	private static String squareName(int square) {
+		return "" + (char) ('a' + (square & 7)) + (char) ('1' + (square >> 3));
+	}
+}
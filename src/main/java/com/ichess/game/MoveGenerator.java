@@ -0,0 +1,942 @@
+//==============================================================================
+//            Copyright (c) 2009-2014 ichess.co.il
+//
+//This document contains confidential information which is protected by
+//copyright and is proprietary to ichess.co.il. No part
+//of this document may be used, copied, disclosed, or conveyed to another
+//party without prior written consent of ichess.co.il.
+//==============================================================================
+
+package com.ichess.game;
+
+import com.ichess.game.rules.VariantRules;
+
+/**
+ * Generates the legal moves of a Board position, as move codes (see
+ * MoveCode), following the VariantRules of the game kind it was created for.
+ * <br>
+ * The pieces giving check and the pieces pinned to the king are found once per
+ * position, and the targets of every piece are limited by them, so only legal
+ * moves are produced and the board is never changed. En passant captures,
+ * which remove two pieces from a line, test the move on the occupancy it
+ * leaves instead. So do the moves from and to the squares between the king
+ * and an enemy grasshoper on a line through it, where a piece may become or
+ * stop being the hurdle of a check, and every move if a grasshoper gives
+ * check, as its checks can't be blocked like a slider's. <br>
+ * The moves of a piece are found as a mask of its legal target squares, so
+ * they can also be counted, without creating them, by the bits of the mask.
+ * The drops of crazyhouse and bughouse are produced for every piece type in
+ * the pocket of the Board, on the empty squares that answer a check. <br>
+ * Where the rules have no royal kings, as in suicide and free play, there are
+ * no checks and no castling, and where captures come first only captures are
+ * produced if there are any.
+ *
+ * @author Ran Berenfeld
+ * @version 1.0
+ */
+public final class MoveGenerator {
+
+	private static final long ROWS_1_AND_8 = 0xff000000000000ffL;
+
+	// the order of the pieces looked at for a legal move, the cheapest first
+	private static final int[] SEARCH_ORDER = { Common.PIECE_TYPE_PAWN, Common.PIECE_TYPE_KNIGHT,
+			Common.PIECE_TYPE_BISHOP, Common.PIECE_TYPE_ROOK, Common.PIECE_TYPE_GRASSHOPER,
+			Common.PIECE_TYPE_ARCHBISHOP, Common.PIECE_TYPE_CHANCELLOR, Common.PIECE_TYPE_QUEEN,
+			Common.PIECE_TYPE_KING };
+
+	private final boolean _checks;
+	private final boolean _fischer;
+	private final boolean _capturesFirst;
+	private final int _drops;
+	// the promotion types of a pawn by color and target row (0 to 7), or null
+	private final int[][][] _promotionTypes = new int[Common.COLOR_NUM][8][];
+	// the squares a pawn of each color promotes on
+	private final long[] _promotionSquares = new long[Common.COLOR_NUM];
+
+	public MoveGenerator(Game game) {
+		this(game.getRules());
+	}
+
+	/**
+	 * Creates a move generator of the given rules. The rules are asked once
+	 * here, so generating the moves of a position doesn't depend on the game
+	 * kind.
+	 */
+	public MoveGenerator(VariantRules rules) {
+		_checks = rules.hasRoyalKings();
+		_fischer = rules.isFischer();
+		_capturesFirst = rules.isCapturesFirst();
+		_drops = rules.getDrops();
+		for (int color = Common.COLOR_WHITE; color <= Common.COLOR_BLACK; color++) {
+			for (int row = 0; row < 8; row++) {
+				_promotionTypes[color][row] = rules.getPromotionTypes(color, row + 1);
+				if (_promotionTypes[color][row] != null) {
+					_promotionSquares[color] |= 0xffL << (row << 3);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the square of the king of the side to move, or NO_SQUARE if the
+	 * kings are plain pieces in this game or the side doesn't have exactly one.
+	 */
+	public int getKingSquare(Board board) {
+		if (!_checks) {
+			return Board.NO_SQUARE;
+		}
+		long kings = board.getPieces(Common.PIECE_TYPE_KING, board.getSideToMove());
+		if (Long.bitCount(kings) != 1) {
+			return Board.NO_SQUARE;
+		}
+		return Board.lastSquare(kings);
+	}
+
+	/**
+	 * Returns the pieces that give check to the side to move.
+	 */
+	public long getCheckers(Board board) {
+		int kingSquare = getKingSquare(board);
+		if (kingSquare == Board.NO_SQUARE) {
+			return 0L;
+		}
+		return board.attackersTo(kingSquare, Common.OtherColor(board.getSideToMove()), board.getOccupied());
+	}
+
+	/**
+	 * Returns the pieces of the side to move that are pinned to their king.
+	 */
+	public long getPinned(Board board) {
+		int kingSquare = getKingSquare(board);
+		if (kingSquare == Board.NO_SQUARE) {
+			return 0L;
+		}
+		return getPinned(board, kingSquare, board.getSideToMove());
+	}
+
+	/**
+	 * Fills the given buffer with the legal moves of the side to move. The
+	 * moves of the pieces come first, from the highest square down, followed
+	 * by the drops.
+	 */
+	public void generate(Board board, MoveBuffer moves) {
+		moves.clear();
+		if (!_checks) {
+			generateUnchecked(board, moves);
+			return;
+		}
+		int us = board.getSideToMove();
+		int them = Common.OtherColor(us);
+		long occupied = board.getOccupied();
+
+		int kingSquare = getKingSquare(board);
+		long checkers = 0L;
+		long pinned = 0L;
+		long hurdles = 0L; // test the moves from and to these on the occupancy they leave
+		long evasions = ~0L; // the targets that answer a check
+		if (kingSquare != Board.NO_SQUARE) {
+			checkers = board.attackersTo(kingSquare, them, occupied);
+			hurdles = getHurdleSquares(board, kingSquare, checkers);
+			if (hurdles != ~0L) {
+				pinned = getPinned(board, kingSquare, us);
+				evasions = getEvasions(kingSquare, checkers);
+			}
+		}
+
+		long pieces = board.getOccupied(us);
+		while (pieces != 0) {
+			int from = Board.lastSquare(pieces);
+			pieces &= ~(1L << from);
+			int type = Board.codeType(board.getCode(from));
+			long targets = getTargets(board, from, type, kingSquare, checkers, pinned, hurdles, evasions);
+			while (targets != 0) {
+				int to = Board.lastSquare(targets);
+				targets &= ~(1L << to);
+				addMove(board, from, to, type, moves);
+			}
+		}
+
+		if (_drops != VariantRules.DROPS_NONE) {
+			addDrops(board, getDropSquares(board, kingSquare, evasions, hurdles), moves);
+		}
+	}
+
+	/*
+	 * generate the moves where the kings are plain pieces, as in suicide and
+	 * free play. there are no checks, pins or castling, so every piece moves
+	 * by its attacks, and where captures come first the quiet moves are not
+	 * generated at all if there is a capture
+	 */
+	private void generateUnchecked(Board board, MoveBuffer moves) {
+		if (_capturesFirst) {
+			addUncheckedMoves(board, true, moves);
+			if (moves.size() != 0) {
+				return;
+			}
+		}
+		addUncheckedMoves(board, false, moves);
+		if (_drops != VariantRules.DROPS_NONE) {
+			addDrops(board, ~board.getOccupied(), moves);
+		}
+	}
+
+	private void addUncheckedMoves(Board board, boolean capturesOnly, MoveBuffer moves) {
+		long pieces = board.getOccupied(board.getSideToMove());
+		while (pieces != 0) {
+			int from = Board.lastSquare(pieces);
+			pieces &= ~(1L << from);
+			int type = Board.codeType(board.getCode(from));
+			long targets = getUncheckedTargets(board, from, type, capturesOnly);
+			while (targets != 0) {
+				int to = Board.lastSquare(targets);
+				targets &= ~(1L << to);
+				addMove(board, from, to, type, moves);
+			}
+		}
+	}
+
+	/*
+	 * add the drops of every piece type in the pocket to the given squares
+	 */
+	private void addDrops(Board board, long squares, MoveBuffer moves) {
+		int us = board.getSideToMove();
+		for (int type = Common.PIECE_TYPE_PAWN; (type < Board.PIECE_TYPE_SLOTS) && (squares != 0); type++) {
+			if (board.getPocketCount(us, type) == 0) {
+				continue;
+			}
+			long targets = getDropTargets(squares, type);
+			while (targets != 0) {
+				int to = Board.lastSquare(targets);
+				targets &= ~(1L << to);
+				addCode(board, MoveCode.createDrop(to, type), type, 0, moves);
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of legal moves of the side to move, as generate would
+	 * produce them, by counting the targets of every piece. No move is
+	 * created. <br>
+	 * If the given array is not null, the moves of every piece type are added
+	 * to it, indexed by the piece type, the drops by the type of the dropped
+	 * piece.
+	 */
+	public int count(Board board, int[] byType) {
+		if (_capturesFirst) {
+			int captures = count(board, byType, true);
+			if (captures > 0) {
+				return captures;
+			}
+		}
+		return count(board, byType, false);
+	}
+
+	private int count(Board board, int[] byType, boolean capturesOnly) {
+		int us = board.getSideToMove();
+		int them = Common.OtherColor(us);
+		long occupied = board.getOccupied();
+
+		int kingSquare = getKingSquare(board);
+		long checkers = 0L;
+		long pinned = 0L;
+		long hurdles = 0L;
+		long evasions = ~0L;
+		if (kingSquare != Board.NO_SQUARE) {
+			checkers = board.attackersTo(kingSquare, them, occupied);
+			hurdles = getHurdleSquares(board, kingSquare, checkers);
+			if (hurdles != ~0L) {
+				pinned = getPinned(board, kingSquare, us);
+				evasions = getEvasions(kingSquare, checkers);
+			}
+		}
+		long captureTargets = board.getOccupied(them);
+		if (board.getEpSquare() != Board.NO_SQUARE) {
+			captureTargets |= 1L << board.getEpSquare();
+		}
+
+		int total = 0;
+		for (int type = Common.PIECE_TYPE_PAWN; type < Board.PIECE_TYPE_SLOTS; type++) {
+			long pieces = board.getPieces(type, us);
+			int moves = 0;
+			while (pieces != 0) {
+				int from = Board.lastSquare(pieces);
+				pieces &= ~(1L << from);
+				long targets;
+				if (!_checks) {
+					targets = getUncheckedTargets(board, from, type, capturesOnly);
+				} else {
+					targets = getTargets(board, from, type, kingSquare, checkers, pinned, hurdles, evasions);
+					if (capturesOnly) {
+						// a pawn only lands on the ep square by capturing
+						targets &= (type == Common.PIECE_TYPE_PAWN) ? captureTargets : board.getOccupied(them);
+					}
+				}
+				moves += countTargets(board, type, targets);
+			}
+			if (byType != null) {
+				byType[type] += moves;
+			}
+			total += moves;
+		}
+
+		if ((_drops != VariantRules.DROPS_NONE) && !capturesOnly) {
+			long squares = getDropSquares(board, kingSquare, evasions, hurdles);
+			for (int type = Common.PIECE_TYPE_PAWN; (type < Board.PIECE_TYPE_SLOTS) && (squares != 0); type++) {
+				if (board.getPocketCount(us, type) == 0) {
+					continue;
+				}
+				int drops = Long.bitCount(getDropTargets(squares, type));
+				if (byType != null) {
+					byType[type] += drops;
+				}
+				total += drops;
+			}
+		}
+		return total;
+	}
+
+	/**
+	 * Returns true if the side to move has any legal move, stopping at the
+	 * first one found. The king steps are tried first, as they are the only
+	 * moves in a double check, then the pieces from the cheapest, and the
+	 * castlings and drops last.
+	 */
+	public boolean hasLegalMove(Board board) {
+		int us = board.getSideToMove();
+		int them = Common.OtherColor(us);
+		long own = board.getOccupied(us);
+
+		int kingSquare = getKingSquare(board);
+		long checkers = 0L;
+		long pinned = 0L;
+		long hurdles = 0L;
+		long evasions = ~0L;
+		if (kingSquare != Board.NO_SQUARE) {
+			long kingSteps = Attacks.kingAttacks(kingSquare) & ~own & ~board.getAttacks(them);
+			if (kingSteps != 0) {
+				return true;
+			}
+			checkers = board.attackersTo(kingSquare, them, board.getOccupied());
+			hurdles = getHurdleSquares(board, kingSquare, checkers);
+			if (hurdles != ~0L) {
+				evasions = getEvasions(kingSquare, checkers);
+				if (evasions == 0) {
+					return false;
+				}
+				pinned = getPinned(board, kingSquare, us);
+			}
+		}
+
+		for (int type : SEARCH_ORDER) {
+			long pieces = board.getPieces(type, us);
+			if ((type == Common.PIECE_TYPE_KING) && (kingSquare != Board.NO_SQUARE)) {
+				pieces &= ~(1L << kingSquare);
+			}
+			while (pieces != 0) {
+				int from = Board.lastSquare(pieces);
+				pieces &= ~(1L << from);
+				if (getTargets(board, from, type, kingSquare, checkers, pinned, hurdles, evasions) != 0) {
+					return true;
+				}
+			}
+		}
+
+		if ((kingSquare != Board.NO_SQUARE) && (getKingTargets(board, kingSquare, checkers) != 0)) {
+			return true;
+		}
+		if (_drops == VariantRules.DROPS_NONE) {
+			return false;
+		}
+		long squares = getDropSquares(board, kingSquare, evasions, hurdles);
+		if (_drops == VariantRules.DROPS_ALWAYS) {
+			// in bughouse a piece may still come from the other board, so
+			// a square to drop on is enough not to be mated
+			return squares != 0;
+		}
+		for (int type = Common.PIECE_TYPE_PAWN; (type < Board.PIECE_TYPE_SLOTS) && (squares != 0); type++) {
+			if ((board.getPocketCount(us, type) != 0) && (getDropTargets(squares, type) != 0)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the legal target squares of the piece on the given square, or 0
+	 * if it's not a piece of the side to move. Only this piece is looked at,
+	 * with the checks of the position and the pin of the piece itself.
+	 * Castling targets are included for the king, as the square the king
+	 * moves to. The board is not changed.
+	 */
+	public long getTargets(Board board, int from) {
+		int us = board.getSideToMove();
+		int them = Common.OtherColor(us);
+		int code = board.getCode(from);
+		if ((code == 0) || (Board.codeColor(code) != us)) {
+			return 0L;
+		}
+		int type = Board.codeType(code);
+
+		int kingSquare = getKingSquare(board);
+		long checkers = 0L;
+		long pinned = 0L;
+		long hurdles = 0L;
+		long evasions = ~0L;
+		if (kingSquare != Board.NO_SQUARE) {
+			checkers = board.attackersTo(kingSquare, them, board.getOccupied());
+			hurdles = getHurdleSquares(board, kingSquare, checkers);
+			if (hurdles != ~0L) {
+				evasions = getEvasions(kingSquare, checkers);
+				// only a slider on the line through the king and the piece can pin it
+				pinned = getPinned(board, kingSquare, us, Geometry.line(kingSquare, from)) & (1L << from);
+			}
+		}
+		long targets = getTargets(board, from, type, kingSquare, checkers, pinned, hurdles, evasions);
+
+		if (_capturesFirst) {
+			long captures = targets & getCaptureTargets(board, type);
+			if (captures != 0) {
+				return captures;
+			}
+			if (hasCapture(board)) {
+				return 0L;
+			}
+		}
+		return targets;
+	}
+
+	/**
+	 * Returns true if the given move (see MoveCode, only its key is used) is
+	 * legal, as if it was looked for in the moves generate would produce,
+	 * without producing them. A drop is legal if the piece is in the pocket,
+	 * its square is empty and answers a check, and a pawn is not dropped on
+	 * the first or last row.
+	 */
+	public boolean isLegal(Board board, int move) {
+		int to = MoveCode.getTo(move);
+		int type = MoveCode.getType(move);
+		if (MoveCode.isDrop(move)) {
+			return isDropLegal(board, to, type);
+		}
+		int from = MoveCode.getFrom(move);
+		long targets = getTargets(board, from);
+		if (((targets & (1L << to)) == 0) && (Board.codeType(board.getCode(from)) == Common.PIECE_TYPE_KING)) {
+			// a Fischer castling given by the square the king castles to
+			to = getCastlingTarget(board, from, to);
+		}
+		if ((targets & (1L << to)) == 0) {
+			return false;
+		}
+		int[] promotionTypes = null;
+		if (Board.codeType(board.getCode(from)) == Common.PIECE_TYPE_PAWN) {
+			promotionTypes = _promotionTypes[board.getSideToMove()][to >> 3];
+		}
+		if (promotionTypes == null) {
+			return type == 0;
+		}
+		for (int promotionType : promotionTypes) {
+			if (promotionType == type) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the target of the castling a king move from one square to
+	 * another may stand for. In Fischer chess a castling is generated only as
+	 * the king moving onto its rook, and a king move of two columns or more on
+	 * the first or last row to the square the king castles to is taken as that
+	 * castling, so the rook square is returned for it, by the castling columns
+	 * of the board. Returns the given target for any other move. The piece on
+	 * the source square is not looked at, so the caller must check the move
+	 * found is a castling.
+	 */
+	public int getCastlingTarget(Board board, int from, int to) {
+		int row = from & ~7;
+		if (!_fischer || ((row != 0) && (row != 56)) || ((to & ~7) != row) || (Math.abs((to & 7) - (from & 7)) < 2)) {
+			return to;
+		}
+		for (int castle = Common.CASTLE_KING; castle <= Common.CASTLE_QUEEN; castle++) {
+			int kingTarget = row + (castle == Common.CASTLE_QUEEN ? 2 : 6);
+			if (to == kingTarget) {
+				return row + board.getCastlingRookY(castle) - 1;
+			}
+		}
+		return to;
+	}
+
+	private boolean isDropLegal(Board board, int to, int type) {
+		int us = board.getSideToMove();
+		if ((_drops == VariantRules.DROPS_NONE) || ((board.getOccupied() & (1L << to)) != 0) || (_capturesFirst && hasCapture(board))) {
+			return false;
+		}
+		// the piece must be in the pocket, and a pawn can't be dropped on the
+		// first and last rows
+		if ((type < Common.PIECE_TYPE_PAWN) || (type >= Board.PIECE_TYPE_SLOTS)
+				|| (board.getPocketCount(us, type) == 0) || (getDropTargets(1L << to, type) == 0)) {
+			return false;
+		}
+
+		int kingSquare = getKingSquare(board);
+		long hurdles = 0L;
+		long evasions = ~0L;
+		if (kingSquare != Board.NO_SQUARE) {
+			long checkers = board.attackersTo(kingSquare, Common.OtherColor(us), board.getOccupied());
+			hurdles = getHurdleSquares(board, kingSquare, checkers);
+			if (hurdles != ~0L) {
+				evasions = getEvasions(kingSquare, checkers);
+			}
+		}
+		return getDropSquares(board, kingSquare, evasions & (1L << to), hurdles) != 0;
+	}
+
+	/**
+	 * Returns true if the given legal move (see MoveCode) of the side to move
+	 * gives check. A plain move is looked up in the check squares of its piece
+	 * type and the discovered checkers of the board. Promotions, en passant,
+	 * castling, and every move of a side with grasshopers, whose checks
+	 * depend on their hurdles, are tested on the occupancy they leave.
+	 */
+	public boolean givesCheck(Board board, int move) {
+		if (!_checks) {
+			return false;
+		}
+		int us = board.getSideToMove();
+		long kings = board.getPieces(Common.PIECE_TYPE_KING, Common.OtherColor(us));
+		if (Long.bitCount(kings) != 1) {
+			return false;
+		}
+		int kingSquare = Board.lastSquare(kings);
+		int to = MoveCode.getTo(move);
+		boolean grasshopers = board.getPieces(Common.PIECE_TYPE_GRASSHOPER, us) != 0;
+
+		if (MoveCode.isDrop(move)) {
+			int type = MoveCode.getType(move);
+			if (!grasshopers) {
+				return (board.getCheckSquares(type) & (1L << to)) != 0;
+			}
+			return isCheckAfter(board, kingSquare, board.getOccupied() | (1L << to), to, type);
+		}
+
+		int from = MoveCode.getFrom(move);
+		if (MoveCode.isCastle(move)) {
+			int castle = board.getCastleSide(move);
+			int row = from & ~7;
+			int rookSquare = row + board.getCastlingRookY(castle) - 1;
+			int kingTarget = row + (castle == Common.CASTLE_QUEEN ? 2 : 6);
+			int rookTarget = row + (castle == Common.CASTLE_QUEEN ? 3 : 5);
+			long occupied = (board.getOccupied() & ~(1L << from) & ~(1L << rookSquare)) | (1L << kingTarget)
+					| (1L << rookTarget);
+			return isCheckAfter(board, kingSquare, occupied, rookTarget, Common.PIECE_TYPE_ROOK);
+		}
+
+		int type = Board.codeType(board.getCode(from));
+		if (!grasshopers && !MoveCode.isPromotion(move) && !MoveCode.isEp(move)) {
+			if ((board.getCheckSquares(type) & (1L << to)) != 0) {
+				return true;
+			}
+			// a piece uncovers a check unless it stays on the line to the king
+			return ((board.getDiscoveredCheckers() & (1L << from)) != 0)
+					&& ((Geometry.line(kingSquare, from) & (1L << to)) == 0);
+		}
+
+		long occupied = (board.getOccupied() & ~(1L << from)) | (1L << to);
+		if (MoveCode.isEp(move)) {
+			occupied &= ~(1L << (to + (us == Common.COLOR_WHITE ? -8 : 8)));
+		}
+		return isCheckAfter(board, kingSquare, occupied, to, MoveCode.isPromotion(move) ? MoveCode.getType(move) : type);
+	}
+
+	/**
+	 * Returns the number of leaf positions of the move tree of the given depth
+	 * from the given position (perft). The board is played on with makeMove and
+	 * unmakeMove, and is back in its position when done.
+	 */
+	public long perft(Board board, int depth) {
+		MoveBuffer[] buffers = new MoveBuffer[depth + 1];
+		for (int ply = 0; ply <= depth; ply++) {
+			buffers[ply] = new MoveBuffer();
+		}
+		return perft(board, depth, buffers);
+	}
+
+	private long perft(Board board, int depth, MoveBuffer[] buffers) {
+		if (depth == 0) {
+			return 1;
+		}
+		MoveBuffer moves = buffers[depth];
+		generate(board, moves);
+		if (depth == 1) {
+			return moves.size();
+		}
+		long nodes = 0;
+		for (int index = 0; index < moves.size(); index++) {
+			board.makeMove(moves.get(index));
+			nodes += perft(board, depth - 1, buffers);
+			board.unmakeMove();
+		}
+		return nodes;
+	}
+
+	/*
+	 * the pieces of the given color standing alone between their king and an
+	 * enemy slider
+	 */
+	private static long getPinned(Board board, int kingSquare, int us) {
+		return getPinned(board, kingSquare, us, ~0L);
+	}
+
+	/*
+	 * the squares where a move or a drop may make an enemy grasshoper attack
+	 * the king, or stop it : the squares between the king and each grasshoper
+	 * on a line through it, where a piece becomes or stops being the hurdle
+	 * next to the king or opens the way to it, and the grasshoper itself. no
+	 * other move changes the grasshoper checks, so the moves of the other
+	 * squares are legal by the pins and checks of the sliders. all squares if
+	 * a grasshoper already gives check
+	 */
+	private static long getHurdleSquares(Board board, int kingSquare, long checkers) {
+		long grasshopers = board.getPieces(Common.PIECE_TYPE_GRASSHOPER, Common.OtherColor(board.getSideToMove()));
+		if ((checkers & grasshopers) != 0) {
+			return ~0L;
+		}
+		long squares = 0L;
+		grasshopers &= Attacks.queenAttacks(kingSquare, 0L);
+		while (grasshopers != 0) {
+			int grasshoper = Board.lastSquare(grasshopers);
+			grasshopers &= ~(1L << grasshoper);
+			squares |= Geometry.between(kingSquare, grasshoper) | (1L << grasshoper);
+		}
+		return squares;
+	}
+
+	/*
+	 * the pinned pieces, looking only at the enemy sliders on the given squares
+	 */
+	private static long getPinned(Board board, int kingSquare, int us, long sniperSquares) {
+		return board.getBlockers(kingSquare, Common.OtherColor(us), sniperSquares) & board.getOccupied(us);
+	}
+
+	/*
+	 * true if the king of the other side is attacked with the given occupancy,
+	 * where the moved piece of the given type stands on the given square. the
+	 * pieces of the side to move that left their squares are not in the
+	 * occupancy, so they are not counted
+	 */
+	private static boolean isCheckAfter(Board board, int kingSquare, long occupied, int square, int type) {
+		int us = board.getSideToMove();
+		if ((Attacks.attacks(type, us, square, occupied) & (1L << kingSquare)) != 0) {
+			return true;
+		}
+		return (board.attackersTo(kingSquare, us, occupied) & ~(1L << square)) != 0;
+	}
+
+	/*
+	 * the squares a piece of the given type captures on, with the en passant
+	 * square for a pawn
+	 */
+	private static long getCaptureTargets(Board board, int type) {
+		long captures = board.getOccupied(Common.OtherColor(board.getSideToMove()));
+		if ((type == Common.PIECE_TYPE_PAWN) && (board.getEpSquare() != Board.NO_SQUARE)) {
+			captures |= 1L << board.getEpSquare();
+		}
+		return captures;
+	}
+
+	/*
+	 * true if the side to move has a capture. in suicide and free play every
+	 * target is legal, as there are no checks
+	 */
+	private static boolean hasCapture(Board board) {
+		long pieces = board.getOccupied(board.getSideToMove());
+		while (pieces != 0) {
+			int from = Board.lastSquare(pieces);
+			pieces &= ~(1L << from);
+			if (getUncheckedTargets(board, from, Board.codeType(board.getCode(from)), true) != 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/*
+	 * the targets of the piece on the given square where the kings are plain
+	 * pieces, a king moving by its attacks like any other piece. only the
+	 * captures, with en passant, if capturesOnly is set
+	 */
+	private static long getUncheckedTargets(Board board, int from, int type, boolean capturesOnly) {
+		int us = board.getSideToMove();
+		long enemies = board.getOccupied(Common.OtherColor(us));
+		long ep = (board.getEpSquare() == Board.NO_SQUARE) ? 0L : 1L << board.getEpSquare();
+		if (type == Common.PIECE_TYPE_PAWN) {
+			long captures = Attacks.pawnAttacks(us, from) & (enemies | ep);
+			return capturesOnly ? captures : captures | getPawnTargets(board, from, us);
+		}
+		long targets = Attacks.attacks(type, us, from, board.getOccupied());
+		return targets & (capturesOnly ? enemies : ~board.getOccupied(us));
+	}
+
+	/*
+	 * true if the king is not attacked after a piece moves from one square to
+	 * another, capturing on the given square
+	 */
+	private static boolean isSafe(Board board, int kingSquare, int from, int to, int capturedSquare) {
+		if (kingSquare == Board.NO_SQUARE) {
+			return true;
+		}
+		long occupied = (board.getOccupied() & ~(1L << from) & ~(1L << capturedSquare)) | (1L << to);
+		long attackers = board.attackersTo(kingSquare, Common.OtherColor(board.getSideToMove()), occupied);
+		return (attackers & ~(1L << to)) == 0;
+	}
+
+	/*
+	 * the pushes and captures of a pawn, without en passant
+	 */
+	private static long getPawnTargets(Board board, int from, int us) {
+		long empty = ~board.getOccupied();
+		long targets = Attacks.pawnAttacks(us, from) & board.getOccupied(Common.OtherColor(us));
+		int forward = us == Common.COLOR_WHITE ? 8 : -8;
+		int push = from + forward;
+		if ((push >= 0) && (push < Board.SQUARE_NUM) && ((empty & (1L << push)) != 0)) {
+			targets |= 1L << push;
+			int startRow = us == Common.COLOR_WHITE ? 1 : 6;
+			if (((from >> 3) == startRow) && ((empty & (1L << (push + forward))) != 0)) {
+				targets |= 1L << (push + forward);
+			}
+		}
+		return targets;
+	}
+
+	/*
+	 * the targets that answer the given checks, all squares if there are none
+	 * and none in a double check, where only the king may move
+	 */
+	private static long getEvasions(int kingSquare, long checkers) {
+		if (checkers == 0) {
+			return ~0L;
+		}
+		if (Long.bitCount(checkers) > 1) {
+			return 0L;
+		}
+		return checkers | Geometry.between(kingSquare, Board.lastSquare(checkers));
+	}
+
+	/*
+	 * the legal targets of the piece on the given square, by the checks and
+	 * pins of the position. the moves from or to the hurdle squares are tested
+	 * on the occupancy they leave. the targets of a pawn include the en
+	 * passant square, and those of the king its castling targets
+	 */
+	private long getTargets(Board board, int from, int type, int kingSquare, long checkers, long pinned,
+			long hurdles, long evasions) {
+		int us = board.getSideToMove();
+		if ((type == Common.PIECE_TYPE_KING) && (from == kingSquare)) {
+			return getKingTargets(board, from, checkers);
+		}
+		long targets = (type == Common.PIECE_TYPE_PAWN) ? getPawnTargets(board, from, us)
+				: Attacks.attacks(type, us, from, board.getOccupied()) & ~board.getOccupied(us);
+		targets &= evasions;
+		if ((pinned & (1L << from)) != 0) {
+			targets &= Geometry.line(kingSquare, from);
+		}
+		if (hurdles != 0) {
+			long tested = ((hurdles & (1L << from)) != 0) ? targets : targets & hurdles;
+			targets &= ~tested;
+			while (tested != 0) {
+				int to = Board.lastSquare(tested);
+				tested &= ~(1L << to);
+				if (isSafe(board, kingSquare, from, to, to)) {
+					targets |= 1L << to;
+				}
+			}
+		}
+		if ((type == Common.PIECE_TYPE_PAWN) && isEpCaptureLegal(board, from, kingSquare)) {
+			targets |= 1L << board.getEpSquare();
+		}
+		return targets;
+	}
+
+	/*
+	 * the number of moves to the given targets of a piece, counting every
+	 * promotion type of a pawn move
+	 */
+	private int countTargets(Board board, int type, long targets) {
+		if (type != Common.PIECE_TYPE_PAWN) {
+			return Long.bitCount(targets);
+		}
+		int us = board.getSideToMove();
+		long promotions = targets & _promotionSquares[us];
+		int moves = Long.bitCount(targets & ~promotions);
+		while (promotions != 0) {
+			int to = Board.lastSquare(promotions);
+			promotions &= ~(1L << to);
+			moves += _promotionTypes[us][to >> 3].length;
+		}
+		return moves;
+	}
+
+	private static boolean isEpCaptureLegal(Board board, int from, int kingSquare) {
+		int to = board.getEpSquare();
+		int us = board.getSideToMove();
+		if ((to == Board.NO_SQUARE) || ((Attacks.pawnAttacks(us, from) & (1L << to)) == 0)) {
+			return false;
+		}
+		// the captured pawn and the capturing one both leave the row, which
+		// may uncover a check the pins don't see
+		int capturedSquare = to + (us == Common.COLOR_WHITE ? -8 : 8);
+		return isSafe(board, kingSquare, from, to, capturedSquare);
+	}
+
+	private void addMove(Board board, int from, int to, int type, MoveBuffer moves) {
+		int flags = 0;
+		int capturedType = Board.codeType(board.getCode(to));
+		if (type == Common.PIECE_TYPE_KING) {
+			// the only king moves of more than one column, or onto an own
+			// piece, are castlings
+			boolean ownRook = (capturedType != 0) && (Board.codeColor(board.getCode(to)) == board.getSideToMove());
+			if (ownRook || (Math.abs((to & 7) - (from & 7)) >= 2)) {
+				flags |= MoveCode.FLAG_CASTLE;
+			}
+		}
+		if ((type == Common.PIECE_TYPE_PAWN) && (to == board.getEpSquare())) {
+			flags |= MoveCode.FLAG_EP;
+			capturedType = Common.PIECE_TYPE_PAWN;
+		}
+		if ((capturedType != 0) && ((flags & MoveCode.FLAG_CASTLE) == 0)) {
+			flags |= MoveCode.FLAG_CAPTURE;
+		}
+		if (type == Common.PIECE_TYPE_PAWN) {
+			int[] promotionTypes = _promotionTypes[board.getSideToMove()][to >> 3];
+			if (promotionTypes != null) {
+				for (int promotionType : promotionTypes) {
+					addCode(board, MoveCode.create(from, to, promotionType, flags), type, capturedType, moves);
+				}
+				return;
+			}
+		}
+		addCode(board, MoveCode.create(from, to, 0, flags), type, capturedType, moves);
+	}
+
+	private void addCode(Board board, int move, int type, int capturedType, MoveBuffer moves) {
+		if (givesCheck(board, move)) {
+			move |= MoveCode.FLAG_CHECK;
+		}
+		moves.add(MoveCode.withPieces(move, type, capturedType));
+	}
+
+	private long getKingTargets(Board board, int from, long checkers) {
+		int us = board.getSideToMove();
+		long targets = Attacks.kingAttacks(from) & ~board.getOccupied(us) & ~board.getAttacks(Common.OtherColor(us));
+		if (checkers == 0) {
+			targets |= getCastlingTargets(board, from, Common.CASTLE_QUEEN);
+			targets |= getCastlingTargets(board, from, Common.CASTLE_KING);
+		}
+		return targets;
+	}
+
+	/*
+	 * the king target square of the castling if it's legal, and in Fischer
+	 * chess also the rook square, onto which the king may move to castle
+	 */
+	private long getCastlingTargets(Board board, int kingSquare, int castle) {
+		int us = board.getSideToMove();
+		int row = kingSquare & ~7;
+		if (!board.hasCastlingRight(us, castle) || (row != (us == Common.COLOR_WHITE ? 0 : 56))) {
+			return 0L;
+		}
+		int rookSquare = row + board.getCastlingRookY(castle) - 1;
+		int rook = board.getCode(rookSquare);
+		if ((Board.codeType(rook) != Common.PIECE_TYPE_ROOK) || (Board.codeColor(rook) != us)) {
+			return 0L;
+		}
+		int them = Common.OtherColor(us);
+		int kingTarget = row + (castle == Common.CASTLE_QUEEN ? 2 : 6);
+		int rookTarget = row + (castle == Common.CASTLE_QUEEN ? 3 : 5);
+
+		// all the squares between the king, the rook and their targets must be
+		// empty, except for the king and the rook themselves
+		int kingY = Board.squareY(kingSquare);
+		int rookY = board.getCastlingRookY(castle);
+		long others = board.getOccupied() & ~(1L << kingSquare) & ~(1L << rookSquare);
+		if (((Fischer960.getCastlingPath(castle, kingY, rookY) << row) & others) != 0) {
+			return 0L;
+		}
+		// and no square the king passes may be attacked, with the rook gone
+		long kingPath = Fischer960.getCastlingKingPath(castle, kingY) << row;
+		if (board.getPieces(Common.PIECE_TYPE_GRASSHOPER, them) == 0) {
+			// the attacks without the king are only more without the rook, by
+			// a slider behind it on the row
+			if ((board.getAttacks(them) & kingPath) != 0) {
+				return 0L;
+			}
+			long sliders = (board.getPieces(Common.PIECE_TYPE_ROOK, them) | board.getPieces(Common.PIECE_TYPE_QUEEN, them)
+					| board.getPieces(Common.PIECE_TYPE_CHANCELLOR, them)) & (0xffL << row);
+			while (sliders != 0) {
+				int slider = Board.lastSquare(sliders);
+				sliders &= ~(1L << slider);
+				if ((Attacks.rookAttacks(slider, others) & kingPath) != 0) {
+					return 0L;
+				}
+			}
+		} else {
+			// a grasshoper's hurdles change as the king and the rook leave, and
+			// the rook next to the king may become the hurdle of a check
+			while (kingPath != 0) {
+				int square = Board.lastSquare(kingPath);
+				kingPath &= ~(1L << square);
+				if (board.attackersTo(square, them, others) != 0) {
+					return 0L;
+				}
+			}
+			long occupied = others | (1L << kingTarget) | (1L << rookTarget);
+			if (board.attackersTo(kingTarget, them, occupied) != 0) {
+				return 0L;
+			}
+		}
+
+		// in Fischer the king castles by moving onto its rook, which is the
+		// one move of every castling (see getCastlingTarget). otherwise a king
+		// step of one square is a plain king move
+		if (_fischer) {
+			return 1L << rookSquare;
+		}
+		if (Math.abs(kingTarget - kingSquare) >= 2) {
+			return 1L << kingTarget;
+		}
+		return 0L;
+	}
+
+	/*
+	 * the empty squares a piece may be dropped on, which answer a check. the
+	 * drops on the hurdle squares are tested on the occupancy they leave
+	 */
+	private static long getDropSquares(Board board, int kingSquare, long evasions, long hurdles) {
+		// in check, a drop can only block it
+		long squares = ~board.getOccupied() & evasions;
+		if ((hurdles == 0) || (kingSquare == Board.NO_SQUARE)) {
+			return squares;
+		}
+		int them = Common.OtherColor(board.getSideToMove());
+		long tested = squares & hurdles;
+		squares &= ~tested;
+		while (tested != 0) {
+			int to = Board.lastSquare(tested);
+			tested &= ~(1L << to);
+			// the dropped piece may also become a hurdle for a grasshoper
+			long occupied = board.getOccupied() | (1L << to);
+			if (board.attackersTo(kingSquare, them, occupied) == 0) {
+				squares |= 1L << to;
+			}
+		}
+		return squares;
+	}
+
+	/*
+	 * the drop squares a piece of the given type may be dropped on. pawns are
+	 * not dropped on the first and last rows
+	 */
+	private static long getDropTargets(long squares, int type) {
+		return (type == Common.PIECE_TYPE_PAWN) ? squares & ~ROWS_1_AND_8 : squares;
+	}
+}
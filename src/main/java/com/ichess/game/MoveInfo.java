@@ -14,6 +14,7 @@ import com.ichess.game.piece.Piece;
 import com.ichess.game.Utils;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import static com.ichess.game.Log.*;
 
@@ -34,33 +35,36 @@ public class MoveInfo {
 	private boolean doubleCheck = false;
 	private boolean checkMate = false;
 	private int draw50MovesCount; // for 50 moves, count moves with no pawn or
+	private long[] positionRecord; // the FEN strings are made from it on first use
 	private String fenString;
-    private String fenPosition;
-
-    public String getFenStringForDrawTesting() {
-        if ( fenStringForDrawTesting != null ) {
-            return fenStringForDrawTesting;
-        }
-        fenStringForDrawTesting = fenString;
-        // remove trailing move number
-        fenStringForDrawTesting = fenStringForDrawTesting.substring(0, fenStringForDrawTesting.lastIndexOf(' '));
-        // remove trailing 50 moves count
-        fenStringForDrawTesting = fenStringForDrawTesting.substring(0, fenStringForDrawTesting.lastIndexOf(' '));
-        return fenStringForDrawTesting;
-    }
-
-    private String fenStringForDrawTesting = null;
+	private String fenPosition;
 	private boolean hasEnoughMaterial[] = { true, true, true, true };
 	private Move move;
-	private Piece movedPiece[] = { null, null };
 	private boolean staleMate = false;
-	private List<Move> validNextMoves = new ArrayList<Move>();
+	private final MoveBuffer validMoves = new MoveBuffer();
+	private boolean validMovesGenerated = false; // the valid moves are generated on first use
+	private int validMoveIndex[] = new int[64]; // hash table of the valid move indexes (+1) by key
+	private Move validMoveObjects[] = null; // created on demand, by index in validMoves
+	private List<Move> validNextMoves = null; // created on demand
+	private final int color; // color to move
+	private final int moveNumber; // move number of the next moves
     private int ecoId = -1; // cached eco id. -1 means was not calculated
+    private long positionHash; // Zobrist hash of the position, see Game.getPositionHash
 
 	public MoveInfo(Game game) {
 		_game = game;
+		color = game.getCurrentColor();
+		moveNumber = game.getCurrentMove() + 1;
 	}
 
+    public long getPositionHash() {
+        return positionHash;
+    }
+
+    void setPositionHash(long positionHash) {
+        this.positionHash = positionHash;
+    }
+
     public int getEcoId() {
         return ecoId;
     }
@@ -70,112 +74,190 @@ public class MoveInfo {
         this.ecoId = ecoid;
     }
 
-    int addValidMove(Piece piece, int toX, int toY ) {
-        return addValidMove(piece, toX, toY, false);
-    }
-
 	/*
-	 * add valid move of a piece to a target square
+	 * add a valid drop of a piece type to a target square
 	 */
+	int addValidDrop(int type, int toX, int toY) {
+		generateValidMoves();
+		int move = MoveCode.createDrop(Board.square(toX, toY), type);
+		if (_game.getMoveGenerator().givesCheck(_game.getBoard(), move)) {
+			move |= MoveCode.FLAG_CHECK;
+		}
+		addValidMove(MoveCode.withPieces(move, type, 0));
+		if (Log.isDebug()) {
+			Log.debug("adding move " + _game.getCurrentMove() + " valid drop to " + toX + "," + toY + " piece " + type);
+		}
+		return Common.RC_OK;
+	}
 
-	int addValidMove(Piece piece, int toX, int toY, boolean drop ) {
-		Utils.AssertNull(piece);
-		boolean promotion = piece.isPawn() && ((toX == 1) || (toX == 8));
-        if (_game.isSevenBoom() && piece.isPawn()) {
-            if (toX == 2 || toX == 7) {
-                promotion = true;
-            }
-        }
-		if (promotion) {
-			if (_game.isSuicide())
-			{
-				addValidMove(piece, toX, toY, Common.PIECE_TYPE_KING);
-			}
-
-			if (_game.isGrassHopper())
-			{
-				addValidMove(piece, toX, toY, Common.PIECE_TYPE_GRASSHOPER);
+	/*
+	 * add a valid move code, unless there is already a move with the same key
+	 */
+	private void addValidMove(int move) {
+		if (indexOfKey(move) != -1) {
+			return;
+		}
+		validMoves.add(move);
+		if (validMoves.size() * 2 > validMoveIndex.length) {
+			validMoveIndex = new int[validMoveIndex.length * 2];
+			for (int index = 0; index < validMoves.size(); index++) {
+				addIndex(index);
 			}
+		} else {
+			addIndex(validMoves.size() - 1);
+		}
+		if (validNextMoves != null) {
+			validNextMoves.add(getValidMove(validMoves.size() - 1));
+		}
+	}
 
-			if (_game.isMiniCapa())
-			{
-				addValidMove(piece, toX, toY, Common.PIECE_TYPE_ARCHBISHOP);
-				addValidMove(piece, toX, toY, Common.PIECE_TYPE_CHANCELLOR);
+	/*
+	 * add the legal moves found by the move generator, which are already
+	 * flagged with the checks they give
+	 */
+	void addValidMoves(MoveBuffer moves) {
+		// size the index table once, instead of growing it while adding
+		int length = validMoveIndex.length;
+		while ((validMoves.size() + moves.size()) * 2 > length) {
+			length *= 2;
+		}
+		if (length != validMoveIndex.length) {
+			validMoveIndex = new int[length];
+			for (int index = 0; index < validMoves.size(); index++) {
+				addIndex(index);
 			}
-
-            if (_game.isSevenBoom()) {
-                if (toX == 1 || toX == 8) {
-			        addValidMove(piece, toX, toY, Common.PIECE_TYPE_QUEEN);
-                }
-                else {
-                    addValidMove(piece, toX, toY, Common.PIECE_TYPE_PAWN);  // stays as a pawn
-                }
-            }
-            else {
-                addValidMove(piece, toX, toY, Common.PIECE_TYPE_QUEEN);
-            }
-			addValidMove(piece, toX, toY, Common.PIECE_TYPE_ROOK);
-			addValidMove(piece, toX, toY, Common.PIECE_TYPE_KNIGHT);
-			return addValidMove(piece, toX, toY, Common.PIECE_TYPE_BISHOP);
 		}
-        if (drop)
-        {
-            return addValidMove( piece, toX, toY, Common.PIECE_TYPE_ILLEGAL, true );
-        }
+		for (int index = 0; index < moves.size(); index++) {
+			addValidMove(moves.get(index));
+		}
+	}
 
-		return addValidMove(piece, toX, toY, Common.PIECE_TYPE_ILLEGAL, false);
+	/*
+	 * generate the valid moves, if not done yet. this is done by the game,
+	 * while this is still the current move
+	 */
+	private void generateValidMoves() {
+		if (!validMovesGenerated) {
+			validMovesGenerated = true;
+			_game.generateValidMoves(this);
+		}
+	}
 
+	/*
+	 * the index table is open addressed, with linear probing. it is kept at
+	 * most half full, so a lookup takes one or two probes
+	 */
+	private int slotOf(int key) {
+		return (key * 0x9E3779B1) >>> (32 - Integer.numberOfTrailingZeros(validMoveIndex.length));
 	}
 
-    int addValidMove(Piece piece, int toX, int toY, int promotionPiece) {
-        return addValidMove(piece, toX, toY, promotionPiece, false);
-    }
+	private void addIndex(int index) {
+		int slot = slotOf(MoveCode.getKey(validMoves.get(index)));
+		while (validMoveIndex[slot] != 0) {
+			slot = (slot + 1) & (validMoveIndex.length - 1);
+		}
+		validMoveIndex[slot] = index + 1;
+	}
 
 	/*
-	 * add a valid move
+	 * returns the index of the valid move with the same key as the given move,
+	 * or -1
 	 */
-	int addValidMove(Piece piece, int toX, int toY, int promotionPiece, boolean drop) {
-
-		Utils.AssertNull(piece);
-
-        if (drop)
-        {
-            Move move = new Move(_game, toX, toY, toX, toY, piece.getTypeWhenDropping());
-            move.setMoveNumber(_game.getCurrentMove() + 1);
-            move.setMovedPiece(piece);
-            if (! validNextMoves.contains(move)) {
-                validNextMoves.add(move);
-            }
-            Log.debug("adding move " + _game.getCurrentMove() + " valid drop to " + toX + "," + toY + " piece " + piece.getTypeWhenDropping());
-            return Common.RC_OK;
-        }
+	private int indexOfKey(int move) {
+		int key = MoveCode.getKey(move);
+		int slot = slotOf(key);
+		while (validMoveIndex[slot] != 0) {
+			int index = validMoveIndex[slot] - 1;
+			if (MoveCode.getKey(validMoves.get(index)) == key) {
+				return index;
+			}
+			slot = (slot + 1) & (validMoveIndex.length - 1);
+		}
+		return -1;
+	}
 
-		Move move = new Move(_game, piece.getX(), piece.getY(), toX, toY, promotionPiece);
-		move.setMovedPiece(piece);
-        move.setMoveNumber(_game.getCurrentMove() + 1);
-		Piece captured = _game.getPieceAt(toX, toY);
-
-		// check if EP capture move
-		if (piece.isPawn()) {
-			if ((piece.getY() != toY) && (captured == null)) {
-				if (piece.isWhite()) {
-					captured = _game.getPieceAt(toX - 1, toY);
-				} else {
-					captured = _game.getPieceAt(toX + 1, toY);
-				}
+	/**
+	 * Returns the codes (see MoveCode) of the valid moves that can be played
+	 * from this move. The Move objects of getValidNextMoves are created from
+	 * them only when needed.
+	 *
+	 * @return the valid move codes
+	 */
+	public MoveBuffer getValidMoveCodes() {
+		generateValidMoves();
+		return validMoves;
+	}
+
+	/*
+	 * get the Move object of the valid move at the given index, creating it
+	 * on first use
+	 */
+	private Move getValidMove(int index) {
+		if ((validMoveObjects == null) || (validMoveObjects.length < validMoves.size())) {
+			Move moves[] = new Move[Math.max(validMoves.size(), 16)];
+			if (validMoveObjects != null) {
+				System.arraycopy(validMoveObjects, 0, moves, 0, validMoveObjects.length);
 			}
+			validMoveObjects = moves;
 		}
-		move.setCapturedPiece(captured);
-        move.isCheck = piece.isCheck(toX, toY);
+		if (validMoveObjects[index] == null) {
+			validMoveObjects[index] = createMove(validMoves.get(index));
+		}
+		return validMoveObjects[index];
+	}
 
-		Log.debug("adding valid move " + _game.getCurrentMove() + " from " + piece.getX() + "," + piece.getY() + " to " + toX + "," + toY +
-            " piece " + piece.getType());
+	private Move createMove(int code) {
+		int to = MoveCode.getTo(code);
+		int toX = Board.squareX(to);
+		int toY = Board.squareY(to);
+		if (MoveCode.isDrop(code)) {
+			Move move = new Move(_game, toX, toY, toX, toY, MoveCode.getType(code));
+			move.setMoveNumber(moveNumber);
+			move.setFromInfo(this);
+			move.setMovedPiece(Piece.create(MoveCode.getType(code), color));
+			return move;
+		}
 
-        if (! validNextMoves.contains(move)) {
-            validNextMoves.add(move);
-        }
+		int from = MoveCode.getFrom(code);
+		int type = MoveCode.getType(code);
+		Move move = new Move(_game, Board.squareX(from), Board.squareY(from), toX, toY,
+				type == 0 ? Common.PIECE_TYPE_ILLEGAL : type);
+		move.setMoveNumber(moveNumber);
+		move.setFromInfo(this);
+		move.setMovedPiece(Piece.create(MoveCode.getPieceType(code), color));
+		if (MoveCode.getCapturedType(code) != 0) {
+			// the king captures its own rook when castling in Fischer chess
+			int capturedColor = MoveCode.isCastle(code) ? color : Common.OtherColor(color);
+			move.setCapturedPiece(Piece.create(MoveCode.getCapturedType(code), capturedColor));
+		}
+		move.isCheck = MoveCode.isCheck(code);
+		return move;
+	}
 
-		return Common.RC_OK;
+	/**
+	 * Returns the source squares of the valid moves of a piece of the given
+	 * type to the given square, as a mask of Board square bits. The names of
+	 * a move use it to tell apart pieces of the same type.
+	 *
+	 * @param pieceType
+	 *            the type of the moving piece
+	 * @param toX
+	 *            the target row
+	 * @param toY
+	 *            the target column
+	 * @return the source squares
+	 */
+	public long getSources(int pieceType, int toX, int toY) {
+		generateValidMoves();
+		int to = Board.square(toX, toY);
+		long sources = 0L;
+		for (int index = 0; index < validMoves.size(); index++) {
+			int move = validMoves.get(index);
+			if (!MoveCode.isDrop(move) && (MoveCode.getTo(move) == to) && (MoveCode.getPieceType(move) == pieceType)) {
+				sources |= 1L << MoveCode.getFrom(move);
+			}
+		}
+		return sources;
 	}
 
 	/**
@@ -200,6 +282,9 @@ public class MoveInfo {
 	 *         played.
 	 */
 	public String getFENString() {
+		if ((fenString == null) && (positionRecord != null)) {
+			fenString = FEN.getFENString(positionRecord, _game);
+		}
 		return fenString;
 	}
 
@@ -210,6 +295,9 @@ public class MoveInfo {
      *         played.
      */
     public String getFENPosition() {
+        if ((fenPosition == null) && (positionRecord != null)) {
+            fenPosition = FEN.getFENPosition(positionRecord, _game);
+        }
         return fenPosition;
     }
 
@@ -231,19 +319,33 @@ public class MoveInfo {
 		return move;
 	}
 
-	public Piece[] getMovedPiece() {
-		return movedPiece;
-	}
-
 	Move getValidMove(int fromX, int fromY, int toX, int toY, int promotionPiece) {
-		for (Move move : validNextMoves) {
-			if ((move.getFromX() == fromX) && (move.getFromY() == fromY) && (move.getToX() == toX) && (move.getToY() == toY)
-				&& (move.getAdditionalPieceTypeInfo() == promotionPiece)) {
-				Log.debug("found valid move " + move.getNameNum());
-				return move;
+		generateValidMoves();
+		int to = Board.square(toX, toY);
+		int type = promotionPiece == Common.PIECE_TYPE_ILLEGAL ? 0 : promotionPiece;
+		int from = Board.square(fromX, fromY);
+		int key;
+		if ((fromX == toX) && (fromY == toY)) {
+			key = MoveCode.createDrop(to, type);
+		} else {
+			key = MoveCode.create(from, to, type, 0);
+		}
+		int index = indexOfKey(key);
+		if (index == -1) {
+			// a Fischer castling may also be given by the square the king
+			// castles to. the castling columns are the same in all the moves
+			int castlingTarget = _game.getMoveGenerator().getCastlingTarget(_game.getBoard(), from, to);
+			if (castlingTarget != to) {
+				index = indexOfKey(MoveCode.create(from, castlingTarget, type, 0));
+				if ((index != -1) && !MoveCode.isCastle(validMoves.get(index))) {
+					index = -1;
+				}
 			}
 		}
-		return null;
+		if (index == -1) {
+			return null;
+		}
+		return getValidMove(index);
 	}
 
 	/**
@@ -252,6 +354,13 @@ public class MoveInfo {
 	 * @return All the valid moves that can be played from this move.
 	 */
 	public List<Move> getValidNextMoves() {
+		generateValidMoves();
+		if (validNextMoves == null) {
+			validNextMoves = new ArrayList<Move>(validMoves.size());
+			for (int index = 0; index < validMoves.size(); index++) {
+				validNextMoves.add(getValidMove(index));
+			}
+		}
 		return validNextMoves;
 	}
 
@@ -287,8 +396,15 @@ public class MoveInfo {
 	}
 
 	boolean isMoveValid(int fromX, int fromY, int toX, int toY) {
-		for (Move move : validNextMoves) {
-			if ((move.getFromX() == fromX) && (move.getFromY() == fromY) && (move.getToX() == toX) && (move.getToY() == toY)) {
+		generateValidMoves();
+		int from = Board.square(fromX, fromY);
+		int to = Board.square(toX, toY);
+		if (indexOfKey(MoveCode.create(from, to)) != -1) {
+			return true;
+		}
+		// a promotion move, to any piece
+		for (int type = Common.PIECE_TYPE_PAWN; type < Board.PIECE_TYPE_SLOTS; type++) {
+			if (indexOfKey(MoveCode.create(from, to, type, 0)) != -1) {
 				return true;
 			}
 		}
@@ -322,14 +438,12 @@ public class MoveInfo {
 		this.draw50MovesCount = draw50MovesCount;
 	}
 
-	void setFENString(String fenString) {
-		this.fenString = fenString;
+	void setPositionRecord(long[] positionRecord) {
+		this.positionRecord = positionRecord;
+		fenString = null;
+		fenPosition = null;
 	}
 
-    void setFENPosition(String fenPosition) {
-        this.fenPosition = fenPosition;
-    }
-
 	void setMove(Move move) {
 		this.move = move;
 	}
@@ -15,30 +15,28 @@ import java.util.ArrayList;
 
 
 /**
+ * The list of the played moves, written in the different notations. The moves
+ * are kept, and a list string is made on first use after the list changed, so
+ * playing a move does not copy the list strings.
+ *
  * @author Ran Berenfeld
  * @version 1.0
  */
 public class MoveList {
 
-	private int _currentMove = 0;
-	private String _listAlg;
-	private String _listAlgHeb;
-	private String _listFig;
-	private String _listFigHeb;
+	private static final int NAME_ALG = 0;
+	private static final int NAME_ALG_HEB = 1;
+	private static final int NAME_FIG = 2;
+	private static final int NAME_FIG_HEB = 3;
+	private static final int NAME_NUM = 4;
+	private static final int NAME_KINDS = 5;
 
-	private String _listNum;
-	private ArrayList<String> _movesAlg = new ArrayList<String>();
-	private ArrayList<String> _movesAlgHeb = new ArrayList<String>();
-	private ArrayList<String> _movesFig = new ArrayList<String>();
-	private ArrayList<String> _movesFigHeb = new ArrayList<String>();
-	private ArrayList<String> _movesNum = new ArrayList<String>();
+	private ArrayList<Move> _moves = new ArrayList<Move>();
+
+	// the full list strings by name kind, null until used after a change
+	private String _lists[] = new String[NAME_KINDS];
 
 	public MoveList() {
-		_listAlg = "";
-		_listAlgHeb = "";
-		_listFig = "";
-		_listFigHeb = "";
-		_listNum = "";
 	}
 
 	public void addMove(Move move) {
@@ -47,158 +45,114 @@ public class MoveList {
 		Game game = move.getGame();
 		Utils.AssertNull(game);
 
-		if (_currentMove != 0) {
-			_listNum += " ";
-			_listAlg += " ";
-			_listAlgHeb += " ";
-			_listFig += " ";
-			_listFigHeb += " ";
+		_moves.add(move);
+		clearLists();
+	}
+
+	/*
+	 * the name of the given move, of the given kind
+	 */
+	private static String getName(Move move, int kind) {
+		switch (kind) {
+		case NAME_ALG:
+			return move.getNameAlg();
+		case NAME_ALG_HEB:
+			return move.getNameAlgHeb();
+		case NAME_FIG:
+			return move.getNameFig();
+		case NAME_FIG_HEB:
+			return move.getNameFigHeb();
+		default:
+			return move.getNameNum();
 		}
+	}
 
-		_listNum += move.getNameNum();
-		_listAlg += move.getNameAlg();
-		_listAlgHeb += move.getNameAlgHeb();
-		_listFig += move.getNameFig();
-		_listFigHeb += move.getNameFigHeb();
+	/*
+	 * the names of the moves from fromMove up to toMove (excluding), separated
+	 * by spaces
+	 */
+	private String getList(int kind, int fromMove, int toMove) {
+		StringBuilder result = new StringBuilder();
+		for (int index = fromMove; index < toMove; index++) {
+			result.append(getName(_moves.get(index), kind));
+			if (index != (toMove - 1)) {
+				result.append(' ');
+			}
+		}
+		return result.toString();
+	}
 
-		_movesNum.add(move.getNameNum());
-		_movesAlg.add(move.getNameAlg());
-		_movesAlgHeb.add(move.getNameAlgHeb());
-		_movesFig.add(move.getNameFig());
-		_movesFigHeb.add(move.getNameFigHeb());
+	private String getList(int kind) {
+		if (_lists[kind] == null) {
+			_lists[kind] = getList(kind, 0, _moves.size());
+		}
+		return _lists[kind];
+	}
 
-		_currentMove++;
+	private void clearLists() {
+		for (int kind = 0; kind < NAME_KINDS; kind++) {
+			_lists[kind] = null;
+		}
 	}
 
 	public String getListAlg() {
-		return _listAlg;
+		return getList(NAME_ALG);
 	}
 
 	public String getListAlg(int fromMove) {
-		Utils.Assert(fromMove <= _currentMove);
-		String result = "";
-		for (int index = fromMove; index < _currentMove; index++) {
-			result += _movesAlg.get(index);
-			if (index != (_currentMove - 1)) {
-				result += " ";
-			}
-		}
-		return result;
+		Utils.Assert(fromMove <= _moves.size());
+		return getList(NAME_ALG, fromMove, _moves.size());
 	}
 
 	public String getListAlgHeb() {
-		return _listAlgHeb;
+		return getList(NAME_ALG_HEB);
 	}
 
 	public String getListAlgHeb(int fromMove) {
-		Utils.Assert(fromMove <= _currentMove);
-		String result = "";
-		for (int index = fromMove; index < _currentMove; index++) {
-			result += _movesAlgHeb.get(index);
-			if (index != (_currentMove - 1)) {
-				result += " ";
-			}
-		}
-		return result;
+		Utils.Assert(fromMove <= _moves.size());
+		return getList(NAME_ALG_HEB, fromMove, _moves.size());
 	}
 
 	public String getListFig() {
-		return _listFig;
+		return getList(NAME_FIG);
 	}
 
 	public String getListFig(int fromMove) {
-		Utils.Assert(fromMove <= _currentMove);
-		String result = "";
-		for (int index = fromMove; index < _currentMove; index++) {
-			result += _movesFig.get(index);
-			if (index != (_currentMove - 1)) {
-				result += " ";
-			}
-		}
-		return result;
+		Utils.Assert(fromMove <= _moves.size());
+		return getList(NAME_FIG, fromMove, _moves.size());
 	}
 
 	public String getListFigHeb() {
-		return _listFigHeb;
+		return getList(NAME_FIG_HEB);
 	}
 
 	public String getListFigHeb(int fromMove) {
-		Utils.Assert(fromMove <= _currentMove);
-		String result = "";
-		for (int index = fromMove; index < _currentMove; index++) {
-			result += _movesFigHeb.get(index);
-			if (index != (_currentMove - 1)) {
-				result += " ";
-			}
-		}
-		return result;
+		Utils.Assert(fromMove <= _moves.size());
+		return getList(NAME_FIG_HEB, fromMove, _moves.size());
 	}
 
 	public String getListNum() {
-		return _listNum;
+		return getList(NAME_NUM);
 	}
 
 	public String getListNumFromMove(int fromMove) {
-		Utils.Assert(fromMove <= _currentMove);
-		String result = "";
-		for (int index = fromMove; index < _currentMove; index++) {
-			result += _movesNum.get(index);
-			if (index != (_currentMove - 1)) {
-				result += " ";
-			}
-		}
-		return result;
+		Utils.Assert(fromMove <= _moves.size());
+		return getList(NAME_NUM, fromMove, _moves.size());
 	}
 
 	public String getListNumToMove(int toMove) {
-		Utils.Assert(toMove <= _currentMove);
-		String result = "";
-		for (int index = 0; index < toMove; index++) {
-			result += _movesNum.get(index);
-			if (index != (toMove - 1)) {
-				result += " ";
-			}
-		}
-		return result;
+		Utils.Assert(toMove <= _moves.size());
+		return getList(NAME_NUM, 0, toMove);
 	}
 
 	public void takeback() {
-
-		if (_currentMove == 1) {
-			_listAlg = "";
-			_listAlgHeb = "";
-			_listFig = "";
-			_listFigHeb = "";
-			_listNum = "";
-		} else {
-			_listNum = _listNum.substring(0, _listNum.length() - 6);
-
-			int lastSpace = _listAlg.lastIndexOf(" ");
-			_listAlg = _listAlg.substring(0, lastSpace);
-
-			lastSpace = _listAlgHeb.lastIndexOf(" ");
-			_listAlgHeb = _listAlgHeb.substring(0, lastSpace);
-
-			lastSpace = _listFig.lastIndexOf(" ");
-			_listFig = _listFig.substring(0, lastSpace);
-
-			lastSpace = _listFigHeb.lastIndexOf(" ");
-			_listFigHeb = _listFigHeb.substring(0, lastSpace);
-
-		}
-
-		_currentMove--;
-
-		_movesAlg.remove(_currentMove);
-		_movesAlgHeb.remove(_currentMove);
-		_movesFig.remove(_currentMove);
-		_movesFigHeb.remove(_currentMove);
-		_movesNum.remove(_currentMove);
+		_moves.remove(_moves.size() - 1);
+		clearLists();
 	}
 
 	@Override
 	public String toString() {
-		return _listAlg;
+		return getListAlg();
 	}
 
 }
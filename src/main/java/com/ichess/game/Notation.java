@@ -12,6 +12,7 @@ package com.ichess.game;
 
 import com.ichess.game.Common;
 import com.ichess.game.piece.Piece;
+import com.ichess.game.rules.VariantRules;
 import com.ichess.game.Utils;
 
 import java.util.HashMap;
@@ -56,7 +57,6 @@ public class Notation {
 		sCharEngToPiece.put("G", Common.PIECE_TYPE_GRASSHOPER);
 		sCharEngToPiece.put("A", Common.PIECE_TYPE_ARCHBISHOP);
 		sCharEngToPiece.put("C", Common.PIECE_TYPE_CHANCELLOR);
-        sCharEngToPiece.put("X", Common.PIECE_TYPE_DROP_ANY);
 		sCharEngToPiece.put("", Common.PIECE_TYPE_PAWN);
 	}
 
@@ -70,7 +70,6 @@ public class Notation {
 		sPieceToCharEng.put(Common.PIECE_TYPE_GRASSHOPER, "G");
 		sPieceToCharEng.put(Common.PIECE_TYPE_ARCHBISHOP, "A");
 		sPieceToCharEng.put(Common.PIECE_TYPE_CHANCELLOR, "C");
-        sPieceToCharEng.put(Common.PIECE_TYPE_DROP_ANY, "X");
 	}
 
 	static {
@@ -82,7 +81,6 @@ public class Notation {
 		sCharHebToPiece.put("ח", Common.PIECE_TYPE_GRASSHOPER);
 		sCharHebToPiece.put("א", Common.PIECE_TYPE_ARCHBISHOP);
 		sCharHebToPiece.put("ק", Common.PIECE_TYPE_CHANCELLOR);
-        sCharHebToPiece.put(" ", Common.PIECE_TYPE_DROP_ANY);
 		sCharHebToPiece.put("", Common.PIECE_TYPE_PAWN);
 	}
 
@@ -95,7 +93,6 @@ public class Notation {
 		sPieceToCharHeb.put(Common.PIECE_TYPE_GRASSHOPER, "ח");
 		sPieceToCharHeb.put(Common.PIECE_TYPE_ARCHBISHOP, "א");
 		sPieceToCharHeb.put(Common.PIECE_TYPE_CHANCELLOR, "ק");
-        sPieceToCharHeb.put(Common.PIECE_TYPE_DROP_ANY, "X");
 		sPieceToCharHeb.put(Common.PIECE_TYPE_PAWN, "");
 	}
 
@@ -115,7 +112,6 @@ public class Notation {
 		sPieceToUnicodeFiguresWhite.put(Common.PIECE_TYPE_GRASSHOPER, "\u2645");
 		sPieceToUnicodeFiguresWhite.put(Common.PIECE_TYPE_ARCHBISHOP, "\u2647");
 		sPieceToUnicodeFiguresWhite.put(Common.PIECE_TYPE_CHANCELLOR, "\u2646");
-        sPieceToUnicodeFiguresWhite.put(Common.PIECE_TYPE_DROP_ANY, "X");
 	}
 
 	static {
@@ -128,7 +124,6 @@ public class Notation {
 		sPieceToUnicodeFiguresBlack.put(Common.PIECE_TYPE_GRASSHOPER, "\u2648");
 		sPieceToUnicodeFiguresBlack.put(Common.PIECE_TYPE_ARCHBISHOP, "\u2650");
 		sPieceToUnicodeFiguresBlack.put(Common.PIECE_TYPE_CHANCELLOR, "\u2649");
-        sPieceToUnicodeFiguresBlack.put(Common.PIECE_TYPE_DROP_ANY, " ");
 	}
 
     /**
@@ -142,6 +137,27 @@ public class Notation {
         return pieceType == null ? Common.PIECE_TYPE_ILLEGAL : pieceType;
     }
 
+    /*
+     * find the valid drop of a piece of the given type. the drops are
+     * generated with the moves, but in bughouse the piece may have come from
+     * the other board since, so a legal drop is added to the valid moves
+     */
+    private static Move getDropMove(Game game, String str, int sourcePieceType, int toX, int toY)
+    {
+        Move validDropMove = game.getValidMove(toX, toY, toX, toY, sourcePieceType);
+        if (validDropMove != null)
+        {
+            return validDropMove;
+        }
+        if (! game.isLegal(toX, toY, toX, toY, sourcePieceType))
+        {
+            Log.warning("can't find drop move " + str);
+            return null;
+        }
+        game.getCurrentMoveInfo().addValidDrop(sourcePieceType, toX, toY);
+        return game.getValidMove(toX, toY, toX, toY, sourcePieceType);
+    }
+
 	public static Move getMove(Game game, String str) {
 		Utils.AssertNull(game);
 		Utils.AssertNull(str);
@@ -170,11 +186,11 @@ public class Notation {
 					Log.debug("promotion string is '" + promotionStr + "' promotion piece is " + additionalPieceType);
 				}
 
-                if (game.isCrazyOrBugHouse() && (fromX == toX) && (fromY == toY))
+                if ((game.getRules().getDrops() != VariantRules.DROPS_NONE) && (fromX == toX) && (fromY == toY))
                 {
                     // handle drop move
                     int sourcePieceType = additionalPieceType;
-                    if (! game.isCrazyOrBugHouse())
+                    if (game.getRules().getDrops() == VariantRules.DROPS_NONE)
                     {
                         Log.warning("a drop move in non crazyhouse/bughouse game");
                         return null;
@@ -186,39 +202,7 @@ public class Notation {
                     }
 
                     Log.debug("a drop move '" + str + "' of " + sourcePieceType + " to " + toX + "," + toY);
-                    // first look for a valid drop move (if it's there its all ok)
-                    Move validDropMove = game.getValidMove(toX, toY, toX, toY, sourcePieceType);
-                    if (validDropMove != null)
-                    {
-                        // we got the drop move
-                        return validDropMove;
-                    }
-                    Move move = game.getValidMove(toX, toY, toX, toY, Common.PIECE_TYPE_DROP_ANY);
-                    if (move == null)
-                    {
-                        // drop move not found.
-                        Log.warning("can't find drop move " + str);
-                        return null;
-                    }
-                    // drop move found. now check if piece can be dropped
-                    if ((sourcePieceType == Common.PIECE_TYPE_PAWN) && ( (toX == 1) || (toX == 8)))
-                    {
-                        Log.warning("can't find drop move " + str + " : pawn can't be dropped on 1st or 8th line");
-                        return null;
-                    }
-                    List<Piece> droppable = game.getDroppablePieces(game.getCurrentColor());
-                    Piece droppablePiece = Game.findPieceToDrop(droppable, sourcePieceType);
-                    if ( droppablePiece != null )
-                    {
-                        game.getCurrentMoveInfo().addValidMove(droppablePiece, toX, toY, true);
-                    }
-                    // ok. if all is ok, we now have a valid drop move
-                    validDropMove = game.getValidMove(toX, toY, toX, toY, sourcePieceType);
-                    if (validDropMove == null)
-                    {
-                        Log.warning("can't find drop move " + str);
-                    }
-                    return validDropMove;
+                    return getDropMove(game, str, sourcePieceType, toX, toY);
                 }
 				return game.getValidMove(fromX, fromY, toX, toY, additionalPieceType);
 			}
@@ -264,31 +248,31 @@ public class Notation {
 			// small castle
 			if (color == Common.COLOR_WHITE) {
 				fromX = 1;
-				fromY = (Integer)game.getAttribute(Game.KING_LOCATION);
+				fromY = game.getCastlingKingY();
 				toX = 1;
 				toY = 7;
-                if ( ! game.isFischer() )
+                if ( ! game.getRules().isFischer() )
                 {
                     return game.getValidMove(fromX, fromY, toX, toY, promotionPiece);
                 }
                 else
                 {
                     // in fischer 960 use another option - point the king on the rook
-                    return game.getValidMove(fromX, fromY, toX, (Integer)game.getAttribute(Game.RIGHT_ROOK_LOCATION), promotionPiece);
+                    return game.getValidMove(fromX, fromY, toX, game.getCastlingRookY(Common.CASTLE_KING), promotionPiece);
                 }
 			} else {
 				fromX = 8;
-				fromY = (Integer)game.getAttribute(Game.KING_LOCATION);
+				fromY = game.getCastlingKingY();
 				toX = 8;
 				toY = 7;
-                if ( ! game.isFischer() )
+                if ( ! game.getRules().isFischer() )
                 {
                     return game.getValidMove(fromX, fromY, toX, toY, promotionPiece);
                 }
                 else
                 {
                     // in fischer 960 use another option - to point the king on the rook
-                    return game.getValidMove(fromX, fromY, toX, (Integer)game.getAttribute(Game.RIGHT_ROOK_LOCATION), promotionPiece);
+                    return game.getValidMove(fromX, fromY, toX, game.getCastlingRookY(Common.CASTLE_KING), promotionPiece);
                 }
 			}
 		}
@@ -297,31 +281,31 @@ public class Notation {
 			// long castle
 			if (color == Common.COLOR_WHITE) {
 				fromX = 1;
-				fromY = (Integer)game.getAttribute(Game.KING_LOCATION);
+				fromY = game.getCastlingKingY();
 				toX = 1;
 				toY = 3;
-                if ( ! game.isFischer() )
+                if ( ! game.getRules().isFischer() )
                 {
 				    return game.getValidMove(fromX, fromY, toX, toY, promotionPiece);
                 }
                 else
                 {
                     // in fischer 960 use another option - to point the king on the rook
-                    return game.getValidMove(fromX, fromY, toX, (Integer)game.getAttribute(Game.LEFT_ROOK_LOCATION), promotionPiece);
+                    return game.getValidMove(fromX, fromY, toX, game.getCastlingRookY(Common.CASTLE_QUEEN), promotionPiece);
                 }
 			} else {
 				fromX = 8;
-				fromY = (Integer)game.getAttribute(Game.KING_LOCATION);
+				fromY = game.getCastlingKingY();
 				toX = 8;
 				toY = 3;
-                if ( ! game.isFischer() )
+                if ( ! game.getRules().isFischer() )
                 {
 				    return game.getValidMove(fromX, fromY, toX, toY, promotionPiece);
                 }
                 else
                 {
                     // in fischer 960 use another option - to point the king on the rook
-                    return game.getValidMove(fromX, fromY, toX, (Integer)game.getAttribute(Game.LEFT_ROOK_LOCATION), promotionPiece);
+                    return game.getValidMove(fromX, fromY, toX, game.getCastlingRookY(Common.CASTLE_QUEEN), promotionPiece);
                 }
 			}
 		}
@@ -453,33 +437,14 @@ public class Notation {
                         }
                     }
                     // find a candidate piece that can move
-                    Piece srcPiece = null;
-                    List<Piece> srcPieces = game.findPieces(sourcePieceType, color);
-
-                    for (Piece piece : srcPieces) {
-                        if ((sourceRow != 0) && (piece.getX() != sourceRow)) {
-                            continue;
-                        }
-                        if ((sourceColumn != 0) && (piece.getY() != sourceColumn)) {
-                            continue;
-                        }
-                        if (!(currentInfo.isMoveValid(piece.getX(), piece.getY(), destRow, destColumn))) {
-                            continue;
-                        }
-                        srcPiece = piece;
-                        break;
-                    }
-
-                    if (srcPiece == null) {
+                    int srcSquare = findSourceSquare(currentInfo, sourcePieceType, sourceRow, sourceColumn, destRow, destColumn);
+                    if (srcSquare == Board.NO_SQUARE) {
                         Log.warning("could not parse move " + str);
                         return null;
                     }
 
-                    //Log.debug("parsing regular algebric move of " + Notation.getPieceCharacter(srcPiece.getType()) + " str '" + str +
-                            //"' from " + srcPiece.getX() + "," + srcPiece.getY() + " to " + destRow + "," + destColumn);
-
-                    fromX = srcPiece.getX();
-                    fromY = srcPiece.getY();
+                    fromX = Board.squareX(srcSquare);
+                    fromY = Board.squareY(srcSquare);
                     toX = destRow;
                     toY = destColumn;
                     return game.getValidMove(fromX, fromY, toX, toY, promotionPiece);
@@ -488,7 +453,7 @@ public class Notation {
             else
             {
                 // a drop move destination must be a square
-                if (! game.isCrazyOrBugHouse())
+                if (game.getRules().getDrops() == VariantRules.DROPS_NONE)
                 {
                     Log.warning("a drop move in non crazyhouse/bughouse game");
                     return null;
@@ -510,39 +475,7 @@ public class Notation {
                 Log.debug("a drop move '" + str + "' of " + sourcePieceType + " to " + destRow + "," + destColumn);
                 toX = destRow;
                 toY = destColumn;
-                // first look for a valid drop move (if it's there its all ok)
-                Move validDropMove = game.getValidMove(toX, toY, toX, toY, sourcePieceType);
-                if (validDropMove != null)
-                {
-                    // we got the drop move
-                    return validDropMove;
-                }
-                Move move = game.getValidMove(toX, toY, toX, toY, Common.PIECE_TYPE_DROP_ANY);
-                if (move == null)
-                {
-                    // drop move not found.
-                    Log.warning("can't find drop move " + str);
-                    return null;
-                }
-                // drop move found. now check if piece can be dropped
-                if ((sourcePieceType == Common.PIECE_TYPE_PAWN) && ( (toX == 1) || (toX == 8)))
-                {
-                    Log.warning("can't find drop move " + str + " : pawn can't be dropped on 1st or 8th line");
-                    return null;
-                }
-                List<Piece> droppable = game.getDroppablePieces(game.getCurrentColor());
-                Piece droppablePiece = Game.findPieceToDrop(droppable, sourcePieceType);
-                if ( droppablePiece != null )
-                {
-                    game.getCurrentMoveInfo().addValidMove(droppablePiece, toX, toY, true);
-                }
-                // ok. if all is ok, we now have a valid drop move
-                validDropMove = game.getValidMove(toX, toY, toX, toY, sourcePieceType);
-                if (validDropMove == null)
-                {
-                    Log.warning("can't find drop move " + str);
-                }
-                return validDropMove;
+                return getDropMove(game, str, sourcePieceType, toX, toY);
             }
 		} else {
 			// a capture move. destination can be a piece or a pawn
@@ -576,34 +509,43 @@ public class Notation {
 				}
 			}
 
-			Piece srcPiece = null;
-			List<Piece> srcPieces = game.findPieces(sourcePieceType, color);
-			for (Piece piece : srcPieces) {
-				if ((sourceRow != 0) && (piece.getX() != sourceRow)) {
-					continue;
-				}
-				if ((sourceColumn != 0) && (piece.getY() != sourceColumn)) {
-					continue;
-				}
-				if (!currentInfo.isMoveValid(piece.getX(), piece.getY(), destRow, destColumn)) {
-					continue;
-				}
-				srcPiece = piece;
-				break;
-			}
-			if (srcPiece == null) {
+			int srcSquare = findSourceSquare(currentInfo, sourcePieceType, sourceRow, sourceColumn, destRow, destColumn);
+			if (srcSquare == Board.NO_SQUARE) {
 				Log.warning("can't find moving piece type " + sourcePieceType + " at " + sourceRow + "," + sourceColumn + " for move '" + str + "'");
 				return null;
 			}
 
-			fromX = srcPiece.getX();
-			fromY = srcPiece.getY();
+			fromX = Board.squareX(srcSquare);
+			fromY = Board.squareY(srcSquare);
 			toX = destRow;
 			toY = destColumn;
 			return game.getValidMove(fromX, fromY, toX, toY, promotionPiece);
 		}
 	}
 
+	/*
+	 * the square of a piece of the given type that has a valid move to toX,toY,
+	 * on the given source row and column (if not 0). Board.NO_SQUARE if none
+	 */
+	private static int findSourceSquare(MoveInfo info, int pieceType, int sourceRow, int sourceColumn, int toX, int toY) {
+		if (!Board.isValidSquare(toX, toY)) {
+			return Board.NO_SQUARE;
+		}
+		long sources = info.getSources(pieceType, toX, toY);
+		while (sources != 0) {
+			int square = Board.lastSquare(sources);
+			sources &= ~(1L << square);
+			if ((sourceRow != 0) && (Board.squareX(square) != sourceRow)) {
+				continue;
+			}
+			if ((sourceColumn != 0) && (Board.squareY(square) != sourceColumn)) {
+				continue;
+			}
+			return square;
+		}
+		return Board.NO_SQUARE;
+	}
+
 	/*
 	 * given a game and the PGN move string, returns a new move with the given
 	 * string
@@ -646,7 +588,11 @@ public class Notation {
 
 		move.setNameNum(name_num);
 
-		MoveInfo info = game.getCurrentMoveInfo();
+		// the valid moves of the position the move is played from
+		MoveInfo info = move.getFromInfo();
+		if (info == null) {
+			info = game.getCurrentMoveInfo();
+		}
 		Utils.AssertNull(info);
 
 		if (Utils.isEmptyString(move.getNameAlg())) {
@@ -742,8 +688,9 @@ public class Notation {
                         name_fig += sRowNames[toX];
                         name_fig_heb += sRowNames[toX];
                     }
-                    // handle promotion
-                    if ((toX == 8) || (toX == 1)) {
+                    // handle promotion. in seven boom a pawn on the 7th row may stay a pawn
+                    if ((game.getRules().getPromotionTypes(piece.getColor(), toX) != null)
+                            && (move.getAdditionalPieceTypeInfo() != Common.PIECE_TYPE_PAWN)) {
                         Log.debug("move promotion piece is " + move.getAdditionalPieceTypeInfo());
                         name_alg += '=' + sPieceToCharEng.get(move.getAdditionalPieceTypeInfo());
                         name_alg_heb += '=' + sPieceToCharHeb.get(move.getAdditionalPieceTypeInfo());
@@ -758,23 +705,6 @@ public class Notation {
                             name_fig_heb += '=' + sPieceToUnicodeFiguresBlack.get(move.getAdditionalPieceTypeInfo());
                         }
                     }
-                    if (game.isSevenBoom() && (toX == 7 || toX == 2)) {
-                        Log.debug("move promotion piece is " + move.getAdditionalPieceTypeInfo());
-                        if (move.getAdditionalPieceTypeInfo() != Common.PIECE_TYPE_PAWN) { // promotion
-                            name_alg += '=' + sPieceToCharEng.get(move.getAdditionalPieceTypeInfo());
-                            name_alg_heb += '=' + sPieceToCharHeb.get(move.getAdditionalPieceTypeInfo());
-                            if (piece.isWhite())
-                            {
-                                name_fig += '=' + sPieceToUnicodeFiguresWhite.get(move.getAdditionalPieceTypeInfo());
-                                name_fig_heb += '=' + sPieceToUnicodeFiguresWhite.get(move.getAdditionalPieceTypeInfo());
-                            }
-                            else
-                            {
-                                name_fig += '=' + sPieceToUnicodeFiguresBlack.get(move.getAdditionalPieceTypeInfo());
-                                name_fig_heb += '=' + sPieceToUnicodeFiguresBlack.get(move.getAdditionalPieceTypeInfo());
-                            }
-                        }
-                    }
                 } else {
                     // piece move
                     name_alg += sPieceToCharEng.get(piece.getType());
@@ -798,29 +728,23 @@ public class Notation {
 
                     Log.debug("name_alg is '" + name_alg + "'");
 
-                    List<Piece> others = game.findPieces(piece.getType(), piece.getColor());
-
-                    Log.debug("others size " + others.size());
-
-                    for (Piece other : others) {
-                        if ( ( other.getX() != piece.getX() ) || ( other.getY() != piece.getY() ) )
-                        {
-                            Log.debug("found helper piece " + other.getType() + " color " + other.getColor());
-                            if (info.isMoveValid(other.getX(), other.getY(), toX, toY)) {
-                                if (other.getY() != fromY) {
-                                    // add column helper
-                                    if (Utils.isEmptyString(h1)) {
-                                        h1 += sColNamesEng[fromY];
-                                        h1heb += sColNamesHeb[fromY];
-
-                                    }
-                                } else {
-                                    // add row helper
-                                    if (Utils.isEmptyString(h2)) {
-                                        h2 += sRowNames[fromX];
-                                        h2heb += sRowNames[fromX];
-                                    }
-                                }
+                    // the other pieces of the same type that can move to the
+                    // same square, in the position the move is played from
+                    long others = info.getSources(piece.getType(), toX, toY) & ~Board.bit(fromX, fromY);
+                    while (others != 0) {
+                        int other = Board.lastSquare(others);
+                        others &= ~(1L << other);
+                        if (Board.squareY(other) != fromY) {
+                            // add column helper
+                            if (Utils.isEmptyString(h1)) {
+                                h1 += sColNamesEng[fromY];
+                                h1heb += sColNamesHeb[fromY];
+                            }
+                        } else {
+                            // add row helper
+                            if (Utils.isEmptyString(h2)) {
+                                h2 += sRowNames[fromX];
+                                h2heb += sRowNames[fromX];
                             }
                         }
                     }
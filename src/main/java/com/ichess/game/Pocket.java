@@ -0,0 +1,189 @@
+//==============================================================================
+//            Copyright (c) 2009-2014 ichess.co.il
+//
+//This document contains confidential information which is protected by
+//copyright and is proprietary to ichess.co.il. No part
+//of this document may be used, copied, disclosed, or conveyed to another
+//party without prior written consent of ichess.co.il.
+//==============================================================================
+
+package com.ichess.game;
+
+import com.ichess.game.piece.Piece;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * The captured pieces of a color in crazyhouse and bughouse, which are the
+ * pieces that may be dropped. <br>
+ * The pieces are counted by type, with the promoted pieces, which are dropped
+ * as pawns, counted apart, so the number of pieces that can be dropped of
+ * each type, and the piece to take for a drop, are found without looking at
+ * the pieces. The pieces are also kept in the order they were captured, for
+ * the FEN holdings and as a List.
+ *
+ * @author Ran Berenfeld
+ * @version 1.0
+ */
+public final class Pocket extends AbstractList<Piece> {
+
+	private final int _color;
+	private Piece[] _pieces = new Piece[16];
+	private int _size = 0;
+	// the pieces that are not promoted, by type
+	private final int[] _counts = new int[Board.PIECE_TYPE_SLOTS];
+	// the promoted pieces, by type, and all of them
+	private final int[] _promotedCounts = new int[Board.PIECE_TYPE_SLOTS];
+	private int _promoted = 0;
+
+	/**
+	 * Creates an empty pocket for pieces of the given color.
+	 */
+	public Pocket(int color) {
+		_color = color;
+	}
+
+	public int getColor() {
+		return _color;
+	}
+
+	/**
+	 * Returns the number of pieces that can be dropped as the given type. A
+	 * promoted piece is dropped as a pawn.
+	 */
+	public int getDropCount(int type) {
+		if ((type < 0) || (type >= Board.PIECE_TYPE_SLOTS)) {
+			return 0;
+		}
+		if (type == Common.PIECE_TYPE_PAWN) {
+			return _counts[type] + _promoted;
+		}
+		return _counts[type];
+	}
+
+	/**
+	 * Removes and returns a piece to drop as the given type, or null if there
+	 * is none. A pawn drop takes a captured pawn before a promoted piece.
+	 */
+	public Piece takePieceToDrop(int type) {
+		if (getDropCount(type) == 0) {
+			return null;
+		}
+		Piece piece;
+		if (_counts[type] > 0) {
+			piece = Piece.create(type, _color);
+		} else {
+			piece = _pieces[lastPromotedIndex()];
+		}
+		remove(piece);
+		return piece;
+	}
+
+	/**
+	 * Replaces the pieces of this pocket with the given ones.
+	 */
+	public void setPieces(Collection<Piece> pieces) {
+		if (pieces == this) {
+			return;
+		}
+		clear();
+		addAll(pieces);
+	}
+
+	@Override
+	public Piece get(int index) {
+		if ((index < 0) || (index >= _size)) {
+			throw new IndexOutOfBoundsException("index " + index + " size " + _size);
+		}
+		return _pieces[index];
+	}
+
+	@Override
+	public int size() {
+		return _size;
+	}
+
+	@Override
+	public void add(int index, Piece piece) {
+		if ((index < 0) || (index > _size)) {
+			throw new IndexOutOfBoundsException("index " + index + " size " + _size);
+		}
+		if (_size == _pieces.length) {
+			_pieces = Arrays.copyOf(_pieces, _size * 2);
+		}
+		System.arraycopy(_pieces, index, _pieces, index + 1, _size - index);
+		_pieces[index] = piece;
+		_size++;
+		count(piece, 1);
+		modCount++;
+	}
+
+	@Override
+	public Piece remove(int index) {
+		Piece piece = get(index);
+		System.arraycopy(_pieces, index + 1, _pieces, index, _size - index - 1);
+		_pieces[--_size] = null;
+		count(piece, -1);
+		modCount++;
+		return piece;
+	}
+
+	/**
+	 * Removes the last captured piece equal to the given one. Pieces are
+	 * mostly given back in the reverse order they were captured, so the
+	 * pieces are looked at from the last one.
+	 */
+	@Override
+	public boolean remove(Object object) {
+		if (!contains(object)) {
+			return false;
+		}
+		int index = lastIndexOf(object);
+		remove(index);
+		return true;
+	}
+
+	@Override
+	public boolean contains(Object object) {
+		if (!(object instanceof Piece)) {
+			return false;
+		}
+		Piece piece = (Piece) object;
+		if (piece.getColor() != _color) {
+			return false;
+		}
+		return (piece.isPromoted() ? _promotedCounts : _counts)[piece.getType()] > 0;
+	}
+
+	@Override
+	public void clear() {
+		Arrays.fill(_pieces, 0, _size, null);
+		Arrays.fill(_counts, 0);
+		Arrays.fill(_promotedCounts, 0);
+		_promoted = 0;
+		_size = 0;
+		modCount++;
+	}
+
+	/*
+	 * the index of the last promoted piece, of which there is at least one
+	 */
+	private int lastPromotedIndex() {
+		int index = _size - 1;
+		while (!_pieces[index].isPromoted()) {
+			index--;
+		}
+		return index;
+	}
+
+	private void count(Piece piece, int delta) {
+		if (piece.isPromoted()) {
+			_promotedCounts[piece.getType()] += delta;
+			_promoted += delta;
+		} else {
+			_counts[piece.getType()] += delta;
+		}
+	}
+}
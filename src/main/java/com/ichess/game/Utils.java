@@ -90,45 +90,7 @@ public class Utils {
      * Check if a point is in the path between two other points
      */
     public static boolean isInPath(int x1, int y1, int x2, int y2, int x3, int y3) {
-        if ((x1 == x2) && (y1 == y2)) {
-            return true;
-        }
-        if ((x1 == x3) && (y1 == y3)) {
-            return true;
-        }
-
-        // if x2=x3, then check if y1 is in the middle
-        if (x2 == x3) {
-            return ((x1 == x2) && (((y2 > y1) && (y1 > y3)) || ((y2 < y1) && (y1 < y3))));
-        }
-
-        // if y2=y3, then check if x1 is in the middle
-        if (y2 == y3) {
-            return ((y1 == y2) && (((x2 > x1) && (x1 > x3)) || ((x2 < x1) && (x1 < x3))));
-        }
-
-        // both are different, then it must be diagonal check
-        int deltaX = x3 - x2;
-        int deltaY = y3 - y2;
-
-        if (Math.abs(deltaX) != Math.abs(deltaY)) {
-            return false;
-        }
-
-        deltaX = deltaX / Math.abs(deltaX);
-        deltaY = deltaY / Math.abs(deltaY);
-
-        int curX = x2;
-        int curY = y2;
-
-        while ((curX != x3) && (curY != y3)) {
-            if ((x1 == curX) && (y1 == curY)) {
-                return true;
-            }
-            curX += deltaX;
-            curY += deltaY;
-        }
-        return false;
+        return (Geometry.span(Board.square(x2, y2), Board.square(x3, y3)) & Board.bit(x1, y1)) != 0;
     }
 
     /**
@@ -0,0 +1,118 @@
+//==============================================================================
+//            Copyright (c) 2009-2014 ichess.co.il
+//
+//This document contains confidential information which is protected by
+//copyright and is proprietary to ichess.co.il. No part
+//of this document may be used, copied, disclosed, or conveyed to another
+//party without prior written consent of ichess.co.il.
+//==============================================================================
+
+package com.ichess.game;
+
+import java.util.Random;
+
+/**
+ * Random keys for Zobrist hashing of positions, shared by all games. The hash
+ * of a position is the xor of the keys of its parts : each piece on its
+ * square, the side to move, each castling right together with the column of
+ * its rook (which differs in Fischer chess), the en passant file and, in games
+ * with drop pockets, the number of
+ * pieces of each type in the pockets and a marker for promoted pieces (which
+ * go back to the pockets as pawns). <br>
+ * The keys of the empty state (white to move, no castling, no en passant,
+ * empty pockets) are 0, so games that don't use some
+ * part are not affected by it. Board keeps the hash up to date as pieces and
+ * state change.
+ *
+ * @author Ran Berenfeld
+ * @version 1.0
+ */
+public final class Zobrist {
+
+	// more than the number of pieces of one type a pocket can hold
+	public static final int POCKET_MAX = 32;
+
+	private static final long[][][] PIECE = new long[Common.COLOR_NUM][Board.PIECE_TYPE_SLOTS][Board.SQUARE_NUM];
+	private static final long[] PROMOTED = new long[Board.SQUARE_NUM];
+	private static final long SIDE;
+	private static final long[][][] CASTLING = new long[Common.COLOR_NUM][Common.CASTLE_NUM][9];
+	private static final long[] EP_FILE = new long[8];
+	private static final long[][][] POCKET = new long[Common.COLOR_NUM][Board.PIECE_TYPE_SLOTS][POCKET_MAX + 1];
+
+	static {
+		// fixed seed, so hashes are the same on every run and server
+		Random random = new Random(0x1C4E55C0DEL);
+		for (int color = Common.COLOR_WHITE; color <= Common.COLOR_BLACK; color++) {
+			for (int type = Common.PIECE_TYPE_PAWN; type < Board.PIECE_TYPE_SLOTS; type++) {
+				for (int square = 0; square < Board.SQUARE_NUM; square++) {
+					PIECE[color][type][square] = random.nextLong();
+				}
+				for (int count = 1; count <= POCKET_MAX; count++) {
+					POCKET[color][type][count] = random.nextLong();
+				}
+			}
+		}
+		for (int square = 0; square < Board.SQUARE_NUM; square++) {
+			PROMOTED[square] = random.nextLong();
+		}
+		SIDE = random.nextLong();
+		for (int color = Common.COLOR_WHITE; color <= Common.COLOR_BLACK; color++) {
+			for (int castle = Common.CASTLE_KING; castle <= Common.CASTLE_QUEEN; castle++) {
+				for (int y = 0; y <= 8; y++) {
+					CASTLING[color][castle][y] = random.nextLong();
+				}
+			}
+		}
+		for (int file = 0; file < EP_FILE.length; file++) {
+			EP_FILE[file] = random.nextLong();
+		}
+	}
+
+	private Zobrist() {
+	}
+
+	/**
+	 * Returns the key of the given piece code (see Board.code) on the given
+	 * square.
+	 */
+	public static long piece(int code, int square) {
+		return PIECE[Board.codeColor(code)][Board.codeType(code)][square];
+	}
+
+	/**
+	 * Returns the key of the marker of a promoted piece on the given square.
+	 */
+	public static long promoted(int square) {
+		return PROMOTED[square];
+	}
+
+	public static long side() {
+		return SIDE;
+	}
+
+	/**
+	 * Returns the key of the castling right of the given color and castle
+	 * side, with its rook on the given column.
+	 */
+	public static long castling(int color, int castle, int rookY) {
+		return CASTLING[color][castle][rookY];
+	}
+
+	/**
+	 * Returns the key of the given en passant square, or 0 for NO_SQUARE.
+	 */
+	public static long epSquare(int epSquare) {
+		return epSquare == Board.NO_SQUARE ? 0L : EP_FILE[epSquare & 7];
+	}
+
+	/**
+	 * Returns the key of a pocket holding the given number of pieces of the
+	 * given type and color.
+	 */
+	public static long pocket(int color, int type, int count) {
+		if (count <= 0) {
+			return 0L;
+		}
+		return POCKET[color][type][Math.min(count, POCKET_MAX)];
+	}
+}
@@ -10,7 +10,6 @@
 package com.ichess.game.piece;
 
 import com.ichess.game.Common;
-import com.ichess.game.Game;
 
 /**
  * @author Maor Ganz
@@ -18,133 +17,8 @@ import com.ichess.game.Game;
  */
 public class Chancellor extends Piece {
 
-	public Chancellor(int color) {
-		super(Common.PIECE_TYPE_CHANCELLOR, color);
-	}
-
-	@Override
-	public boolean canMoveTo(int x, int y, Game position) {
-		// check that not moving to the same square
-		int deltaX = x - _x;
-		int deltaY = y - _y;
-
-		if ((deltaX == 0) && (deltaY == 0)) {
-			// can't move to the same place
-			return false;
-		}
-		boolean rook = true;
-
-		if ((Math.abs(deltaX) != 0) && (Math.abs(deltaY) != 0)) {
-			// must move to a square in the same row or column
-			rook = false;
-		}
-
-		Piece destPiece = position.getPieceAt(x, y);
-		boolean checkPin = false;
-		if (destPiece != null) {
-			if (destPiece.getColor() == _color) {
-				// can't move there
-				return false;
-			}
-			if (destPiece.isKing() && (_checkPin)) {
-				// moving to enemy king. check pinning
-				checkPin = true;
-			}
-		}
-
-		if (rook) {
-			// check that there are no pieces in the way
-			int dirX = deltaX > 0 ? 1 : deltaX < 0 ? -1 : 0;
-			int dirY = deltaY > 0 ? 1 : deltaY < 0 ? -1 : 0;
-			int posX = _x + dirX;
-			int posY = _y + dirY;
-			Piece maybePinned = null;
-			while ((posX != x) || (posY != y)) {
-				Piece pieceInTheWay = position.getPieceAt(posX, posY);
-				if (null != pieceInTheWay) {
-					if ((pieceInTheWay.getColor() != _color) && checkPin && (maybePinned == null)) {
-						maybePinned = pieceInTheWay;
-					} else {
-						return false;
-					}
-				}
-				posX += dirX;
-				posY += dirY;
-			}
-
-			if (maybePinned != null) {
-				// it's pinned
-				maybePinned.setPinned(true);
-				maybePinned.setPinningPiece(this);
-				return false;
-			}
-
-			return true;
-		}
-		// else - a knight
-		if ((deltaX == 0) || (deltaY == 0) || (Math.abs(deltaX) > 2) || (Math.abs(deltaY) > 2)) {
-			// can't move
-			return false;
-		}
-		if (Math.abs(deltaX) == Math.abs(deltaY)) {
-			// can't move
-			return false;
-		}
-
-		// already checked that the destination is empty or contain an enemy piece
-		return true;
-	}
-
-	@Override
-	public void doCalcReachability(Game pos) {
-		for (int dirX = -1; dirX < 2; dirX += 1) { // rook
-			for (int dirY = -1; dirY < 2; dirY += 1) {
-				if ((dirX == 0) && (dirY == 0)) {
-					continue;
-				}
-				if ((dirX != 0) && (dirY != 0)) {
-					continue;
-				}
-				int x = _x + dirX;
-				int y = _y + dirY;
-				while ((x > 0) && (x < 9) && (y > 0) && (y < 9)) {
-					Piece piece = pos.getPieceAt(x, y);
-					if (piece == null) {
-						setReachable(x, y, true, pos);
-					} else {
-						if (piece.getColor() != _color) {
-							setReachable(x, y, true, pos);
-						}
-						break;
-					}
-					x += dirX;
-					y += dirY;
-				}
-			}
-		}
-
-		for (int dirX = -2; dirX < 3; dirX += 1) { // knight
-			for (int dirY = -2; dirY < 3; dirY += 1) {
-				if ((dirX == 0) || (dirY == 0)) {
-					continue;
-				}
-				if (Math.abs(dirX) == Math.abs(dirY)) {
-					continue;
-				}
-
-				int x = _x + dirX;
-				int y = _y + dirY;
-				if ((x <= 0) || (x > 8) || (y <= 0) || (y > 8)) {
-					continue;
-				}
-				Piece piece = pos.getPieceAt(x, y);
-				if (piece == null) {
-					setReachable(x, y, true, pos);
-				} else if (piece.getColor() != _color) {
-					setReachable(x, y, true, pos);
-				}
-			}
-		}
+	Chancellor(int color, boolean promoted) {
+		super(Common.PIECE_TYPE_CHANCELLOR, color, promoted);
 	}
 
 	@Override
@@ -9,106 +9,109 @@
 
 package com.ichess.game.piece;
 
+import com.ichess.game.Board;
 import com.ichess.game.Common;
-import com.ichess.game.Game;
 import com.ichess.game.Utils;
 
-import java.awt.*;
-import java.util.Arrays;
-import static com.ichess.game.Log.*;
 /**
+ * A chess piece type of a color. Pieces are immutable, and there is a single
+ * shared instance for each type, color and promoted flag, so the same pieces
+ * are used by all the games and threads. <br>
+ * A piece does not know where it stands. The squares a piece can move to, and
+ * whether it is pinned, are found by the MoveGenerator on the position.
+ *
  * @author Ran Berenfeld
  * @version 1.0
  */
 public abstract class Piece {
 
-	public static Piece create(int type, int color) {
-		Utils.AssertNull(type, "illegal null piece type");
-		Piece newPiece = null;
+	// the shared pieces, by promoted flag, color and type
+	private static final Piece[][][] PIECES = new Piece[2][Common.COLOR_NUM][Board.PIECE_TYPE_SLOTS];
+
+	static {
+		for (int promoted = 0; promoted < 2; promoted++) {
+			for (int color = 0; color < Common.COLOR_NUM; color++) {
+				for (int type = 0; type < Board.PIECE_TYPE_SLOTS; type++) {
+					PIECES[promoted][color][type] = newPiece(type, color, promoted != 0);
+				}
+			}
+		}
+	}
+
+	private static Piece newPiece(int type, int color, boolean promoted) {
 		switch (type) {
 		case Common.PIECE_TYPE_KING:
-			newPiece = new King(color);
-			break;
+			return new King(color, promoted);
 		case Common.PIECE_TYPE_QUEEN:
-			newPiece = new Queen(color);
-			break;
+			return new Queen(color, promoted);
 		case Common.PIECE_TYPE_ROOK:
-			newPiece = new Rook(color);
-			break;
+			return new Rook(color, promoted);
 		case Common.PIECE_TYPE_BISHOP:
-			newPiece = new Bishop(color);
-			break;
+			return new Bishop(color, promoted);
 		case Common.PIECE_TYPE_KNIGHT:
-			newPiece = new Knight(color);
-			break;
+			return new Knight(color, promoted);
 		case Common.PIECE_TYPE_PAWN:
-			newPiece = new Pawn(color);
-			break;
+			return new Pawn(color, promoted);
 		case Common.PIECE_TYPE_GRASSHOPER:
-			newPiece = new Grasshoper(color);
-			break;
+			return new Grasshoper(color, promoted);
 		case Common.PIECE_TYPE_ARCHBISHOP:
-			newPiece = new Archbishop(color);
-			break;
+			return new Archbishop(color, promoted);
 		case Common.PIECE_TYPE_CHANCELLOR:
-			newPiece = new Chancellor(color);
-			break;
-        case Common.PIECE_TYPE_DROP_ANY:
-            newPiece = new DropAny(color);
-            break;
+			return new Chancellor(color, promoted);
 		}
-		return newPiece;
+		return null;
 	}
 
-	protected boolean _checkPin = false;
-	protected int _color = Common.COLOR_ILLEGAL;
-	protected boolean _moved = false;
-	protected int _pieceType = Common.PIECE_TYPE_ILLEGAL;
-	protected boolean _pinned;
-	protected Piece _pinningPiece;
-	protected boolean[] _reachable = new boolean[64];
-	protected int _x = 0, _y = 0;
-    protected boolean _promoted = false;
-    protected boolean[] _checks = new boolean[64]; // which squares can give check
-    protected boolean[] _threats = new boolean[64]; // which squares can cause a threat
-
-	protected Piece(int pieceType, int color) {
-		_pieceType = pieceType;
-		_color = color;
+	/**
+	 * Returns the shared piece of the given type and color, or null for an
+	 * unknown type.
+	 */
+	public static Piece create(int type, int color) {
+		return create(type, color, false);
 	}
 
-    public void setPromoted() { _promoted = true; };
-    public void clearPromoted() { _promoted = false; };
-    public boolean isPromoted() { return _promoted; }
+	/**
+	 * Returns the shared piece of the given type and color, that is a promoted
+	 * pawn if promoted is true. Returns null for an unknown type.
+	 */
+	public static Piece create(int type, int color, boolean promoted) {
+		Utils.AssertNull(type, "illegal null piece type");
+		if ((type < 0) || (type >= Board.PIECE_TYPE_SLOTS) || (color < 0) || (color >= Common.COLOR_NUM)) {
+			return null;
+		}
+		return PIECES[promoted ? 1 : 0][color][type];
+	}
 
-    public boolean canBeDroppedAt(int x, int y) {
-        return true;
-    }
+	protected final int _color;
+	protected final int _pieceType;
+	protected final boolean _promoted;
 
-	public abstract boolean canMoveTo(int x, int y, Game position);
+	protected Piece(int pieceType, int color, boolean promoted) {
+		_pieceType = pieceType;
+		_color = color;
+		_promoted = promoted;
+	}
 
-	public boolean canMoveTo(Point loc, Game position) {
-		Utils.AssertNull(loc);
-		Utils.AssertNull(position);
-		return canMoveTo(loc.x, loc.y, position);
+	public boolean isPromoted() {
+		return _promoted;
 	}
 
-	public void clearReachability() {
-		Arrays.fill(_reachable, false);
-        Arrays.fill(_threats, false);
-        Arrays.fill(_checks, false);
+	/**
+	 * Returns the shared piece of this type and color, with the given
+	 * promoted flag.
+	 */
+	public Piece withPromoted(boolean promoted) {
+		return create(_pieceType, _color, promoted);
 	}
 
-	public abstract void doCalcReachability(Game pos);
+    public boolean canBeDroppedAt(int x, int y) {
+        return true;
+    }
 
 	public int getColor() {
 		return _color;
 	}
 
-	public Piece getPinningPiece() {
-		return _pinningPiece;
-	}
-
 	public int getType() {
 		return _pieceType;
 	}
@@ -121,14 +124,6 @@ public abstract class Piece {
         return _pieceType;
     }
 
-	public int getX() {
-		return _x;
-	}
-
-	public int getY() {
-		return _y;
-	}
-
 	@Override
 	public int hashCode() {
 		return (_pieceType * Common.PIECE_TYPE_NUM) + (_color * 2);
@@ -142,10 +137,6 @@ public abstract class Piece {
 		return _color == Common.COLOR_BLACK;
 	}
 
-	public boolean isCheckPin() {
-		return _checkPin;
-	}
-
 	public boolean isColor(int color) {
 		return _color == color;
 	}
@@ -158,18 +149,10 @@ public abstract class Piece {
 		return _pieceType == Common.PIECE_TYPE_KNIGHT;
 	}
 
-	public boolean isMoved() {
-		return _moved;
-	}
-
 	public boolean isPawn() {
 		return _pieceType == Common.PIECE_TYPE_PAWN;
 	}
 
-	public boolean isPinned() {
-		return _pinned;
-	}
-
 	public boolean isQueen() {
 		return _pieceType == Common.PIECE_TYPE_QUEEN;
 	}
@@ -186,18 +169,6 @@ public abstract class Piece {
 		return _pieceType == Common.PIECE_TYPE_CHANCELLOR;
 	}
 
-	public boolean isReachable(int x, int y) {
-		return _reachable[((x - 1) << 3) + (y - 1)];
-	}
-
-    public boolean isCheck(int x, int y) {
-        return _checks[((x - 1) << 3) + (y - 1)];
-    }
-
-    public boolean isThreat(int x, int y) {
-        return _threats[((x - 1) << 3) + (y - 1)];
-    }
-
 	public boolean isRook() {
 		return _pieceType == Common.PIECE_TYPE_ROOK;
 	}
@@ -206,72 +177,10 @@ public abstract class Piece {
 		return _color == Common.COLOR_WHITE;
 	}
 
-	public void setCheckPin(boolean checkPin) {
-		this._checkPin = checkPin;
-	}
-
-	public void setMoved(boolean moved) {
-		this._moved = moved;
-	}
-
-	public void setPinned(boolean pinned) {
-		this._pinned = pinned;
-	}
-
-	public void setPinningPiece(Piece pinningPiece) {
-		this._pinningPiece = pinningPiece;
-	}
-
-	public void setReachable(int x, int y, boolean val) {
-		_reachable[((x - 1) << 3) + (y - 1)] = val;
-	}
-
-    public void setReachable(int x, int y, boolean val, Game pos) {
-        _reachable[((x - 1) << 3) + (y - 1)] = val;
-        check(x,y,pos);  // not including discovered checks
-    }
-
-    public void setCheck(int x, int y, boolean val) {
-        _checks[((x - 1) << 3) + (y - 1)] = val;
-    }
-
-    public void setThreaet(int x, int y, boolean val) {
-        _threats[((x - 1) << 3) + (y - 1)] = val;
-    }
-
-	public void setX(int x) {
-		this._x = x;
-	}
-
-	public void setY(int y) {
-		this._y = y;
-	}
-
     @Override
     public boolean equals(Object other)
     {
         Piece otherPiece = (Piece)other;
         return otherPiece != null && otherPiece._pieceType == _pieceType && otherPiece._color == _color && _promoted == otherPiece._promoted;
     }
-
-    public boolean canMove(int fromX, int fromY, int toX, int toY, Game pos) {
-        int X = _x;
-        int Y = _y;
-        _x = fromX;
-        _y = fromY;
-        boolean res = canMoveTo(toX, toY, pos);
-        _x = X;
-        _y = Y;
-        return res;
-    }
-
-    public void check(int x, int y, Game pos) {
-        King king = pos.getEnemyKing();
-        Log.debug("checking " + x + "," + y + " king:" + king.getX() + "," + king.getY() + " for " + _pieceType + " in " + _x + "," + _y);
-        if (canMove(x, y, king.getX(), king.getY(), pos)) {
-            Log.debug("CHECK!");
-            setCheck(x, y, true);
-        }
-        // TODO: set threats
-    }
 }
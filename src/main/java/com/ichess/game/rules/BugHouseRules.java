@@ -0,0 +1,39 @@
+//==============================================================================
+//            Copyright (c) 2009-2014 ichess.co.il
+//
+//This document contains confidential information which is protected by
+//copyright and is proprietary to ichess.co.il. No part
+//of this document may be used, copied, disclosed, or conveyed to another
+//party without prior written consent of ichess.co.il.
+//==============================================================================
+
+
+package com.ichess.game.rules;
+
+import com.ichess.game.Board;
+import com.ichess.game.Common;
+
+/**
+ * The rules of a bughouse board. The pieces captured on the other board of
+ * the team may be dropped, so a drop is always possible, as the piece may
+ * still come, and there is always enough material.
+ *
+ * @author Ran Berenfeld
+ * @version 1.0
+ */
+public class BugHouseRules extends RegularRules {
+
+	public BugHouseRules(boolean fischer) {
+		super(Common.GAME_KIND_BUG_HOUSE, fischer);
+	}
+
+	@Override
+	public int getDrops() {
+		return DROPS_ALWAYS;
+	}
+
+	@Override
+	public boolean hasEnoughMaterial(Board board, int color) {
+		return true;
+	}
+}
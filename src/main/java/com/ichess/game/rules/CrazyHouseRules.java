@@ -0,0 +1,44 @@
+//==============================================================================
+//            Copyright (c) 2009-2014 ichess.co.il
+//
+//This document contains confidential information which is protected by
+//copyright and is proprietary to ichess.co.il. No part
+//of this document may be used, copied, disclosed, or conveyed to another
+//party without prior written consent of ichess.co.il.
+//==============================================================================
+
+
+package com.ichess.game.rules;
+
+import com.ichess.game.Board;
+import com.ichess.game.Common;
+
+/**
+ * The rules of crazyhouse. Captured pieces go to the pocket of the capturing
+ * side, and may be dropped back on the board instead of a move. As pieces come
+ * back, there is always enough material.
+ *
+ * @author Ran Berenfeld
+ * @version 1.0
+ */
+public class CrazyHouseRules extends RegularRules {
+
+	public CrazyHouseRules(boolean fischer) {
+		super(Common.GAME_KIND_CRAZY_HOUSE, fischer);
+	}
+
+	@Override
+	public int getDrops() {
+		return DROPS_FROM_POCKET;
+	}
+
+	@Override
+	public boolean isCapturesToPocket() {
+		return true;
+	}
+
+	@Override
+	public boolean hasEnoughMaterial(Board board, int color) {
+		return true;
+	}
+}
@@ -7,34 +7,21 @@
 //party without prior written consent of ichess.co.il.
 //==============================================================================
 
-package com.ichess.game.piece;
+
+package com.ichess.game.rules;
 
 import com.ichess.game.Common;
-import com.ichess.game.Game;
 
 /**
+ * The rules of Fischer random chess (960), where the king castles by moving
+ * onto its rook.
+ *
  * @author Ran Berenfeld
  * @version 1.0
  */
-public class DropAny extends Piece {
-
-	public DropAny(int color) {
-		super(Common.PIECE_TYPE_DROP_ANY, color);
-	}
-
-	@Override
-	public boolean canMoveTo(int x, int y, Game position) {
-		return false;
-	}
-
-	@Override
-	public void doCalcReachability(Game pos) {
-		return;
-	}
+public class FischerRules extends RegularRules {
 
-	@Override
-	public String toString() {
-		return _color == Common.COLOR_WHITE ? "X" : "x";
+	public FischerRules() {
+		super(Common.GAME_KIND_FISCHER, true);
 	}
-
 }
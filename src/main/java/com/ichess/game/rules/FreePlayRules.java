@@ -0,0 +1,40 @@
+//==============================================================================
+//            Copyright (c) 2009-2014 ichess.co.il
+//
+//This document contains confidential information which is protected by
+//copyright and is proprietary to ichess.co.il. No part
+//of this document may be used, copied, disclosed, or conveyed to another
+//party without prior written consent of ichess.co.il.
+//==============================================================================
+
+package com.ichess.game.rules;
+
+import com.ichess.game.Common;
+
+/**
+ * The rules of free play. The kings are plain pieces that may be captured,
+ * and the side that is stalemated or has no pieces left loses.
+ *
+ * @author Ran Berenfeld
+ * @version 1.0
+ */
+public class FreePlayRules extends PlainKingRules {
+
+	public FreePlayRules() {
+		this(Common.GAME_KIND_FREEPLAY, new RegularRules());
+	}
+
+	public FreePlayRules(int gkind, VariantRules kindRules) {
+		super(gkind, kindRules);
+	}
+
+	@Override
+	public int getStaleMateWinner(int color) {
+		return Common.OtherColor(color);
+	}
+
+	@Override
+	public int getNoPiecesWinner(int color) {
+		return Common.OtherColor(color);
+	}
+}
@@ -0,0 +1,30 @@
+//==============================================================================
+//            Copyright (c) 2009-2014 ichess.co.il
+//
+//This document contains confidential information which is protected by
+//copyright and is proprietary to ichess.co.il. No part
+//of this document may be used, copied, disclosed, or conveyed to another
+//party without prior written consent of ichess.co.il.
+//==============================================================================
+
+
+package com.ichess.game.rules;
+
+import com.ichess.game.Common;
+
+/**
+ * The rules of grasshoper chess, where a pawn may also promote to a
+ * grasshoper.
+ *
+ * @author Ran Berenfeld
+ * @version 1.0
+ */
+public class GrasshoperRules extends RegularRules {
+
+	private static final int[] PROMOTION_TYPES = { Common.PIECE_TYPE_GRASSHOPER, Common.PIECE_TYPE_QUEEN,
+			Common.PIECE_TYPE_ROOK, Common.PIECE_TYPE_KNIGHT, Common.PIECE_TYPE_BISHOP };
+
+	public GrasshoperRules(boolean fischer) {
+		super(Common.GAME_KIND_GRASSHOPER, fischer, PROMOTION_TYPES);
+	}
+}
@@ -0,0 +1,30 @@
+//==============================================================================
+//            Copyright (c) 2009-2014 ichess.co.il
+//
+//This document contains confidential information which is protected by
+//copyright and is proprietary to ichess.co.il. No part
+//of this document may be used, copied, disclosed, or conveyed to another
+//party without prior written consent of ichess.co.il.
+//==============================================================================
+
+
+package com.ichess.game.rules;
+
+import com.ichess.game.Common;
+
+/**
+ * The rules of mini Capablanca chess, where a pawn may also promote to an
+ * archbishop or a chancellor.
+ *
+ * @author Ran Berenfeld
+ * @version 1.0
+ */
+public class MiniCapaRules extends RegularRules {
+
+	private static final int[] PROMOTION_TYPES = { Common.PIECE_TYPE_ARCHBISHOP, Common.PIECE_TYPE_CHANCELLOR,
+			Common.PIECE_TYPE_QUEEN, Common.PIECE_TYPE_ROOK, Common.PIECE_TYPE_KNIGHT, Common.PIECE_TYPE_BISHOP };
+
+	public MiniCapaRules(boolean fischer) {
+		super(Common.GAME_KIND_MINICAPA, fischer, PROMOTION_TYPES);
+	}
+}
@@ -0,0 +1,65 @@
+//==============================================================================
+//            Copyright (c) 2009-2014 ichess.co.il
+//
+//This document contains confidential information which is protected by
+//copyright and is proprietary to ichess.co.il. No part
+//of this document may be used, copied, disclosed, or conveyed to another
+//party without prior written consent of ichess.co.il.
+//==============================================================================
+
+package com.ichess.game.rules;
+
+import com.ichess.game.Board;
+import com.ichess.game.Common;
+
+/**
+ * The base of the game rules where the kings are plain pieces that may be
+ * captured, and there is no check and no castling. These rules are laid over
+ * the rules of the game kind, which still decide the drops, the pocket, the
+ * pieces a pawn promotes to and what material is enough, so a crazyhouse game
+ * played by suicide rules still drops its captured pieces.
+ *
+ * @author Ran Berenfeld
+ * @version 1.0
+ */
+public abstract class PlainKingRules extends RegularRules {
+
+	private final VariantRules _kindRules;
+
+	protected PlainKingRules(int gkind, VariantRules kindRules) {
+		super(gkind, false);
+		_kindRules = kindRules;
+	}
+
+	/**
+	 * Returns the rules of the game kind these rules are laid over.
+	 */
+	public VariantRules getKindRules() {
+		return _kindRules;
+	}
+
+	@Override
+	public final boolean hasRoyalKings() {
+		return false;
+	}
+
+	@Override
+	public int getDrops() {
+		return _kindRules.getDrops();
+	}
+
+	@Override
+	public boolean isCapturesToPocket() {
+		return _kindRules.isCapturesToPocket();
+	}
+
+	@Override
+	public int[] getPromotionTypes(int color, int x) {
+		return _kindRules.getPromotionTypes(color, x);
+	}
+
+	@Override
+	public boolean hasEnoughMaterial(Board board, int color) {
+		return _kindRules.hasEnoughMaterial(board, color);
+	}
+}
@@ -0,0 +1,108 @@
+//==============================================================================
+//            Copyright (c) 2009-2014 ichess.co.il
+//
+//This document contains confidential information which is protected by
+//copyright and is proprietary to ichess.co.il. No part
+//of this document may be used, copied, disclosed, or conveyed to another
+//party without prior written consent of ichess.co.il.
+//==============================================================================
+
+package com.ichess.game.rules;
+
+import com.ichess.game.Board;
+import com.ichess.game.Common;
+
+/**
+ * The rules of regular chess, and the base of the other game kinds, which
+ * change only what they do differently.
+ *
+ * @author Ran Berenfeld
+ * @version 1.0
+ */
+public class RegularRules implements VariantRules {
+
+	// same order as the moves were always listed
+	private static final int[] PROMOTION_TYPES = { Common.PIECE_TYPE_QUEEN, Common.PIECE_TYPE_ROOK,
+			Common.PIECE_TYPE_KNIGHT, Common.PIECE_TYPE_BISHOP };
+
+	private final int _gkind;
+	private final boolean _fischer;
+	private final int[] _promotionTypes;
+
+	public RegularRules() {
+		this(Common.GAME_KIND_REGULAR, false, PROMOTION_TYPES);
+	}
+
+	protected RegularRules(int gkind, boolean fischer) {
+		this(gkind, fischer, PROMOTION_TYPES);
+	}
+
+	protected RegularRules(int gkind, boolean fischer, int[] promotionTypes) {
+		_gkind = gkind;
+		_fischer = fischer;
+		_promotionTypes = promotionTypes;
+	}
+
+	@Override
+	public int getGameKind() {
+		return _gkind;
+	}
+
+	@Override
+	public boolean hasRoyalKings() {
+		return true;
+	}
+
+	@Override
+	public boolean isFischer() {
+		return _fischer;
+	}
+
+	@Override
+	public boolean isCapturesFirst() {
+		return false;
+	}
+
+	@Override
+	public int getDrops() {
+		return DROPS_NONE;
+	}
+
+	@Override
+	public boolean isCapturesToPocket() {
+		return false;
+	}
+
+	@Override
+	public int[] getPromotionTypes(int color, int x) {
+		return (x == (color == Common.COLOR_WHITE ? 8 : 1)) ? _promotionTypes : null;
+	}
+
+	@Override
+	public int getStaleMateWinner(int color) {
+		// stale mate is a draw
+		return Common.COLOR_ILLEGAL;
+	}
+
+	@Override
+	public int getNoPiecesWinner(int color) {
+		return color;
+	}
+
+	@Override
+	public boolean hasEnoughMaterial(Board board, int color) {
+		if ((board.count(Common.PIECE_TYPE_PAWN, color) > 0) || (board.count(Common.PIECE_TYPE_ROOK, color) > 0)
+				|| (board.count(Common.PIECE_TYPE_QUEEN, color) > 0)
+				|| (board.count(Common.PIECE_TYPE_ARCHBISHOP, color) > 0)
+				|| (board.count(Common.PIECE_TYPE_CHANCELLOR, color) > 0)) {
+			return true;
+		}
+		// the grasshoper seems ok to count as a bishop
+		int numberOfBishops = board.count(Common.PIECE_TYPE_BISHOP, color)
+				+ board.count(Common.PIECE_TYPE_GRASSHOPER, color);
+		int numberOfKnights = board.count(Common.PIECE_TYPE_KNIGHT, color);
+
+		// 2 pieces of any kind are enough
+		return (numberOfBishops + numberOfKnights) > 1;
+	}
+}
@@ -0,0 +1,38 @@
+//==============================================================================
+//            Copyright (c) 2009-2014 ichess.co.il
+//
+//This document contains confidential information which is protected by
+//copyright and is proprietary to ichess.co.il. No part
+//of this document may be used, copied, disclosed, or conveyed to another
+//party without prior written consent of ichess.co.il.
+//==============================================================================
+
+
+package com.ichess.game.rules;
+
+import com.ichess.game.Common;
+
+/**
+ * The rules of seven boom, where a pawn reaching the 7th row may already
+ * promote to a rook, knight or bishop, or stay a pawn.
+ *
+ * @author Ran Berenfeld
+ * @version 1.0
+ */
+public class SevenBoomRules extends RegularRules {
+
+	private static final int[] SEVEN_BOOM_TYPES = { Common.PIECE_TYPE_PAWN, Common.PIECE_TYPE_ROOK,
+			Common.PIECE_TYPE_KNIGHT, Common.PIECE_TYPE_BISHOP };
+
+	public SevenBoomRules(boolean fischer) {
+		super(Common.GAME_KIND_SEVEN_BOOM, fischer);
+	}
+
+	@Override
+	public int[] getPromotionTypes(int color, int x) {
+		if (x == (color == Common.COLOR_WHITE ? 7 : 2)) {
+			return SEVEN_BOOM_TYPES;
+		}
+		return super.getPromotionTypes(color, x);
+	}
+}
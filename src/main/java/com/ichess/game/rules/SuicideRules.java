@@ -0,0 +1,60 @@
+//==============================================================================
+//            Copyright (c) 2009-2014 ichess.co.il
+//
+//This document contains confidential information which is protected by
+//copyright and is proprietary to ichess.co.il. No part
+//of this document may be used, copied, disclosed, or conveyed to another
+//party without prior written consent of ichess.co.il.
+//==============================================================================
+
+package com.ichess.game.rules;
+
+import com.ichess.game.Common;
+
+/**
+ * The rules of suicide chess. The kings are plain pieces that may be captured
+ * and a pawn may also promote to a king, a capture must be played if there is
+ * one, and the side that is stalemated or has no pieces left wins.
+ *
+ * @author Ran Berenfeld
+ * @version 1.0
+ */
+public class SuicideRules extends PlainKingRules {
+
+	// the promotion types of the game kind, with the king first, by color and
+	// row (1 to 8)
+	private final int[][][] _promotionTypes = new int[Common.COLOR_NUM][9][];
+
+	public SuicideRules() {
+		this(Common.GAME_KIND_SUICIDE, new RegularRules());
+	}
+
+	public SuicideRules(int gkind, VariantRules kindRules) {
+		super(gkind, kindRules);
+		for (int color = Common.COLOR_WHITE; color <= Common.COLOR_BLACK; color++) {
+			for (int x = 1; x <= 8; x++) {
+				int[] types = kindRules.getPromotionTypes(color, x);
+				if (types != null) {
+					_promotionTypes[color][x] = new int[types.length + 1];
+					_promotionTypes[color][x][0] = Common.PIECE_TYPE_KING;
+					System.arraycopy(types, 0, _promotionTypes[color][x], 1, types.length);
+				}
+			}
+		}
+	}
+
+	@Override
+	public boolean isCapturesFirst() {
+		return true;
+	}
+
+	@Override
+	public int[] getPromotionTypes(int color, int x) {
+		return _promotionTypes[color][x];
+	}
+
+	@Override
+	public int getStaleMateWinner(int color) {
+		return color;
+	}
+}
@@ -0,0 +1,127 @@
+//==============================================================================
+//            Copyright (c) 2009-2014 ichess.co.il
+//
+//This document contains confidential information which is protected by
+//copyright and is proprietary to ichess.co.il. No part
+//of this document may be used, copied, disclosed, or conveyed to another
+//party without prior written consent of ichess.co.il.
+//==============================================================================
+
+package com.ichess.game.rules;
+
+import com.ichess.game.Board;
+import com.ichess.game.Common;
+
+/**
+ * The rules of a game kind : the moves added to the regular ones, the pieces a
+ * pawn may promote to, how the game ends and what material is enough to win.
+ * <br>
+ * A game binds one rules instance when it is created, and again when its kind
+ * or rules change, so the move generator and the analyse of every move ask the
+ * rules instead of testing the game kind. Rules are immutable, and may be
+ * shared by games.
+ *
+ * @author Ran Berenfeld
+ * @version 1.0
+ */
+public interface VariantRules {
+
+	// how drop moves are produced
+	int DROPS_NONE = 0;
+	int DROPS_FROM_POCKET = 1; // crazyhouse : if a piece in the pocket fits
+	int DROPS_ALWAYS = 2; // bughouse : the piece may still come from the other board
+
+	/**
+	 * Returns the game kind (see Common.GAME_KIND_REGULAR) of these rules.
+	 */
+	int getGameKind();
+
+	/**
+	 * Returns true if the kings can be checked, and not captured. The kings
+	 * are plain pieces otherwise, and there is no castling.
+	 */
+	boolean hasRoyalKings();
+
+	/**
+	 * Returns true if the king castles by moving onto its rook, as in Fischer
+	 * random chess.
+	 */
+	boolean isFischer();
+
+	/**
+	 * Returns true if a capture must be played when there is one. Only rules
+	 * without royal kings (see hasRoyalKings) have the captures first.
+	 */
+	boolean isCapturesFirst();
+
+	/**
+	 * Returns how drop moves are produced, one of DROPS_NONE,
+	 * DROPS_FROM_POCKET and DROPS_ALWAYS.
+	 */
+	int getDrops();
+
+	/**
+	 * Returns true if captured pieces go to the pocket of the capturing side.
+	 */
+	boolean isCapturesToPocket();
+
+	/**
+	 * Returns the piece types a pawn of the given color may become when
+	 * moving to the given row, or null if the pawn stays a pawn there.
+	 */
+	int[] getPromotionTypes(int color, int x);
+
+	/**
+	 * Returns the winner when the given side to move is stalemated, or
+	 * Common.COLOR_ILLEGAL for a draw.
+	 */
+	int getStaleMateWinner(int color);
+
+	/**
+	 * Returns the winner when the given side to move has no pieces left.
+	 */
+	int getNoPiecesWinner(int color);
+
+	/**
+	 * Returns true if the pieces of the given color on the board are enough
+	 * to win.
+	 */
+	boolean hasEnoughMaterial(Board board, int color);
+
+	/**
+	 * Creates the rules of the given game kind and game rules. Suicide and
+	 * free play rules are laid over the kind's own rules, which keep their
+	 * drops and promotions, and Fischer castling is kept for any other rules.
+	 */
+	static VariantRules create(int gkind, int grules) {
+		boolean fischer = grules == Common.GAME_RULES_FISCHER;
+		VariantRules kindRules;
+		switch (gkind) {
+		case Common.GAME_KIND_GRASSHOPER:
+			kindRules = new GrasshoperRules(fischer);
+			break;
+		case Common.GAME_KIND_MINICAPA:
+			kindRules = new MiniCapaRules(fischer);
+			break;
+		case Common.GAME_KIND_CRAZY_HOUSE:
+			kindRules = new CrazyHouseRules(fischer);
+			break;
+		case Common.GAME_KIND_BUG_HOUSE:
+			kindRules = new BugHouseRules(fischer);
+			break;
+		case Common.GAME_KIND_SEVEN_BOOM:
+			kindRules = new SevenBoomRules(fischer);
+			break;
+		default:
+			kindRules = fischer ? new FischerRules() : new RegularRules();
+			break;
+		}
+		if (grules == Common.GAME_RULES_SUICIDE) {
+			return new SuicideRules(gkind, kindRules);
+		}
+		if (grules == Common.GAME_RULES_FREEPLAY) {
+			return new FreePlayRules(gkind, kindRules);
+		}
+		return kindRules;
+	}
+}
@@ -11,14 +11,17 @@ package com.ichess.game.tests;
 
 import com.ichess.game.*;
 import com.ichess.game.piece.Piece;
+import com.ichess.game.rules.*;
 import static org.junit.Assert.*;
 
+import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import static com.ichess.game.Log.Log;
+import org.junit.Assume;
 import org.junit.Test;
 
 /**
@@ -83,6 +86,23 @@ public class GameTest {
         assertFalse(game.isEnded());
     }
 
+    @Test
+    public void test3FoldRepeatitionStopsAtIrreversibleMoves() {
+        Game game = new Game();
+        game.setAttribute(Game.CHECK_REPEATITION_DRAW, true);
+        assertTrue(game.playMoveList("Nf3 Nf6 Ng1 Ng8"));
+        // the rook move loses the castling right, so the opening position is not repeated
+        assertTrue(game.playMoveList("Nf3 Nf6 Rg1 Ng8 Rh1 Nf6 Ng1 Ng8"));
+        assertFalse(game.isEnded());
+        assertTrue(game.playMoveList("Nf3 Nf6 Ng1 Ng8"));
+        assertFalse(game.isEnded());
+        assertTrue(game.playMoveList("Nf3"));
+        assertTrue(game.isEnded());
+        assertEquals(Common.COLOR_ILLEGAL, game.getWinner());
+        // plies since Rg1
+        assertEquals(10, game.getBoard().getReversiblePlies());
+    }
+
     private void assertGameEquals(Game game1, Game game2) {
         assertEquals(game1.getGameKind(), game2.getGameKind());
         for (int x = 1; x <= 8; x++) {
@@ -152,11 +172,11 @@ public class GameTest {
             // XFEN encoder captured, not dropped, and lose the type when dropping...
             if (FEN.ENCODE_CAPTURED_AS_XFEN) {
                 // XFEN does not encode "was promoted"
-                for (Piece piece : game.getCapturedPieces(Common.COLOR_WHITE)) {
-                    piece.clearPromoted();
-                }
-                for (Piece piece : game.getCapturedPieces(Common.COLOR_BLACK)) {
-                    piece.clearPromoted();
+                for (int color = Common.COLOR_WHITE; color <= Common.COLOR_BLACK; color++) {
+                    List<Piece> captured = game.getCapturedPieces(color);
+                    for (int index = 0; index < captured.size(); index++) {
+                        captured.set(index, captured.get(index).withPromoted(false));
+                    }
                 }
                 assertEquals(game.getCapturedPieces(Common.COLOR_WHITE), fromFEN.getCapturedPieces(Common.COLOR_WHITE));
                 assertEquals(game.getCapturedPieces(Common.COLOR_BLACK), fromFEN.getCapturedPieces(Common.COLOR_BLACK));
@@ -420,4 +440,988 @@ public class GameTest {
         Piece queen = game.findPiece(Common.PIECE_TYPE_QUEEN, Common.COLOR_WHITE);
         assertTrue(queen.isPromoted());
     }
+    private void assertBoardMatchesPieces(Game game) {
+        Board board = game.getBoard();
+        long occupied = 0L;
+        for (int x = 1; x <= 8; x++) {
+            for (int y = 1; y <= 8; y++) {
+                Piece piece = game.getPieceAt(x, y);
+                long bit = Board.bit(x, y);
+                if (piece == null) {
+                    assertEquals(0L, board.getOccupied() & bit);
+                    continue;
+                }
+                occupied |= bit;
+                assertTrue((board.getPieces(piece.getType(), piece.getColor()) & bit) != 0);
+                assertTrue((board.getOccupied(piece.getColor()) & bit) != 0);
+                assertEquals(0L, board.getOccupied(Common.OtherColor(piece.getColor())) & bit);
+            }
+        }
+        assertEquals(occupied, board.getOccupied());
+    }
+
+    @Test
+    public void testBoardFollowsMovesAndTakebacks() {
+        Game game = new Game();
+        assertEquals(32, Long.bitCount(game.getBoard().getOccupied()));
+        assertEquals(8, game.getBoard().count(Common.PIECE_TYPE_PAWN, Common.COLOR_WHITE));
+        // castling, en passant, captures and a promotion
+        assertTrue(game.playMoveList("1. e4 d5 2. e5 f5 3. exf6 Nc6 4. fxg7 Bd7 5. gxh8=Q e6 6. Nf3 Qe7 7. Bc4 O-O-O 8. O-O dxc4"));
+        assertBoardMatchesPieces(game);
+        assertEquals(2, game.getBoard().count(Common.PIECE_TYPE_QUEEN, Common.COLOR_WHITE));
+        assertEquals(0L, game.getBoard().getPieces(Common.PIECE_TYPE_ROOK, Common.COLOR_BLACK) & Board.bit(8, 8));
+        while (game.getCurrentMove() > 0) {
+            game.takeback();
+            assertBoardMatchesPieces(game);
+        }
+        assertEquals(32, Long.bitCount(game.getBoard().getOccupied()));
+
+        Game crazyHouse = new Game(Common.GAME_KIND_CRAZY_HOUSE);
+        assertTrue(crazyHouse.playMoveList("e4 d5 exd5 Qxd5 Nc3 Qa5 P@d4"));
+        assertBoardMatchesPieces(crazyHouse);
+        assertEquals(8, crazyHouse.getBoard().count(Common.PIECE_TYPE_PAWN, Common.COLOR_WHITE));
+        crazyHouse.takebackAllMoves();
+        assertBoardMatchesPieces(crazyHouse);
+    }
+
+    private static long rayAttacks(int square, long occupied, int[][] directions) {
+        long attacks = 0L;
+        for (int[] direction : directions) {
+            int x = Board.squareX(square) + direction[0];
+            int y = Board.squareY(square) + direction[1];
+            while ((x >= 1) && (x <= 8) && (y >= 1) && (y <= 8)) {
+                attacks |= Board.bit(x, y);
+                if ((occupied & Board.bit(x, y)) != 0) {
+                    break;
+                }
+                x += direction[0];
+                y += direction[1];
+            }
+        }
+        return attacks;
+    }
+
+    @Test
+    public void testSliderAttackTables() {
+        int[][] rookDirections = { { 1, 0 }, { -1, 0 }, { 0, 1 }, { 0, -1 } };
+        int[][] bishopDirections = { { 1, 1 }, { 1, -1 }, { -1, 1 }, { -1, -1 } };
+        java.util.Random random = new java.util.Random(960);
+        for (int i = 0; i < 2000; i++) {
+            long occupied = random.nextLong() & random.nextLong();
+            for (int square = 0; square < Board.SQUARE_NUM; square++) {
+                long rook = rayAttacks(square, occupied, rookDirections);
+                long bishop = rayAttacks(square, occupied, bishopDirections);
+                assertEquals(rook, Attacks.rookAttacks(square, occupied));
+                assertEquals(bishop, Attacks.bishopAttacks(square, occupied));
+                assertEquals(rook | bishop, Attacks.queenAttacks(square, occupied));
+                assertEquals(bishop | Attacks.knightAttacks(square), Attacks.archbishopAttacks(square, occupied));
+                assertEquals(rook | Attacks.knightAttacks(square), Attacks.chancellorAttacks(square, occupied));
+            }
+        }
+        assertEquals(Board.bit(2, 3) | Board.bit(3, 2), Attacks.knightAttacks(Board.square(1, 1)));
+
+        // move generation driven by the tables, with pins and checks
+        Game kiwipete = FEN.loadGame("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1", true);
+        assertEquals(48, kiwipete.getValidNextMoves().size());
+        Game pinned = FEN.loadGame("8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1", true);
+        assertEquals(14, pinned.getValidNextMoves().size());
+    }
+
+    @Test
+    public void testMoveCodeFlags() {
+        Game kiwipete = FEN.loadGame("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1", true);
+        MoveBuffer moves = kiwipete.getCurrentMoveInfo().getValidMoveCodes();
+        assertEquals(48, moves.size());
+        int captures = 0;
+        int castles = 0;
+        for (int index = 0; index < moves.size(); index++) {
+            int move = moves.get(index);
+            captures += MoveCode.isCapture(move) ? 1 : 0;
+            castles += MoveCode.isCastle(move) ? 1 : 0;
+            assertFalse(MoveCode.isCheck(move));
+        }
+        assertEquals(8, captures);
+        assertEquals(2, castles);
+
+        Game game = new Game();
+        assertTrue(game.playMoveList("e4 a6 e5 d5"));
+        moves = game.getCurrentMoveInfo().getValidMoveCodes();
+        int ep = moves.get(moves.indexOfKey(MoveCode.create(Board.square(5, 5), Board.square(6, 4))));
+        assertTrue(MoveCode.isEp(ep) && MoveCode.isCapture(ep));
+        assertEquals(Common.PIECE_TYPE_PAWN, MoveCode.getPieceType(ep));
+        assertEquals(Common.PIECE_TYPE_PAWN, MoveCode.getCapturedType(ep));
+        assertTrue(Notation.getMove(game, "exd6").isCapture());
+
+        game = new Game();
+        assertTrue(game.playMoveList("e4 f6"));
+        assertTrue(Notation.getMove(game, "Qh5").isCheck);
+
+        // in suicide only the captures are left
+        game = new Game(Common.GAME_KIND_SUICIDE);
+        assertTrue(game.playMoveList("e4 d5"));
+        assertEquals(1, game.getValidNextMoves().size());
+    }
+
+    @Test
+    public void testValidMoveLookup() {
+        Game game = FEN.loadGame("4k3/1P6/8/8/8/8/8/4K3[Nn] w - - 0 1", true, Common.GAME_KIND_CRAZY_HOUSE);
+        Move drop = Notation.getMove(game, "N@d6");
+        assertNotNull(drop);
+        int size = game.getValidNextMoves().size();
+        assertSame(drop, Notation.getMove(game, "N@d6"));
+        assertSame(drop, game.getValidMove(6, 4, 6, 4, Common.PIECE_TYPE_KNIGHT));
+        assertNull(game.getValidMove(6, 4, 6, 4, Common.PIECE_TYPE_QUEEN));
+        assertEquals(size, game.getValidNextMoves().size());
+
+        Move queen = game.getValidMove(7, 2, 8, 2, Common.PIECE_TYPE_QUEEN);
+        Move knight = game.getValidMove(7, 2, 8, 2, Common.PIECE_TYPE_KNIGHT);
+        assertNotNull(queen);
+        assertNotNull(knight);
+        assertNotSame(queen, knight);
+        assertNull(game.getValidMove(7, 2, 7, 3, Common.PIECE_TYPE_ILLEGAL));
+        assertTrue(game.playMoveList("b8=N"));
+        assertEquals(Common.PIECE_TYPE_KNIGHT, game.getPieceAt(8, 2).getType());
+    }
+
+    private static void assertAttackMapsMatch(Board board) {
+        for (int color = Common.COLOR_WHITE; color <= Common.COLOR_BLACK; color++) {
+            long occupied = board.getOccupied() & ~board.getPieces(Common.PIECE_TYPE_KING, Common.OtherColor(color));
+            for (int square = 0; square < Board.SQUARE_NUM; square++) {
+                assertEquals(board.attackersTo(square, color, occupied) != 0, board.isAttacked(square, color));
+            }
+        }
+    }
+
+    private static void assertAttackMapsFollowRandomGame(Game game, long seed) {
+        java.util.Random random = new java.util.Random(seed);
+        for (int i = 0; (i < 80) && !game.isEnded(); i++) {
+            assertAttackMapsMatch(game.getBoard());
+            List<Move> moves = game.getValidNextMoves();
+            assertEquals(Common.RC_OK, game.playMove(moves.get(random.nextInt(moves.size()))));
+        }
+    }
+
+    @Test
+    public void testAttackMaps() {
+        assertAttackMapsFollowRandomGame(new Game(), 1);
+        assertAttackMapsFollowRandomGame(new Game(Common.GAME_KIND_GRASSHOPER), 2);
+        assertAttackMapsFollowRandomGame(new Game(Common.GAME_KIND_MINICAPA), 3);
+
+        // the king can't step back along the checking line
+        Game game = FEN.loadGame("4k3/8/8/8/8/8/8/r3K3 w - - 0 1", true);
+        assertTrue(game.getBoard().isAttacked(Board.square(1, 6), Common.COLOR_BLACK));
+        assertEquals(3, game.getValidNextMoves().size());
+
+        // grasshoper attacks the square behind its hurdle
+        assertEquals(Board.bit(3, 3) | Board.bit(1, 3), Attacks.grasshoperAttacks(Board.square(1, 1),
+                Board.bit(2, 2) | Board.bit(1, 2) | Board.bit(4, 4)));
+
+        // in Fischer castling the rook leaves the way open to an enemy rook behind it
+        game = FEN.loadGame("1r4k1/8/8/8/8/8/8/rRK5 w B - 0 1", true, Common.GAME_KIND_FISCHER);
+        assertNull(Notation.getMove(game, "O-O-O"));
+        game = FEN.loadGame("1r4k1/8/8/8/8/8/8/1RK5 w B - 0 1", true, Common.GAME_KIND_FISCHER);
+        assertNotNull(Notation.getMove(game, "O-O-O"));
+    }
+
+    private static void assertPerft(Game game, long... nodes) {
+        for (int depth = 1; depth <= nodes.length; depth++) {
+            assertEquals("depth " + depth, nodes[depth - 1], game.perft(depth));
+        }
+    }
+
+    @Test
+    public void testPerft() {
+        assertPerft(new Game(), 20, 400, 8902, 197281);
+        // kiwipete
+        assertPerft(FEN.loadGame("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1", true),
+                48, 2039, 97862);
+        // pins along the row, en passant discovering a check
+        assertPerft(FEN.loadGame("8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1", true), 14, 191, 2812, 43238);
+        // promotions and castling rights lost by captures
+        assertPerft(FEN.loadGame("r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1", true),
+                6, 264, 9467);
+        assertPerft(FEN.loadGame("rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8", true), 44, 1486, 62379);
+        // Fischer castling
+        assertPerft(FEN.loadGame("bqnb1rkr/pp3ppp/3ppn2/2p5/5P2/P2P4/NPP1P1PP/BQ1BNRKR w HFhf - 2 9", true,
+                Common.GAME_KIND_FISCHER), 21, 528, 12189);
+        assertPerft(FEN.loadGame("qnbnr1kr/ppp1b1pp/4p3/3p1p2/8/2NPP3/PPP1BPPP/QNB1R1KR w HEhe - 1 9", true,
+                Common.GAME_KIND_FISCHER), 29, 899, 26578, 824055);
+
+        // the generated moves are the valid moves of the game
+        Game game = FEN.loadGame("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1", true);
+        for (Move move : new ArrayList<Move>(game.getValidNextMoves())) {
+            assertEquals(Common.RC_OK, game.playMove(move));
+            assertEquals(game.perft(1), game.getValidNextMoves().size());
+            game.takeback();
+        }
+    }
+
+    private static void assertCountsFollowRandomGame(Game game, long seed) {
+        java.util.Random random = new java.util.Random(seed);
+        for (int i = 0; (i < 80) && !game.isEnded(); i++) {
+            int count = game.countLegalMoves();
+            int sum = 0;
+            for (int moves : game.getMobility()) {
+                sum += moves;
+            }
+            assertEquals(count, sum);
+            assertEquals(count > 0, game.hasLegalMove());
+            List<Move> moves = game.getValidNextMoves();
+            assertEquals(moves.size(), count);
+            assertEquals(Common.RC_OK, game.playMove(moves.get(random.nextInt(moves.size()))));
+        }
+    }
+
+    @Test
+    public void testCountLegalMoves() {
+        assertCountsFollowRandomGame(new Game(), 1);
+        assertCountsFollowRandomGame(new Game(Common.GAME_KIND_SUICIDE), 2);
+        assertCountsFollowRandomGame(new Game(Common.GAME_KIND_GRASSHOPER), 3);
+        assertCountsFollowRandomGame(new Game(Common.GAME_KIND_MINICAPA), 4);
+        assertCountsFollowRandomGame(new Game(Common.GAME_KIND_SEVEN_BOOM), 5);
+
+        // kiwipete
+        Game game = FEN.loadGame("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1", true);
+        assertEquals(48, game.countLegalMoves());
+        int[] mobility = game.getMobility();
+        assertEquals(8, mobility[Common.PIECE_TYPE_PAWN]);
+        assertEquals(11, mobility[Common.PIECE_TYPE_KNIGHT]);
+        assertEquals(11, mobility[Common.PIECE_TYPE_BISHOP]);
+        assertEquals(5, mobility[Common.PIECE_TYPE_ROOK]);
+        assertEquals(9, mobility[Common.PIECE_TYPE_QUEEN]);
+        assertEquals(4, mobility[Common.PIECE_TYPE_KING]);
+
+        // every promotion type is a move
+        game = FEN.loadGame("8/1P6/8/8/8/8/8/k6K w - - 0 1", true);
+        assertEquals(7, game.countLegalMoves());
+        assertEquals(4, game.getMobility()[Common.PIECE_TYPE_PAWN]);
+        assertEquals(game.getValidNextMoves().size(), game.countLegalMoves());
+
+        // a knight drop on every empty square
+        game = FEN.loadGame("4k3/1P6/8/8/8/8/8/4K3[Nn] w - - 0 1", true, Common.GAME_KIND_CRAZY_HOUSE);
+        assertEquals(game.getValidNextMoves().size(), game.countLegalMoves());
+        assertEquals(61, game.getMobility()[Common.PIECE_TYPE_KNIGHT]);
+
+        // a Fischer castling is one move, the king moving two squares onto
+        // its rook, and the king side castling passes through the rook check
+        game = FEN.loadGame("1r2k1r1/8/8/8/8/8/8/1R2K1R1 w GBgb - 0 1", true, Common.GAME_KIND_FISCHER);
+        assertEquals(25, game.countLegalMoves());
+        assertEquals(6, game.getMobility()[Common.PIECE_TYPE_KING]);
+        assertEquals(game.getValidNextMoves().size(), game.countLegalMoves());
+    }
+
+    @Test
+    public void testHasLegalMove() {
+        Game game = new Game();
+        assertTrue(game.playMoveList("f3 e5 g4 Qh4"));
+        assertFalse(game.hasLegalMove());
+        assertTrue(game.isCheckMate());
+
+        game = FEN.loadGame("7k/5Q2/6K1/8/8/8/8/8 b - - 0 1", true);
+        assertFalse(game.hasLegalMove());
+        assertTrue(game.isStaleMate());
+
+        // double check, only the king may move, so Bxd3 is not legal
+        game = FEN.loadGame("4r2k/8/8/8/8/3n4/3P1P2/3QKB2 w - - 0 1", true);
+        assertTrue(game.isCheck());
+        assertFalse(game.hasLegalMove());
+        assertTrue(game.isCheckMate());
+        game = FEN.loadGame("7k/8/8/8/8/3n4/3P1P2/3QKB2 w - - 0 1", true);
+        assertTrue(game.hasLegalMove());
+        assertEquals(2, game.countLegalMoves());
+
+        // the pinned bishop may still capture along the pin
+        game = FEN.loadGame("k7/8/8/8/8/2q5/1B6/KR6 w - - 0 1", true);
+        assertTrue(game.hasLegalMove());
+        assertNotNull(game.getValidMove(2, 2, 3, 3));
+        assertNull(game.getValidMove(2, 2, 3, 1));
+    }
+
+    private static void assertLegalTargetsMatch(Game game) {
+        long[] targets = new long[64];
+        for (Move move : game.getValidNextMoves()) {
+            if (!move.isDropMove()) {
+                targets[Board.square(move.getFromX(), move.getFromY())] |= Board.bit(move.getToX(), move.getToY());
+            }
+        }
+        for (int square = 0; square < 64; square++) {
+            assertEquals(targets[square], game.getLegalTargets(Board.squareX(square), Board.squareY(square)));
+        }
+    }
+
+    @Test
+    public void testLegalTargets() {
+        int[] kinds = { Common.GAME_KIND_REGULAR, Common.GAME_KIND_SUICIDE, Common.GAME_KIND_GRASSHOPER,
+                Common.GAME_KIND_MINICAPA };
+        for (int kind : kinds) {
+            Game game = new Game(kind);
+            java.util.Random random = new java.util.Random(kind);
+            for (int i = 0; (i < 60) && !game.isEnded(); i++) {
+                assertLegalTargetsMatch(game);
+                List<Move> moves = game.getValidNextMoves();
+                assertEquals(Common.RC_OK, game.playMove(moves.get(random.nextInt(moves.size()))));
+            }
+        }
+        assertLegalTargetsMatch(FEN.loadGame("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1", true));
+        assertLegalTargetsMatch(FEN.loadGame("8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1", true));
+
+        // the published position follows the moves and takebacks
+        Game game = new Game();
+        game.setPublishPositions(true);
+        assertEquals(Board.bit(3, 5) | Board.bit(4, 5), game.getLegalTargets(2, 5));
+        assertTrue(game.playMoveList("e4"));
+        assertEquals(0L, game.getLegalTargets(2, 5));
+        assertEquals(Board.bit(6, 5) | Board.bit(5, 5), game.getLegalTargets(7, 5));
+        game.takeback();
+        assertEquals(Board.bit(3, 5) | Board.bit(4, 5), game.getLegalTargets(2, 5));
+    }
+
+    private static final int[] MOVE_TYPES = { Common.PIECE_TYPE_ILLEGAL, Common.PIECE_TYPE_PAWN,
+            Common.PIECE_TYPE_KNIGHT, Common.PIECE_TYPE_BISHOP, Common.PIECE_TYPE_ROOK, Common.PIECE_TYPE_QUEEN,
+            Common.PIECE_TYPE_KING, Common.PIECE_TYPE_GRASSHOPER, Common.PIECE_TYPE_ARCHBISHOP,
+            Common.PIECE_TYPE_CHANCELLOR };
+
+    private static void assertLegalityMatches(Game game) {
+        for (int from = 0; from < 64; from++) {
+            int fromX = Board.squareX(from);
+            int fromY = Board.squareY(from);
+            Piece piece = game.getPieceAt(fromX, fromY);
+            if ((piece == null) || !piece.isColor(game.getCurrentColor())) {
+                continue;
+            }
+            for (int to = 0; to < 64; to++) {
+                int toX = Board.squareX(to);
+                int toY = Board.squareY(to);
+                for (int type : MOVE_TYPES) {
+                    if ((type != Common.PIECE_TYPE_ILLEGAL) && !piece.isPawn()) {
+                        continue;
+                    }
+                    assertEquals(game.getValidMove(fromX, fromY, toX, toY, type) != null,
+                            game.isLegal(fromX, fromY, toX, toY, type));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testIsLegal() {
+        int[] kinds = { Common.GAME_KIND_REGULAR, Common.GAME_KIND_SUICIDE, Common.GAME_KIND_GRASSHOPER,
+                Common.GAME_KIND_MINICAPA, Common.GAME_KIND_SEVEN_BOOM };
+        for (int kind : kinds) {
+            Game game = new Game(kind);
+            java.util.Random random = new java.util.Random(kind);
+            for (int i = 0; (i < 40) && !game.isEnded(); i++) {
+                assertLegalityMatches(game);
+                List<Move> moves = game.getValidNextMoves();
+                assertEquals(Common.RC_OK, game.playMove(moves.get(random.nextInt(moves.size()))));
+            }
+        }
+        // castling, en passant and promotions
+        assertLegalityMatches(FEN.loadGame("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1", true));
+        assertLegalityMatches(FEN.loadGame("8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1", true));
+        assertLegalityMatches(FEN.loadGame("r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1", true));
+        assertLegalityMatches(FEN.loadGame("bqnb1rkr/pp3ppp/3ppn2/2p5/5P2/P2P4/NPP1P1PP/BQ1BNRKR w HFhf - 2 9", true,
+                Common.GAME_KIND_FISCHER));
+
+        // a Fischer castling given by the king's target square or its rook
+        Game game = FEN.loadGame("1r2k1r1/8/8/8/8/8/8/1R2K1R1 w GBgb - 0 1", true, Common.GAME_KIND_FISCHER);
+        assertLegalityMatches(game);
+        assertTrue(game.isLegal(1, 5, 1, 2, Common.PIECE_TYPE_ILLEGAL));
+        assertTrue(game.isLegal(1, 5, 1, 3, Common.PIECE_TYPE_ILLEGAL));
+        assertFalse(game.isLegal(1, 5, 1, 7, Common.PIECE_TYPE_ILLEGAL));
+        assertSame(game.getValidMove(1, 5, 1, 2, Common.PIECE_TYPE_ILLEGAL),
+                game.getValidMove(1, 5, 1, 3, Common.PIECE_TYPE_ILLEGAL));
+
+        // drops of the pieces in the pocket only
+        game = FEN.loadGame("4k3/1P6/8/8/8/8/8/4K3[Nn] w - - 0 1", true, Common.GAME_KIND_CRAZY_HOUSE);
+        assertTrue(game.isLegal(6, 4, 6, 4, Common.PIECE_TYPE_KNIGHT));
+        assertFalse(game.isLegal(6, 4, 6, 4, Common.PIECE_TYPE_PAWN));
+        assertFalse(game.isLegal(6, 4, 6, 4, Common.PIECE_TYPE_QUEEN));
+        assertFalse(game.isLegal(1, 5, 1, 5, Common.PIECE_TYPE_KNIGHT));
+        assertFalse(game.isLegal(0, 5, 1, 5, Common.PIECE_TYPE_ILLEGAL));
+    }
+
+    private static void assertCheckFlagsMatch(Game game) {
+        for (Move move : new ArrayList<Move>(game.getValidNextMoves())) {
+            if (move.isDropMove()) {
+                continue;
+            }
+            assertEquals(Common.RC_OK, game.playMove(move));
+            assertEquals(move.getNameNum(), game.isCheck(), move.isCheck);
+            game.takeback();
+        }
+    }
+
+    @Test
+    public void testGivesCheck() {
+        int[] kinds = { Common.GAME_KIND_REGULAR, Common.GAME_KIND_GRASSHOPER, Common.GAME_KIND_MINICAPA,
+                Common.GAME_KIND_SEVEN_BOOM };
+        for (int kind : kinds) {
+            Game game = new Game(kind);
+            java.util.Random random = new java.util.Random(kind);
+            for (int i = 0; (i < 40) && !game.isEnded(); i++) {
+                assertCheckFlagsMatch(game);
+                List<Move> moves = game.getValidNextMoves();
+                assertEquals(Common.RC_OK, game.playMove(moves.get(random.nextInt(moves.size()))));
+            }
+        }
+
+        // discovered check
+        Game game = FEN.loadGame("4k3/8/8/8/8/8/4N3/4R1K1 w - - 0 1", true);
+        assertTrue(game.getValidMove(2, 5, 3, 3).isCheck);
+        // castling rook
+        game = FEN.loadGame("5k2/8/8/8/8/8/8/4K2R w K - 0 1", true);
+        assertTrue(Notation.getMove(game, "O-O").isCheck);
+        // the promoted piece checks through the square the pawn left
+        game = FEN.loadGame("r7/1P6/2k5/8/8/8/8/7K w - - 0 1", true);
+        assertTrue(game.getValidMove(7, 2, 8, 1, Common.PIECE_TYPE_QUEEN).isCheck);
+        assertFalse(game.getValidMove(7, 2, 8, 1, Common.PIECE_TYPE_ROOK).isCheck);
+        assertTrue(game.getValidMove(7, 2, 8, 2, Common.PIECE_TYPE_KNIGHT).isCheck);
+        assertFalse(game.getValidMove(7, 2, 8, 2, Common.PIECE_TYPE_QUEEN).isCheck);
+        // en passant opens the row to the rook
+        game = FEN.loadGame("8/8/8/k1pP3R/8/8/8/4K3 w - c6 0 1", true);
+        assertTrue(game.getValidMove(5, 4, 6, 3).isCheck);
+        assertFalse(game.getValidMove(5, 4, 6, 4).isCheck);
+
+        assertCheckFlagsMatch(FEN.loadGame("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1", true));
+        assertCheckFlagsMatch(FEN.loadGame("8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1", true));
+        assertCheckFlagsMatch(FEN.loadGame("rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8", true));
+    }
+
+    @Test
+    public void testLazyMoveNames() {
+        Game game = new Game();
+        assertTrue(game.playMoveList("d4 d5 Nf3 Nf6"));
+        Move knight = game.getValidMove(1, 2, 2, 4);
+        Move other = game.getValidMove(3, 6, 2, 4);
+        assertTrue(game.playMoveList("e3"));
+        // named on first use, from the position they are played from
+        assertEquals("Nbd2", knight.getNameAlg());
+        assertEquals("Nfd2", other.getNameAlg());
+        assertEquals("b1d2 ", knight.getNameNum());
+
+        // rooks on the same column are told apart by the row
+        game = FEN.loadGame("4k3/8/8/R7/8/8/8/R3K3 w - - 0 1", true);
+        assertEquals("R1a3", game.getValidMove(1, 1, 3, 1).getNameAlg());
+        assertEquals("Rb1", game.getValidMove(1, 1, 1, 2).getNameAlg());
+
+        // the played move is named with its check suffix
+        game = new Game();
+        assertTrue(game.playMoveList("e4 f6 Qh5"));
+        assertEquals("Qh5+", game.getMove(2).getNameAlg());
+        assertEquals("e2e4 f7f6 d1h5 ", game.getMoveListNum().replaceAll("\\s+", " "));
+    }
+
+    @Test
+    public void testGeometryTables() {
+        int a1 = Board.square(1, 1);
+        int h8 = Board.square(8, 8);
+        int e1 = Board.square(1, 5);
+        int e8 = Board.square(8, 5);
+        assertEquals(6, Long.bitCount(Geometry.between(a1, h8)));
+        assertEquals(Geometry.between(a1, h8), Geometry.between(h8, a1));
+        assertEquals(0L, Geometry.between(a1, Board.square(2, 3)));
+        assertEquals(Geometry.line(e1, e8), Geometry.line(Board.square(4, 5), Board.square(5, 5)));
+        assertEquals(8, Long.bitCount(Geometry.line(e1, e8)));
+        assertEquals(8, Geometry.direction(e1, e8));
+        assertEquals(-9, Geometry.direction(h8, a1));
+        assertEquals(7, Geometry.distance(a1, h8));
+        assertTrue(Utils.isInPath(4, 4, 1, 1, 8, 8));
+        assertTrue(Utils.isInPath(1, 1, 1, 1, 8, 8));
+        assertFalse(Utils.isInPath(4, 5, 1, 1, 8, 8));
+
+        // check evasions by blocking and capturing, pinned pieces, and castling paths
+        Game inCheck = FEN.loadGame("r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1", true);
+        assertEquals(6, inCheck.getValidNextMoves().size());
+        Game castlingUnderAttack = FEN.loadGame("r3k2r/8/8/8/8/8/5r2/R3K2R w KQkq - 0 1", true);
+        assertNull(castlingUnderAttack.getValidMove(1, 5, 1, 7));
+        assertNotNull(castlingUnderAttack.getValidMove(1, 5, 1, 3));
+    }
+
+    private static void assertSameBoard(Board expected, Board actual) {
+        for (int square = 0; square < Board.SQUARE_NUM; square++) {
+            assertEquals(expected.getCode(square), actual.getCode(square));
+        }
+        for (int color = Common.COLOR_WHITE; color <= Common.COLOR_BLACK; color++) {
+            for (int type = Common.PIECE_TYPE_PAWN; type < Board.PIECE_TYPE_SLOTS; type++) {
+                assertEquals(expected.getPieces(type, color), actual.getPieces(type, color));
+            }
+            assertEquals(expected.getOccupied(color), actual.getOccupied(color));
+            for (int type = Common.PIECE_TYPE_PAWN; type < Board.PIECE_TYPE_SLOTS; type++) {
+                assertEquals(expected.getPocketCount(color, type), actual.getPocketCount(color, type));
+            }
+        }
+        assertEquals(expected.getOccupied(), actual.getOccupied());
+        assertEquals(expected.getSideToMove(), actual.getSideToMove());
+        assertEquals(expected.getCastling(), actual.getCastling());
+        assertEquals(expected.getEpSquare(), actual.getEpSquare());
+        assertEquals(expected.getHalfmoveClock(), actual.getHalfmoveClock());
+        assertEquals(expected.getHash(), actual.getHash());
+    }
+
+    /*
+     * play the moves on the game, and their codes on a search board, and check
+     * that they agree. then unmake all the moves
+     */
+    private static void assertSearchBoardFollowsGame(Game game, String moves) {
+        game.setAttribute(Game.CHECK_50_MOVES_DRAW, true);
+        Board initial = game.getSearchBoard();
+        Board board = game.getSearchBoard();
+        for (String moveStr : moves.split(" ")) {
+            Move move = Notation.getMove(game, moveStr);
+            assertNotNull(moveStr, move);
+            int code = game.getMoveCode(move);
+            assertEquals(Common.RC_OK, game.playMove(move));
+            board.makeMove(code);
+            assertSameBoard(game.getSearchBoard(), board);
+        }
+        while (board.getPly() > 0) {
+            board.unmakeMove();
+        }
+        assertSameBoard(initial, board);
+    }
+
+    @Test
+    public void testSearchBoardMakeUnmake() {
+        assertSearchBoardFollowsGame(new Game(),
+                "e4 d5 e5 f5 exf6 Nc6 fxg7 Bd7 gxh8=Q e6 Nf3 Qe7 Bc4 O-O-O O-O dxc4 d3 cxd3 Qxd3 Kb8");
+        assertSearchBoardFollowsGame(new Game(),
+                "a4 b5 axb5 a6 Rxa6 Rxa6 bxa6 Bb7 axb7 Nc6 b8=N h5 Nxc6 Rh6");
+        assertSearchBoardFollowsGame(FEN.loadGame("bqnrkrnb/pppppppp/8/8/8/8/PPPPPPPP/BQNRKRNB w FDfd - 0 1", true, Common.GAME_KIND_FISCHER),
+                "Nf3 Nf6 g3 Nd6 O-O O-O-O");
+        assertSearchBoardFollowsGame(new Game(Common.GAME_KIND_CRAZY_HOUSE), "e4 d5 exd5 Qxd5 Nc3 Qa5 P@d4 e5");
+    }
+
+    private void assertTakebacksRestoreFEN(Game game, String moves) {
+        List<String> fens = new ArrayList<String>();
+        fens.add(FEN.getFENString(game));
+        for (String moveStr : moves.split(" ")) {
+            assertEquals(moveStr, Common.RC_OK, game.playMove(moveStr));
+            fens.add(FEN.getFENString(game));
+        }
+        for (int i = fens.size() - 1; i > 0; i--) {
+            assertEquals(fens.get(i), FEN.getFENString(game));
+            game.takeback();
+        }
+        assertEquals(fens.get(0), FEN.getFENString(game));
+    }
+
+    @Test
+    public void testTakebackRestoresIrreversibleState() {
+        Game game = new Game();
+        game.setAttribute(Game.CHECK_50_MOVES_DRAW, true);
+        assertTrue(game.playMoveList("e4 Nf6 e5 d5"));
+        assertNotNull(game.getEpPawn());
+        game.takeback();
+        assertNull(game.getEpPawn());
+        assertEquals(Common.RC_OK, game.playMove("d5"));
+        assertNotNull(game.getEpPawn());
+        assertEquals(Common.RC_OK, game.playMove("exd6"));
+        game.takeback();
+        assertNotNull(game.getEpPawn());
+
+        // a rook that went back to its square does not restore the castling right
+        game = new Game();
+        assertTrue(game.playMoveList("Nf3 Nc6 Rg1 Nb8 Rh1 Nc6"));
+        assertFalse(game.getCastlingAvailability(Common.COLOR_WHITE, Common.CASTLE_KING));
+        assertTrue(game.getCastlingAvailability(Common.COLOR_WHITE, Common.CASTLE_QUEEN));
+        game.takeback();
+        game.takeback();
+        game.takeback();
+        game.takeback();
+        assertTrue(game.getCastlingAvailability(Common.COLOR_WHITE, Common.CASTLE_KING));
+
+        game = new Game();
+        game.setAttribute(Game.CHECK_50_MOVES_DRAW, true);
+        assertTakebacksRestoreFEN(game, "e4 d5 e5 f5 exf6 Nc6 fxg7 Bd7 gxh8=Q e6 Nf3 Qe7 Bc4 O-O-O O-O Kb8 Re1 Ka8");
+        assertTakebacksRestoreFEN(FEN.loadGame("r3k2r/8/8/8/8/8/8/R3K2R w KQkq - 12 30", true),
+                "Kd1 Ra7 Ke1 Ra8 Rh2 Kd8");
+        assertTakebacksRestoreFEN(FEN.loadGame("bqnrkrnb/pppppppp/8/8/8/8/PPPPPPPP/BQNRKRNB w FDfd - 0 1", true, Common.GAME_KIND_FISCHER),
+                "Nf3 Nf6 g3 Nd6 O-O O-O-O");
+    }
+
+    private static void assertHashMatchesFEN(Game game, String moves, int gkind) {
+        for (String moveStr : moves.split(" ")) {
+            assertEquals(moveStr, Common.RC_OK, game.playMove(moveStr));
+            assertEquals(game.getPositionHash(), game.getCurrentMoveInfo().getPositionHash());
+            Game fromFEN = FEN.loadGame(FEN.getFENString(game), true, gkind);
+            assertNotNull(fromFEN);
+            assertEquals(moveStr, fromFEN.getPositionHash(), game.getPositionHash());
+        }
+    }
+
+    @Test
+    public void testPositionHash() {
+        Game game = new Game();
+        long initial = game.getPositionHash();
+        assertTrue(game.playMoveList("Nf3 Nf6 Ng1"));
+        assertTrue(initial != game.getPositionHash());
+        assertEquals(Common.RC_OK, game.playMove("Ng8"));
+        assertEquals(initial, game.getPositionHash());
+        assertTrue(game.playMoveList("Nf3 Nf6 Rg1 Ng8 Rh1 Nf6 Ng1 Ng8"));
+        assertTrue(initial != game.getPositionHash()); // white can't castle short
+        game.takebackAllMoves();
+        assertEquals(initial, game.getPositionHash());
+
+        Game other = new Game();
+        assertTrue(game.playMoveList("e4 e5 Nf3"));
+        assertTrue(other.playMoveList("Nf3 e5 e4"));
+        assertEquals(other.getPositionHash(), game.getPositionHash());
+
+        assertTrue(FEN.loadGame("rnbqkbnr/ppp1pppp/8/8/3pP3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1").getPositionHash()
+                != FEN.loadGame("rnbqkbnr/ppp1pppp/8/8/3pP3/8/PPPP1PPP/RNBQKBNR b KQkq - 0 1").getPositionHash());
+
+        assertHashMatchesFEN(new Game(),
+                "e4 d5 e5 f5 exf6 Nc6 fxg7 Bd7 gxh8=Q e6 Nf3 Qe7 Bc4 O-O-O O-O Kb8", Common.GAME_KIND_REGULAR);
+        assertHashMatchesFEN(new Game(Common.GAME_KIND_CRAZY_HOUSE),
+                "e4 d5 exd5 Qxd5 Nc3 Qa5 P@d4 e5 dxe5 Bb4 a3 Bxc3 bxc3 N@d3", Common.GAME_KIND_CRAZY_HOUSE);
+        assertHashMatchesFEN(FEN.loadGame("4k3/1P6/8/8/8/8/8/4K3[Pp] w - - 0 1", true, Common.GAME_KIND_CRAZY_HOUSE),
+                "b8=Q Ke7 Qb4 Ke8", Common.GAME_KIND_CRAZY_HOUSE);
+        assertHashMatchesFEN(FEN.loadGame("bqnrkrnb/pppppppp/8/8/8/8/PPPPPPPP/BQNRKRNB w FDfd - 0 1", true, Common.GAME_KIND_FISCHER),
+                "Nf3 Nf6 g3 Nd6 O-O O-O-O", Common.GAME_KIND_FISCHER);
+    }
+
+    private static void assertLazyFENFollowsReplay(Game game, String moves, int gkind) {
+        String initialFEN = FEN.getFENString(game);
+        assertTrue(game.playMoveList(moves));
+        // replay the game, asking each ply for its FEN while it is current
+        Game replay = FEN.loadGame(initialFEN, true, gkind);
+        String[] moveList = moves.split(" ");
+        for (int moveIndex = 0; moveIndex < moveList.length; moveIndex++) {
+            assertEquals(Common.RC_OK, replay.playMove(moveList[moveIndex]));
+            int ply = replay.getCurrentMove();
+            assertEquals(moveList[moveIndex], FEN.getFENString(replay), game.getMoveInfo(ply).getFENString());
+            assertEquals(FEN.getFENPosition(replay), game.getMoveInfo(ply).getFENPosition());
+        }
+    }
+
+    @Test
+    public void testLazyFEN() {
+        Game game = new Game();
+        assertTrue(game.playMoveList("e4 c5 e5 d5 Nf3 Nc6"));
+        assertEquals("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq - 0 1", game.getMoveInfo(1).getFENString());
+        assertEquals("rnbqkbnr/pp2pppp/8/2ppP3/8/8/PPPP1PPP/RNBQKBNR w KQkq d6 0 3", game.getMoveInfo(4).getFENString());
+        assertEquals("rnbqkbnr/pp2pppp/8/2ppP3/8/8/PPPP1PPP/RNBQKBNR", game.getMoveInfo(4).getFENPosition());
+        assertEquals(game.getMoveInfo(game.getCurrentMove()).getFENString(), FEN.getFENString(game));
+
+        Game crazyHouse = new Game(Common.GAME_KIND_CRAZY_HOUSE);
+        assertTrue(crazyHouse.playMoveList("e4 d5 exd5 Qxd5 Nc3 Qa5"));
+        assertEquals("rnb1kbnr/ppp1pppp/8/3q4/8/8/PPPP1PPP/RNBQKBNR[Pp] w KQkq - 0 3",
+                crazyHouse.getMoveInfo(4).getFENString());
+
+        assertLazyFENFollowsReplay(new Game(),
+                "e4 d5 e5 f5 exf6 Nc6 fxg7 Bd7 gxh8=Q e6 Nf3 Qe7 Bc4 O-O-O O-O Kb8", Common.GAME_KIND_REGULAR);
+        assertLazyFENFollowsReplay(new Game(Common.GAME_KIND_CRAZY_HOUSE),
+                "e4 d5 exd5 Qxd5 Nc3 Qa5 P@d4 e5 dxe5 Bb4 a3 Bxc3 bxc3 N@d3", Common.GAME_KIND_CRAZY_HOUSE);
+        assertLazyFENFollowsReplay(FEN.loadGame("bqnrkrnb/pppppppp/8/8/8/8/PPPPPPPP/BQNRKRNB w FDfd - 0 1", true, Common.GAME_KIND_FISCHER),
+                "Nf3 Nf6 g3 Nd6 O-O O-O-O", Common.GAME_KIND_FISCHER);
+    }
+
+    // the history a game keeps for every ply (the move info with its valid
+    // moves table, the position record and the move) is about 1KB
+    private static final long MAX_BYTES_PER_PLY = 2048;
+
+    private static void playKnightCycle(Game game, int plies) {
+        int[][] cycle = { { 1, 7, 3, 6 }, { 8, 7, 6, 6 }, { 3, 6, 1, 7 }, { 6, 6, 8, 7 } };
+        for (int ply = 0; ply < plies; ply++) {
+            int[] move = cycle[game.getCurrentMove() & 3];
+            assertEquals(Common.RC_OK, game.playMove(game.getValidMove(move[0], move[1], move[2], move[3])));
+        }
+    }
+
+    @Test
+    public void testPlayMoveAllocation() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+        Assume.assumeTrue(allocations.isThreadAllocatedMemorySupported() && allocations.isThreadAllocatedMemoryEnabled());
+
+        Game game = new Game();
+        game.setAttribute(Game.CHECK_REPEATITION_DRAW, false);
+        game.setAttribute(Game.CHECK_50_MOVES_DRAW, false);
+        // warm up, so the lists of the game are grown and the code is compiled
+        playKnightCycle(game, 4000);
+
+        int plies = 4000;
+        long threadId = Thread.currentThread().getId();
+        long before = allocations.getThreadAllocatedBytes(threadId);
+        playKnightCycle(game, plies);
+        long bytesPerPly = (allocations.getThreadAllocatedBytes(threadId) - before) / plies;
+        assertTrue("allocated " + bytesPerPly + " bytes per ply", bytesPerPly < MAX_BYTES_PER_PLY);
+        assertEquals("Nf3 Nf6 Ng1 Ng8", game.getMoveListAlgFromMove(game.getCurrentMove() - 4));
+    }
+
+    @Test
+    public void testSharedPieces() {
+        assertSame(Piece.create(Common.PIECE_TYPE_QUEEN, Common.COLOR_WHITE), Piece.create(Common.PIECE_TYPE_QUEEN, Common.COLOR_WHITE));
+        assertNotSame(Piece.create(Common.PIECE_TYPE_QUEEN, Common.COLOR_WHITE),
+                Piece.create(Common.PIECE_TYPE_QUEEN, Common.COLOR_WHITE, true));
+        assertSame(new Game().getPieceAt(1, 5), new Game().getPieceAt(1, 5));
+
+        // the pinned pieces are found on the position
+        Game pinned = FEN.loadGame("4k3/4r3/8/8/8/8/4B3/4K3 w - - 0 1", true);
+        assertEquals(Board.bit(2, 5), pinned.getMoveGenerator().getPinned(pinned.getBoard()));
+        assertEquals(0L, pinned.getLegalTargets(2, 5));
+
+        // a dropped promoted piece goes back to the pocket as it was captured
+        Game game = FEN.loadGame("1n2k3/P7/8/8/8/8/7K/1r6[-] w - - 0 1", true, Common.GAME_KIND_CRAZY_HOUSE);
+        assertTrue(game.playMoveList("axb8=Q Rxb8 Kg2 P@d4"));
+        assertEquals(Piece.create(Common.PIECE_TYPE_PAWN, Common.COLOR_BLACK), game.getPieceAt(4, 4));
+        assertTrue(game.getDroppablePieces(Common.COLOR_BLACK).isEmpty());
+        game.takeback();
+        assertEquals(1, game.getDroppablePieces(Common.COLOR_BLACK).size());
+        assertSame(Piece.create(Common.PIECE_TYPE_QUEEN, Common.COLOR_WHITE, true), game.getDroppablePieces(Common.COLOR_BLACK).get(0));
+        assertEquals("1r2k3/8/8/8/8/8/6K1/8[Np] b - - 0 2", FEN.getFENString(game));
+    }
+
+    @Test
+    public void testVariantRules() {
+        assertTrue(new Game().getRules() instanceof RegularRules);
+        assertFalse(new Game().getRules().isFischer());
+        assertTrue(new Game(Common.GAME_KIND_FISCHER).getRules().isFischer());
+        assertEquals(VariantRules.DROPS_FROM_POCKET, new Game(Common.GAME_KIND_CRAZY_HOUSE).getRules().getDrops());
+        assertEquals(VariantRules.DROPS_ALWAYS, new Game(Common.GAME_KIND_BUG_HOUSE).getRules().getDrops());
+
+        VariantRules suicide = new Game(Common.GAME_KIND_SUICIDE).getRules();
+        assertFalse(suicide.hasRoyalKings());
+        assertTrue(suicide.isCapturesFirst());
+        assertEquals(Common.COLOR_WHITE, suicide.getStaleMateWinner(Common.COLOR_WHITE));
+        VariantRules freePlay = new Game(Common.GAME_KIND_FREEPLAY).getRules();
+        assertEquals(Common.COLOR_BLACK, freePlay.getStaleMateWinner(Common.COLOR_WHITE));
+        assertEquals(Common.COLOR_BLACK, freePlay.getNoPiecesWinner(Common.COLOR_WHITE));
+        assertEquals(Common.COLOR_ILLEGAL, new Game().getRules().getStaleMateWinner(Common.COLOR_WHITE));
+
+        // the rules follow a change of the game rules
+        Game game = new Game();
+        game.setGameRules(Common.GAME_RULES_SUICIDE);
+        assertTrue(game.getRules() instanceof SuicideRules);
+
+        // suicide rules keep the drops and promotions of the game kind
+        game = new Game(Common.GAME_KIND_CRAZY_HOUSE);
+        game.setGameRules(Common.GAME_RULES_SUICIDE);
+        assertTrue(game.playMoveList("e4 d5 exd5 Qxd5"));
+        // 29 moves and 33 pawn drops
+        assertEquals(62, game.countLegalMoves());
+        int drops = 0;
+        for (Move move : game.getValidNextMoves()) {
+            drops += move.isDropMove() ? 1 : 0;
+        }
+        assertEquals(33, drops);
+        assertEquals(62, game.perft(1));
+        Game grasshoper = new Game(Common.GAME_KIND_GRASSHOPER);
+        grasshoper.setGameRules(Common.GAME_RULES_SUICIDE);
+        int[] promotionTypes = grasshoper.getRules().getPromotionTypes(Common.COLOR_WHITE, 8);
+        assertEquals(Common.PIECE_TYPE_KING, promotionTypes[0]);
+        assertEquals(Common.PIECE_TYPE_GRASSHOPER, promotionTypes[1]);
+
+        // a seven boom pawn on the 7th row may promote or stay a pawn
+        assertNull(new Game().getRules().getPromotionTypes(Common.COLOR_WHITE, 7));
+        assertEquals(4, new Game(Common.GAME_KIND_SEVEN_BOOM).getRules().getPromotionTypes(Common.COLOR_BLACK, 2).length);
+        Game sevenBoom = FEN.loadGame("4k3/8/4P3/8/8/8/8/4K3 w - - 0 1", true, Common.GAME_KIND_SEVEN_BOOM);
+        assertEquals(9, sevenBoom.countLegalMoves());
+        assertTrue(sevenBoom.playMoveList("e7=N"));
+        assertTrue(sevenBoom.getPieceAt(7, 5).isKnight());
+    }
+
+    @Test
+    public void testTypedDrops() {
+        // a promoted piece is dropped as a pawn, after the captured pawns
+        Pocket pocket = new Pocket(Common.COLOR_WHITE);
+        pocket.add(Piece.create(Common.PIECE_TYPE_QUEEN, Common.COLOR_WHITE, true));
+        pocket.add(Piece.create(Common.PIECE_TYPE_PAWN, Common.COLOR_WHITE));
+        assertEquals(2, pocket.getDropCount(Common.PIECE_TYPE_PAWN));
+        assertEquals(0, pocket.getDropCount(Common.PIECE_TYPE_QUEEN));
+        assertSame(Piece.create(Common.PIECE_TYPE_PAWN, Common.COLOR_WHITE), pocket.takePieceToDrop(Common.PIECE_TYPE_PAWN));
+        assertSame(Piece.create(Common.PIECE_TYPE_QUEEN, Common.COLOR_WHITE, true), pocket.takePieceToDrop(Common.PIECE_TYPE_PAWN));
+        assertNull(pocket.takePieceToDrop(Common.PIECE_TYPE_PAWN));
+        assertTrue(pocket.isEmpty());
+
+        // in check only a knight can block, as pawns are not dropped on the first row
+        Game game = FEN.loadGame("4k3/8/8/8/8/8/8/r3K3[PN] w - - 0 1", true, Common.GAME_KIND_CRAZY_HOUSE);
+        int drops = 0;
+        for (Move move : game.getValidNextMoves()) {
+            if (move.isDropMove()) {
+                assertEquals(Common.PIECE_TYPE_KNIGHT, move.getAdditionalPieceTypeInfo());
+                assertEquals(1, move.getToX());
+                drops++;
+            }
+        }
+        assertEquals(3, drops);
+        assertEquals(game.getValidNextMoves().size(), game.countLegalMoves());
+
+        // the perft of the board follows the captures to the pockets
+        game = FEN.loadGame("4k3/8/8/3p4/4P3/8/8/4K3[N] w - - 0 1", true, Common.GAME_KIND_CRAZY_HOUSE);
+        long leaves = 0;
+        for (Move move : new ArrayList<Move>(game.getValidNextMoves())) {
+            assertEquals(Common.RC_OK, game.playMove(move));
+            leaves += game.countLegalMoves();
+            game.takeback();
+        }
+        assertEquals(leaves, game.perft(2));
+    }
+
+    @Test
+    public void testSuicideGenerator() {
+        // several kings move as plain pieces, and a pawn may promote to a king
+        Game game = FEN.loadGame("8/1P6/8/8/8/8/8/K1K4k w - - 0 1", true, Common.GAME_KIND_SUICIDE);
+        assertEquals(13, game.countLegalMoves());
+        assertEquals(13, game.getValidNextMoves().size());
+        assertNotNull(game.getValidMove(1, 1, 1, 2));
+        assertNotNull(game.getValidMove(1, 3, 1, 2));
+        assertTrue(game.playMoveList("b8=K"));
+        assertTrue(game.getPieceAt(8, 2).isKing());
+        assertEquals(3, game.getBoard().count(Common.PIECE_TYPE_KING, Common.COLOR_WHITE));
+
+        // a capture by either king must be played
+        game = FEN.loadGame("8/8/8/8/8/8/1p6/K1K4k w - - 0 1", true, Common.GAME_KIND_SUICIDE);
+        assertEquals(2, game.countLegalMoves());
+        for (Move move : game.getValidNextMoves()) {
+            assertTrue(move.isCapture());
+        }
+        assertEquals(game.countLegalMoves(), game.perft(1));
+    }
+
+    private static long grasshoperJumps(int square, long occupied) {
+        long attacks = 0L;
+        for (int dx = -1; dx <= 1; dx++) {
+            for (int dy = -1; dy <= 1; dy++) {
+                if ((dx == 0) && (dy == 0)) {
+                    continue;
+                }
+                long ray = rayAttacks(square, occupied, new int[][] { { dx, dy } });
+                if ((ray & occupied) == 0) {
+                    continue;
+                }
+                int hurdle = Long.numberOfTrailingZeros(ray & occupied);
+                int x = Board.squareX(hurdle) + dx;
+                int y = Board.squareY(hurdle) + dy;
+                if ((x >= 1) && (x <= 8) && (y >= 1) && (y <= 8)) {
+                    attacks |= Board.bit(x, y);
+                }
+            }
+        }
+        return attacks;
+    }
+
+    /*
+     * every target of a piece other than a pawn or the king is legal if the
+     * king is not attacked on the occupancy the move leaves
+     */
+    private static void assertTargetsLeaveKingSafe(Game game) {
+        Board board = game.getBoard();
+        int us = board.getSideToMove();
+        int them = Common.OtherColor(us);
+        long kings = board.getPieces(Common.PIECE_TYPE_KING, us);
+        if (Long.bitCount(kings) != 1) {
+            return;
+        }
+        int kingSquare = Long.numberOfTrailingZeros(kings);
+        for (int from = 0; from < Board.SQUARE_NUM; from++) {
+            int code = board.getCode(from);
+            int type = Board.codeType(code);
+            if ((code == 0) || (Board.codeColor(code) != us) || (type == Common.PIECE_TYPE_PAWN)
+                    || (type == Common.PIECE_TYPE_KING)) {
+                continue;
+            }
+            long targets = Attacks.attacks(type, us, from, board.getOccupied()) & ~board.getOccupied(us);
+            long legal = 0L;
+            for (int to = 0; to < Board.SQUARE_NUM; to++) {
+                long occupied = (board.getOccupied() & ~(1L << from)) | (1L << to);
+                if (((targets & (1L << to)) != 0)
+                        && ((board.attackersTo(kingSquare, them, occupied) & ~(1L << to)) == 0)) {
+                    legal |= 1L << to;
+                }
+            }
+            assertEquals(legal, game.getMoveGenerator().getTargets(board, from));
+        }
+    }
+
+    @Test
+    public void testGrasshoperGenerator() {
+        java.util.Random random = new java.util.Random(24);
+        for (int i = 0; i < 2000; i++) {
+            long occupied = random.nextLong() & random.nextLong();
+            long[] jumps = new long[Board.SQUARE_NUM];
+            for (int square = 0; square < Board.SQUARE_NUM; square++) {
+                jumps[square] = grasshoperJumps(square, occupied);
+                assertEquals(jumps[square], Attacks.grasshoperAttacks(square, occupied));
+            }
+            for (int square = 0; square < Board.SQUARE_NUM; square++) {
+                long attackers = 0L;
+                for (int from = 0; from < Board.SQUARE_NUM; from++) {
+                    if (((occupied & (1L << from)) != 0) && ((jumps[from] & (1L << square)) != 0)) {
+                        attackers |= 1L << from;
+                    }
+                }
+                assertEquals(attackers, Attacks.grasshoperAttackers(square, occupied));
+            }
+        }
+
+        // a rook stepping next to the king becomes the hurdle of a check
+        Game game = FEN.loadGame("4g2k/8/8/8/4R3/8/8/4K3 w - - 0 1", true, Common.GAME_KIND_GRASSHOPER);
+        assertEquals(12, Long.bitCount(game.getMoveGenerator().getTargets(game.getBoard(), Board.square(4, 5))));
+        assertNull(game.getValidMove(4, 5, 2, 5));
+        assertNotNull(game.getValidMove(4, 5, 4, 1));
+        // and so does the rook of a castling
+        game = FEN.loadGame("1k6/8/8/8/8/8/8/g3K2R w K - 0 1", true, Common.GAME_KIND_GRASSHOPER);
+        assertNull(Notation.getMove(game, "O-O"));
+
+        for (long seed = 1; seed <= 3; seed++) {
+            game = new Game(Common.GAME_KIND_GRASSHOPER);
+            random = new java.util.Random(seed);
+            for (int i = 0; (i < 80) && !game.isEnded(); i++) {
+                assertTargetsLeaveKingSafe(game);
+                List<Move> moves = game.getValidNextMoves();
+                assertEquals(moves.size(), game.countLegalMoves());
+                assertEquals(Common.RC_OK, game.playMove(moves.get(random.nextInt(moves.size()))));
+            }
+        }
+    }
+
+    @Test
+    public void testFischer960Positions() {
+        assertEquals("RNBQKBNR", Fischer960.getBackRow(Fischer960.SP_REGULAR));
+        assertEquals("BBQNNRKR", Fischer960.getBackRow(0));
+        assertEquals("RKRNNQBB", Fischer960.getBackRow(959));
+        java.util.Set<String> backRows = new java.util.HashSet<String>();
+        for (int sp = 0; sp < Fischer960.SP_NUM; sp++) {
+            String backRow = Fischer960.getBackRow(sp);
+            assertTrue(backRows.add(backRow));
+            assertEquals(sp, Fischer960.getSP(backRow));
+            // the bishops on both square colors, and the king between the rooks
+            assertEquals(1, (backRow.indexOf('B') + backRow.lastIndexOf('B')) % 2);
+            assertTrue(Fischer960.getRookY(sp, Common.CASTLE_QUEEN) < Fischer960.getKingY(sp));
+            assertTrue(Fischer960.getKingY(sp) < Fischer960.getRookY(sp, Common.CASTLE_KING));
+        }
+        assertEquals(Fischer960.NO_SP, Fischer960.getSP("KRRNNQBB"));
+
+        // the castling masks of the regular start position
+        int kingY = Fischer960.getKingY(Fischer960.SP_REGULAR);
+        assertEquals(Board.bit(1, 6) | Board.bit(1, 7), Fischer960.getCastlingPath(Common.CASTLE_KING, kingY,
+                Fischer960.getRookY(Fischer960.SP_REGULAR, Common.CASTLE_KING)));
+        assertEquals(Board.bit(1, 2) | Board.bit(1, 3) | Board.bit(1, 4), Fischer960.getCastlingPath(Common.CASTLE_QUEEN,
+                kingY, Fischer960.getRookY(Fischer960.SP_REGULAR, Common.CASTLE_QUEEN)));
+        assertEquals(Board.bit(1, 5) | Board.bit(1, 6) | Board.bit(1, 7),
+                Fischer960.getCastlingKingPath(Common.CASTLE_KING, kingY));
+
+        // a game created by its start position number
+        Game game = new Game(null, null, Common.GAME_KIND_FISCHER, 0);
+        assertEquals(0, game.getFischerSP());
+        assertEquals("bbqnnrkr/pppppppp/8/8/8/8/PPPPPPPP/BBQNNRKR w FHfh - 0 1", FEN.getFENString(game));
+        assertEquals(7, game.getCastlingKingY());
+        assertEquals(6, game.getCastlingRookY(Common.CASTLE_QUEEN));
+        assertEquals(8, game.getCastlingRookY(Common.CASTLE_KING));
+        assertEquals(game.perft(3), FEN.loadGame(FEN.create960FEN(0), true, Common.GAME_KIND_FISCHER).perft(3));
+        assertEquals(Fischer960.NO_SP, FEN.loadGame(FEN.create960FEN(0), true, Common.GAME_KIND_FISCHER).getFischerSP());
+
+        game = new Game(null, null, Common.GAME_KIND_FISCHER, Fischer960.SP_REGULAR);
+        assertEquals(8902, game.perft(3));
+        assertTrue(game.playMoveList("Nf3 Nf6 e3 e6 Be2 Be7 O-O O-O"));
+        assertTrue(game.getPieceAt(1, 7).isKing());
+        assertTrue(game.getPieceAt(8, 6).isRook());
+        game.initialPosition(959);
+        assertEquals(959, game.getFischerSP());
+        assertTrue(Fischer960.isValid(new Game(Common.GAME_KIND_FISCHER).getFischerSP()));
+        assertEquals(Fischer960.NO_SP, new Game().getFischerSP());
+    }
 }